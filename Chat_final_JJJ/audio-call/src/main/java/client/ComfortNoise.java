@@ -0,0 +1,30 @@
+package client;
+
+// Ruido de confort para Ice: receiveAudio no tiene cabecera, asi que la marca es un bloque de 4 bytes
+// 'C' 'N' + nivel. Un bloque de audio real nunca mide 4 bytes, y si un cliente viejo lo reproduce
+// son solo 2 muestras. El nivel y el ruido generado son los de dsp.ComfortNoise.
+public final class ComfortNoise {
+
+    private static final int MARKER_SIZE = 4;
+
+    private ComfortNoise() {
+    }
+
+    public static byte[] marker(int level) {
+        byte[] level16 = dsp.ComfortNoise.marker(level);
+        return new byte[]{'C', 'N', level16[0], level16[1]};
+    }
+
+    public static boolean isMarker(byte[] data) {
+        return data != null && data.length == MARKER_SIZE && data[0] == 'C' && data[1] == 'N';
+    }
+
+    public static int level(byte[] marker) {
+        return dsp.ComfortNoise.level(marker, 2);
+    }
+
+    // PCM 16-bit big-endian con amplitud media aproximada a level
+    public static byte[] generate(int level, int samples) {
+        return dsp.ComfortNoise.generate(level, samples);
+    }
+}
@@ -9,6 +9,7 @@ import com.zeroc.Ice.Current;
 public class ObserverI implements Observer {
 
     public static PlayerThread player;
+    private static final String SPEAKERS_SUFFIX = "#speakers";
 
     @Override
     public void receiveAudio(byte[] data, Current c) {
@@ -160,6 +161,12 @@ public class ObserverI implements Observer {
 
     @Override
     public void groupCallUpdated(String groupId, String[] members, Current c) {
+        // Modo SFU: el servidor publica los hablantes activos como "<groupId>#speakers"
+        if (groupId.endsWith(SPEAKERS_SUFFIX)) {
+            String group = groupId.substring(0, groupId.length() - SPEAKERS_SUFFIX.length());
+            System.out.println("[CLIENT] Hablando en " + group + ": " + Arrays.toString(members));
+            return;
+        }
         System.out.println("[CLIENT] Grupo actualizado: " + groupId);
         System.out.println("[CLIENT] Miembros actuales: " + Arrays.toString(members));
     }
@@ -1,20 +1,31 @@
 package client;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import dsp.JitterBuffer;
+import java.util.concurrent.TimeUnit;
 import javax.sound.sampled.*;
 
 public class PlayerThread extends Thread {
 
-    private final Queue<byte[]> audioBytes = new ConcurrentLinkedQueue<>();
-    private boolean isPlay;
+    // receiveAudio no trae numero de secuencia: se numera por orden de llegada (Ice ya entrega en orden)
+    private final JitterBuffer jitterBuffer = new JitterBuffer();
+    private int sequence;
+    private volatile boolean isPlay;
     private final SourceDataLine speaker;
+    private final int comfortNoiseSamples;
+    private volatile int comfortNoiseLevel;
+    private volatile long comfortNoiseUntil;
+
+    // Sin voz ni marca nueva durante este tiempo se deja de generar ruido de confort
+    private static final long COMFORT_NOISE_HOLD_MS = 2500;
 
     public PlayerThread(AudioFormat format) throws Exception {
         DataLine.Info infoSpeaker = new DataLine.Info(SourceDataLine.class, format);
         speaker = (SourceDataLine) AudioSystem.getLine(infoSpeaker);
-        speaker.open(format);
+        // La linea solo guarda unas pocas tramas; la espera adicional la decide el jitter buffer
+        speaker.open(format, VoiceFrames.lineBufferBytes());
         speaker.start();
+        // Bloques de 20 ms
+        comfortNoiseSamples = (int) format.getSampleRate() / 50;
     }
 
     public void setPlay(boolean isPlay) {
@@ -22,22 +33,43 @@ public class PlayerThread extends Thread {
     }
 
 
-    public void play(byte[] batch) {
-        audioBytes.add(batch);
+    public synchronized void play(byte[] batch) {
+        if (ComfortNoise.isMarker(batch)) {
+            comfortNoiseLevel = ComfortNoise.level(batch);
+            comfortNoiseUntil = System.currentTimeMillis() + COMFORT_NOISE_HOLD_MS;
+            jitterBuffer.markSilence();
+            return;
+        }
+        comfortNoiseUntil = 0;
+        jitterBuffer.put(sequence++, batch);
+    }
+
+    // Rellena el hueco de un silencio suprimido solo cuando a la linea le quedan menos de 20 ms
+    private void fillWithComfortNoise() {
+        if (System.currentTimeMillis() > comfortNoiseUntil) return;
+        if (speaker.getBufferSize() - speaker.available() >= comfortNoiseSamples * 2) return;
+
+        byte[] noise = ComfortNoise.generate(comfortNoiseLevel, comfortNoiseSamples);
+        speaker.write(noise, 0, noise.length);
     }
 
     @Override
     public void run() {
         while (true) {
             try {
-                if (isPlay && !audioBytes.isEmpty()) {
-                    byte[] current = audioBytes.poll();
-                    if (current != null) {
-                        speaker.write(current, 0, current.length);
-                    }
+                if (!isPlay) {
+                    Thread.sleep(100);
+                    continue;
+                }
+                // Espera en el jitter buffer (sin espera activa) hasta 20 ms
+                byte[] current = jitterBuffer.take(20, TimeUnit.MILLISECONDS);
+                if (current != null) {
+                    speaker.write(current, 0, current.length);
                 } else {
-                    Thread.sleep(5000); // dormir poco para no bloquear
+                    fillWithComfortNoise();
                 }
+            } catch (InterruptedException e) {
+                break;
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -1,6 +1,7 @@
 package client;
 
 import Demo.SubjectPrx;
+import dsp.VoiceActivityDetector;
 import javax.sound.sampled.*;
 
 public class Sender extends Thread {
@@ -17,7 +18,7 @@ public class Sender extends Thread {
         AudioFormat format = new AudioFormat(44100, 16, 1, true, true);
         DataLine.Info infoMic = new DataLine.Info(TargetDataLine.class, format);
         mic = (TargetDataLine) AudioSystem.getLine(infoMic);
-        mic.open(format);
+        mic.open(format, VoiceFrames.lineBufferBytes());
         mic.start();
         
         System.out.println("[SENDER]  Microfono inicializado correctamente");
@@ -25,19 +26,39 @@ public class Sender extends Thread {
 
     @Override
     public void run() {
-        byte[] buffer = new byte[10240];
+        int frameBytes = VoiceFrames.frameBytes();
+        int framesPerPacket = VoiceFrames.framesPerPacket();
+        byte[] buffer = new byte[frameBytes * framesPerPacket];
         int consecutiveErrors = 0;
+        // Supresion de silencios (-Daudio.vad=false la desactiva)
+        boolean vadEnabled = Boolean.parseBoolean(System.getProperty("audio.vad", "true"));
+        VoiceActivityDetector vad = new VoiceActivityDetector();
         
         System.out.println("[SENDER] Thread de envio de audio iniciado");
         
         while (running) {
             try {
                 if (AudioClient.startStreaming) {
-                    int n = mic.read(buffer, 0, buffer.length);
-                    
-                    if (n > 0) {
-                        byte[] copy = new byte[n];
-                        System.arraycopy(buffer, 0, copy, 0, n);
+                    // Se leen framesPerPacket tramas; el bloque sale si alguna de ellas tenia voz
+                    int n = 0;
+                    VoiceActivityDetector.Decision decision = VoiceActivityDetector.Decision.SILENCE;
+                    while (n < buffer.length) {
+                        int read = mic.read(buffer, n, frameBytes);
+                        if (read <= 0) break;
+                        decision = decision.strongest(vadEnabled
+                                ? vad.classify(buffer, n, read)
+                                : VoiceActivityDetector.Decision.SPEECH);
+                        n += read;
+                    }
+
+                    if (n > 0 && decision.shouldSend()) {
+                        byte[] copy;
+                        if (decision == VoiceActivityDetector.Decision.COMFORT_NOISE) {
+                            copy = ComfortNoise.marker(vad.getNoiseLevel());
+                        } else {
+                            copy = new byte[n];
+                            System.arraycopy(buffer, 0, copy, 0, n);
+                        }
                         
                         try {
                             // Enviar de forma asíncrona para evitar bloqueos
@@ -0,0 +1,122 @@
+package server;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+// Modo SFU de las llamadas grupales de Ice: por cada bloque se mide la energia del PCM de 16 bits
+// y solo los K emisores mas fuertes del grupo se reenvian; el resto se descarta.
+// El orden de bytes depende del cliente (el Sender de Java captura big-endian, el web little-endian),
+// asi que la energia no asume ninguno.
+// Cuando cambia el conjunto activo se avisa con el callback (groupId, hablantes).
+public class ActiveSpeakerSelector {
+
+    private static final long ELECTION_MS = 20;
+    private static final long SPEAKER_TIMEOUT_MS = 300;
+    private static final int SAMPLE_STRIDE = 4;
+
+    private final int topK;
+    private final BiConsumer<String, String[]> onChange;
+    private final Map<String, SpeakerGroup> groups = new ConcurrentHashMap<>();
+
+    private static class Speaker {
+        int level;
+        long lastAudio;
+        boolean active;
+    }
+
+    private static class SpeakerGroup {
+        final Map<String, Speaker> speakers = new HashMap<>();
+        List<String> active = new ArrayList<>();
+        long lastElection;
+    }
+
+    public ActiveSpeakerSelector(int topK, BiConsumer<String, String[]> onChange) {
+        this.topK = Math.max(1, topK);
+        this.onChange = onChange;
+    }
+
+    // Retorna true si el bloque de este emisor debe reenviarse
+    public boolean accept(String groupId, String fromUser, byte[] data) {
+        int energy = energy(data);
+        long now = System.currentTimeMillis();
+        String[] changed = null;
+        boolean forward;
+
+        SpeakerGroup group = groups.computeIfAbsent(groupId, id -> new SpeakerGroup());
+        synchronized (group) {
+            Speaker speaker = group.speakers.computeIfAbsent(fromUser, u -> new Speaker());
+            speaker.lastAudio = now;
+            // Nivel suavizado para que un pico aislado no cambie el conjunto activo
+            speaker.level = (speaker.level * 3 + energy) / 4;
+
+            if (now - group.lastElection >= ELECTION_MS && elect(group, now)) {
+                changed = group.active.toArray(new String[0]);
+            }
+            forward = speaker.active;
+        }
+
+        if (changed != null) {
+            onChange.accept(groupId, changed);
+        }
+        return forward;
+    }
+
+    private boolean elect(SpeakerGroup group, long now) {
+        group.lastElection = now;
+        List<Map.Entry<String, Speaker>> candidates = new ArrayList<>();
+        for (Map.Entry<String, Speaker> e : group.speakers.entrySet()) {
+            e.getValue().active = false;
+            if (now - e.getValue().lastAudio <= SPEAKER_TIMEOUT_MS) {
+                candidates.add(e);
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(b.getValue().level, a.getValue().level));
+
+        List<String> active = new ArrayList<>();
+        for (int i = 0; i < candidates.size() && i < topK; i++) {
+            candidates.get(i).getValue().active = true;
+            active.add(candidates.get(i).getKey());
+        }
+        Collections.sort(active);
+        if (active.equals(group.active)) return false;
+
+        group.active = active;
+        return true;
+    }
+
+    // Amplitud media sobre una de cada SAMPLE_STRIDE muestras, con el orden de bytes en que la senal
+    // es suave: la voz cambia poco entre muestras vecinas y leida al reves parece ruido de amplitud alta
+    private int energy(byte[] data) {
+        // Una marca de ruido de confort (4 bytes) cuenta como silencio
+        if (data.length <= 4) return 0;
+        long totalLittle = 0;
+        long totalBig = 0;
+        long stepLittle = 0;
+        long stepBig = 0;
+        int count = 0;
+        for (int i = 0; i + 3 < data.length; i += 2 * SAMPLE_STRIDE) {
+            short little = (short) ((data[i] & 0xFF) | (data[i + 1] << 8));
+            short big = (short) ((data[i] << 8) | (data[i + 1] & 0xFF));
+            totalLittle += Math.abs(little);
+            totalBig += Math.abs(big);
+            stepLittle += Math.abs((short) ((data[i + 2] & 0xFF) | (data[i + 3] << 8)) - little);
+            stepBig += Math.abs((short) ((data[i + 2] << 8) | (data[i + 3] & 0xFF)) - big);
+            count++;
+        }
+        if (count == 0) return 0;
+        return (int) ((stepLittle <= stepBig ? totalLittle : totalBig) / count);
+    }
+
+    public void removeGroup(String groupId) {
+        groups.remove(groupId);
+    }
+
+    public void removeSpeaker(String groupId, String user) {
+        SpeakerGroup group = groups.get(groupId);
+        if (group == null) return;
+        synchronized (group) {
+            group.speakers.remove(user);
+        }
+    }
+}
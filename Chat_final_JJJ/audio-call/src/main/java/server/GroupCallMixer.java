@@ -0,0 +1,141 @@
+package server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import Demo.*;
+
+// Mezcla del lado del servidor para las llamadas grupales de Ice. Cada sendAudioGroup deja el PCM
+// (16-bit little-endian, como lo envia el navegador) en la cola del emisor y cada FRAME_MS se suma
+// lo de todos los que hablaron. Cada miembro recibe un solo receiveAudio con la mezcla sin su voz.
+public class GroupCallMixer {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAME_MS = 20;
+    private static final int FRAME_SAMPLES = SAMPLE_RATE * FRAME_MS / 1000;
+    private static final int MAX_QUEUED_SAMPLES = SAMPLE_RATE / 2;
+    private static final long MEMBER_TIMEOUT_MS = 5_000;
+    private static final int MARKER_SIZE = 4;
+
+    private final Map<String, ObserverPrx> observers;
+    private final Map<String, Map<String, Speaker>> groups = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+    private final int[] sum = new int[FRAME_SAMPLES];
+
+    private static class Speaker {
+        final short[] ring = new short[MAX_QUEUED_SAMPLES];
+        final int[] frame = new int[FRAME_SAMPLES];
+        int head = 0;
+        int size = 0;
+        long lastSeen;
+        boolean spoke;
+
+        void write(byte[] data) {
+            for (int i = 0; i + 1 < data.length; i += 2) {
+                if (size == ring.length) {
+                    // Cola llena: se descarta lo mas viejo para no acumular latencia
+                    head = (head + 1) % ring.length;
+                    size--;
+                }
+                ring[(head + size) % ring.length] = (short) ((data[i] & 0xFF) | (data[i + 1] << 8));
+                size++;
+            }
+        }
+
+        boolean read() {
+            int n = Math.min(size, frame.length);
+            for (int i = 0; i < n; i++) {
+                frame[i] = ring[(head + i) % ring.length];
+            }
+            Arrays.fill(frame, n, frame.length, 0);
+            head = (head + n) % ring.length;
+            size -= n;
+            return n > 0;
+        }
+    }
+
+    public GroupCallMixer(Map<String, ObserverPrx> observers) {
+        this.observers = observers;
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }, FRAME_MS, FRAME_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void accept(String groupId, Set<String> members, String fromUser, byte[] data) {
+        Map<String, Speaker> speakers = groups.computeIfAbsent(groupId, id -> new HashMap<>());
+        synchronized (speakers) {
+            speakers.keySet().retainAll(members);
+            for (String member : members) {
+                speakers.computeIfAbsent(member, m -> new Speaker()).lastSeen = System.currentTimeMillis();
+            }
+            // Las marcas de ruido de confort (4 bytes) no son audio
+            if (data.length > MARKER_SIZE) {
+                speakers.computeIfAbsent(fromUser, m -> new Speaker()).write(data);
+            }
+        }
+    }
+
+    public void removeGroup(String groupId) {
+        groups.remove(groupId);
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Map<String, Speaker>> entry : groups.entrySet()) {
+            Map<String, Speaker> speakers = entry.getValue();
+            synchronized (speakers) {
+                speakers.values().removeIf(s -> now - s.lastSeen > MEMBER_TIMEOUT_MS);
+                if (speakers.isEmpty()) {
+                    groups.remove(entry.getKey());
+                    continue;
+                }
+                mix(speakers);
+            }
+        }
+    }
+
+    private void mix(Map<String, Speaker> speakers) {
+        int active = 0;
+        Arrays.fill(sum, 0);
+        for (Speaker speaker : speakers.values()) {
+            speaker.spoke = speaker.size > 0 && speaker.read();
+            if (speaker.spoke) {
+                active++;
+                for (int i = 0; i < FRAME_SAMPLES; i++) {
+                    sum[i] += speaker.frame[i];
+                }
+            }
+        }
+        if (active == 0) return;
+
+        for (Map.Entry<String, Speaker> e : speakers.entrySet()) {
+            Speaker speaker = e.getValue();
+            // Si solo hablo este miembro, su mezcla seria silencio
+            if (speaker.spoke && active == 1) continue;
+
+            ObserverPrx prx = observers.get(e.getKey());
+            if (prx == null) continue;
+
+            byte[] out = new byte[FRAME_SAMPLES * 2];
+            for (int i = 0; i < FRAME_SAMPLES; i++) {
+                int sample = speaker.spoke ? sum[i] - speaker.frame[i] : sum[i];
+                // Proteccion contra saturacion al sumar varias voces
+                sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+                out[i * 2] = (byte) sample;
+                out[i * 2 + 1] = (byte) (sample >> 8);
+            }
+            try {
+                prx.receiveAudioAsync(out);
+            } catch (Exception ex) {
+                System.err.println("[SERVER] Error enviando mezcla a " + e.getKey());
+            }
+        }
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -15,6 +15,17 @@ public class SubjectImpl implements Subject {
     private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor();
     private final long STALE_MS = 600_000;
     private final AtomicLong idGen = new AtomicLong(System.currentTimeMillis());
+    // -Daudio.groupMode: "mix" (por defecto), "sfu" (solo los K mas fuertes) o "forward" (todo a todos, O(N^2))
+    private final String groupMode = System.getProperty("audio.groupMode", "mix");
+    private final boolean mixGroups = "mix".equalsIgnoreCase(groupMode);
+    private final boolean sfuGroups = "sfu".equalsIgnoreCase(groupMode);
+    private final GroupCallMixer mixer = new GroupCallMixer(observers);
+    // receiveAudio no dice quien habla, asi que por defecto se reenvia un solo hablante
+    private final ActiveSpeakerSelector speakers = new ActiveSpeakerSelector(
+            Integer.getInteger("audio.sfu.topK", 1), this::notifyActiveSpeakers);
+
+    // Los hablantes activos viajan por groupCallUpdated con este sufijo en el groupId
+    public static final String SPEAKERS_SUFFIX = "#speakers";
 
     public SubjectImpl() {
         cleaner.scheduleAtFixedRate(() -> {
@@ -270,8 +281,11 @@ public class SubjectImpl implements Subject {
 
         members.remove(user);
         
+        speakers.removeSpeaker(groupId, user);
         if (members.isEmpty()) {
             groupMembers.remove(groupId);
+            mixer.removeGroup(groupId);
+            speakers.removeGroup(groupId);
             System.out.println("[SERVER] Grupo vacio eliminado: " + groupId);
         } else {
             notifyGroupUpdated(groupId);
@@ -291,6 +305,14 @@ public class SubjectImpl implements Subject {
 
         lastSeen.put(fromUser, System.currentTimeMillis());
 
+        if (mixGroups) {
+            mixer.accept(groupId, members, fromUser, data);
+            return;
+        }
+        if (sfuGroups && !speakers.accept(groupId, fromUser, data)) {
+            return;
+        }
+
         String[] snapshot = members.toArray(new String[0]);
         for (String member : snapshot) {
             if (member.equals(fromUser)) continue;
@@ -350,6 +372,20 @@ public class SubjectImpl implements Subject {
         }
     }
 
+    private void notifyActiveSpeakers(String groupId, String[] active) {
+        Set<String> members = groupMembers.get(groupId);
+        if (members == null) return;
+
+        for (String member : members.toArray(new String[0])) {
+            ObserverPrx prx = observers.get(member);
+            if (prx != null) {
+                try {
+                    prx.groupCallUpdatedAsync(groupId + SPEAKERS_SUFFIX, active);
+                } catch (Exception ignored) {}
+            }
+        }
+    }
+
     private void removeFromAllGroups(String userId) {
         List<String> groupsToUpdate = new ArrayList<>();
         
@@ -359,10 +395,14 @@ public class SubjectImpl implements Subject {
             }
         }
 
+        // Misma limpieza que leaveGroupCall: si no, el mezclador y el selector conservan su estado
         for (String gid : groupsToUpdate) {
+            speakers.removeSpeaker(gid, userId);
             Set<String> members = groupMembers.get(gid);
             if (members == null || members.isEmpty()) {
                 groupMembers.remove(gid);
+                mixer.removeGroup(gid);
+                speakers.removeGroup(gid);
             } else {
                 notifyGroupUpdated(gid);
             }
@@ -406,6 +446,7 @@ public class SubjectImpl implements Subject {
 
     public void shutdown() {
         cleaner.shutdownNow();
+        mixer.shutdown();
     }
 
   @Override
@@ -0,0 +1,43 @@
+package dsp;
+
+import java.util.Random;
+
+// Ruido de confort: el emisor manda solo el nivel del ruido de fondo y el receptor genera un ruido
+// parecido mientras no llega voz, para que el silencio suprimido no suene a llamada cortada.
+public final class ComfortNoise {
+    private static final int MAX_LEVEL = 1000;
+    private static final Random RANDOM = new Random();
+
+    private ComfortNoise() {
+    }
+
+    public static byte[] marker(int level) {
+        int clipped = Math.min(level, MAX_LEVEL);
+        return new byte[]{(byte) (clipped >> 8), (byte) clipped};
+    }
+
+    public static int level(byte[] marker) {
+        if (marker == null || marker.length < 2) {
+            return 0;
+        }
+        return level(marker, 0);
+    }
+
+    public static int level(byte[] data, int offset) {
+        return Math.min(MAX_LEVEL, ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF));
+    }
+
+    // PCM 16-bit big-endian con amplitud media aproximada a level
+    public static byte[] generate(int level, int samples) {
+        byte[] out = new byte[samples * 2];
+        double previous = 0;
+        for (int i = 0; i < samples; i++) {
+            // Ruido blanco suavizado con un pasa bajos de un polo, mas parecido al ruido de una sala
+            previous = previous * 0.5 + RANDOM.nextGaussian() * level * 1.1;
+            int sample = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, previous));
+            out[i * 2] = (byte) (sample >> 8);
+            out[i * 2 + 1] = (byte) sample;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,233 @@
+package dsp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Buffer de reproduccion ordenado por numero de secuencia. La profundidad objetivo se adapta al
+// jitter de llegada medido (estimador de RFC 3550); los paquetes que llegan despues de su turno se
+// descartan, los perdidos se ocultan repitiendo la ultima trama atenuada y si se acumula mas de lo
+// necesario se descarta lo mas viejo para que la latencia no crezca. take() espera en una
+// condicion, no hace espera activa.
+public class JitterBuffer {
+    private static final int CAPACITY = 64;
+    private static final int MIN_DEPTH = 1;
+    private static final int MAX_DEPTH = 8;
+    // Tramas de mas sobre el objetivo antes de recortar latencia
+    private static final int MAX_EXCESS = 2;
+    // Cuantas tramas seguidas se ocultan con la anterior antes de pasar a silencio
+    private static final int MAX_CONCEALED = 3;
+    private static final int SAMPLE_RATE = 44100;
+
+    private final byte[][] frames = new byte[CAPACITY][];
+    private final int[] sequences = new int[CAPACITY];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private int buffered;
+    private int nextSeq;
+    private boolean playing;
+
+    private long lastArrivalNanos = -1;
+    private int lastArrivalSeq;
+    private double jitterNanos;
+    private long frameNanos = 20_000_000L;
+
+    private byte[] lastFrame;
+    private int concealedInRow;
+
+    private long received;
+    private long late;
+    private long concealed;
+    private long trimmed;
+    private long underruns;
+
+    public void put(int seq, byte[] frame) {
+        lock.lock();
+        try {
+            received++;
+            long now = System.nanoTime();
+            frameNanos = Math.max(1, frame.length / 2 * 1_000_000_000L / SAMPLE_RATE);
+
+            int reference = playing ? nextSeq : lastArrivalSeq;
+            if (buffered > 0 && Math.abs(seq - reference) > CAPACITY) {
+                // Otro flujo o un salto grande (p. ej. nueva llamada): se empieza de cero
+                clear();
+            }
+            updateJitter(seq, now);
+            if (playing && seq < nextSeq) {
+                late++;
+                return;
+            }
+
+            int slot = Math.floorMod(seq, CAPACITY);
+            if (frames[slot] == null) {
+                buffered++;
+            }
+            frames[slot] = frame;
+            sequences[slot] = seq;
+
+            if (!playing && buffered >= targetDepth()) {
+                playing = true;
+                nextSeq = lowestBufferedSeq();
+            }
+            while (playing && buffered > targetDepth() + MAX_EXCESS) {
+                dropNext();
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Siguiente trama a reproducir, una trama oculta si se perdio, o null si no hay nada en el plazo
+    public byte[] take(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = unit.toNanos(timeout);
+            while (true) {
+                if (playing) {
+                    int slot = Math.floorMod(nextSeq, CAPACITY);
+                    if (frames[slot] != null && sequences[slot] == nextSeq) {
+                        byte[] frame = frames[slot];
+                        frames[slot] = null;
+                        buffered--;
+                        nextSeq++;
+                        lastFrame = frame;
+                        concealedInRow = 0;
+                        return frame;
+                    }
+                    if (buffered >= targetDepth()) {
+                        // Hay tramas posteriores suficientes: la que toca se da por perdida
+                        nextSeq++;
+                        concealed++;
+                        return conceal();
+                    }
+                    if (buffered == 0) {
+                        playing = false;
+                        underruns++;
+                    }
+                }
+                if (remaining <= 0) {
+                    if (playing && buffered > 0) {
+                        // El hueco no se lleno a tiempo
+                        nextSeq++;
+                        concealed++;
+                        return conceal();
+                    }
+                    return null;
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // El emisor dejo de transmitir (VAD): la primera trama al volver no mide jitter de red
+    public void markSilence() {
+        lock.lock();
+        try {
+            lastArrivalNanos = -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            for (int i = 0; i < CAPACITY; i++) {
+                frames[i] = null;
+            }
+            buffered = 0;
+            playing = false;
+            lastArrivalNanos = -1;
+            lastFrame = null;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int targetDepth() {
+        int depth = (int) Math.ceil(2 * jitterNanos / frameNanos) + MIN_DEPTH;
+        return Math.max(MIN_DEPTH, Math.min(MAX_DEPTH, depth));
+    }
+
+    // Retardo que agrega el buffer con la profundidad objetivo actual
+    public long targetDelayMillis() {
+        lock.lock();
+        try {
+            return targetDepth() * frameNanos / 1_000_000L;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String stats() {
+        lock.lock();
+        try {
+            return "recibidas=" + received + " tardias=" + late + " ocultadas=" + concealed +
+                    " recortadas=" + trimmed + " vaciados=" + underruns +
+                    " jitter=" + (long) (jitterNanos / 1_000_000) + "ms objetivo=" + targetDepth();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Una desviacion mayor que lo que cubre MAX_DEPTH es un silencio suprimido o un corte, no jitter:
+    // contarla dejaria el objetivo clavado en MAX_DEPTH durante muchas tramas despues de cada pausa
+    private void updateJitter(int seq, long now) {
+        if (lastArrivalNanos >= 0 && seq > lastArrivalSeq) {
+            long expected = (seq - lastArrivalSeq) * frameNanos;
+            long deviation = Math.abs((now - lastArrivalNanos) - expected);
+            if (deviation <= MAX_DEPTH * frameNanos) {
+                jitterNanos += (deviation - jitterNanos) / 16;
+            }
+        }
+        if (lastArrivalNanos < 0 || seq > lastArrivalSeq) {
+            lastArrivalNanos = now;
+            lastArrivalSeq = seq;
+        }
+    }
+
+    private void dropNext() {
+        int slot = Math.floorMod(nextSeq, CAPACITY);
+        if (frames[slot] != null && sequences[slot] == nextSeq) {
+            frames[slot] = null;
+            buffered--;
+        }
+        nextSeq++;
+        trimmed++;
+    }
+
+    private int lowestBufferedSeq() {
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (frames[i] != null && sequences[i] < lowest) {
+                lowest = sequences[i];
+            }
+        }
+        return lowest;
+    }
+
+    // Repite la ultima trama con atenuacion creciente; despues de MAX_CONCEALED, silencio
+    private byte[] conceal() {
+        if (lastFrame == null) {
+            return new byte[(int) (frameNanos * SAMPLE_RATE / 1_000_000_000L) * 2];
+        }
+        byte[] out = new byte[lastFrame.length];
+        concealedInRow++;
+        if (concealedInRow > MAX_CONCEALED) {
+            return out;
+        }
+        int shift = concealedInRow;
+        for (int i = 0; i + 1 < out.length; i += 2) {
+            int sample = (short) ((lastFrame[i] << 8) | (lastFrame[i + 1] & 0xFF)) >> shift;
+            out[i] = (byte) (sample >> 8);
+            out[i + 1] = (byte) sample;
+        }
+        return out;
+    }
+}
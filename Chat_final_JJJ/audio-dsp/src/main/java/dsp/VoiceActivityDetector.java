@@ -0,0 +1,92 @@
+package dsp;
+
+// Detector de actividad de voz por energia y cruces por cero sobre PCM 16-bit big-endian.
+// El piso de ruido se adapta durante los silencios; tras la ultima trama con voz se siguen enviando
+// HANGOVER_MILLIS para no cortar finales de palabra, y durante el silencio se emite cada
+// COMFORT_NOISE_MILLIS una marca con el nivel de ruido para que el receptor rellene el hueco.
+public class VoiceActivityDetector {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int HANGOVER_MILLIS = 300;
+    private static final int COMFORT_NOISE_MILLIS = 1000;
+    // Voz = energia por encima de SPEECH_RATIO veces el piso de ruido y de un minimo absoluto
+    private static final double SPEECH_RATIO = 3.0;
+    private static final int MIN_SPEECH_LEVEL = 300;
+    // Fricativas (s, f): poca energia pero muchos cruces por cero
+    private static final double FRICATIVE_ZCR = 0.25;
+    private static final int INITIAL_NOISE_LEVEL = 100;
+
+    public enum Decision {
+        SPEECH, HANGOVER, COMFORT_NOISE, SILENCE;
+
+        public boolean shouldSend() {
+            return this != SILENCE;
+        }
+
+        // Para decidir un paquete de varias tramas: el orden del enum va de mas a menos prioritario
+        public Decision strongest(Decision other) {
+            return ordinal() <= other.ordinal() ? this : other;
+        }
+    }
+
+    private double noiseLevel = INITIAL_NOISE_LEVEL;
+    private int lastLevel;
+    private long hangoverLeftMillis;
+    private long sinceComfortNoiseMillis = COMFORT_NOISE_MILLIS;
+
+    public Decision classify(byte[] pcm, int length) {
+        return classify(pcm, 0, length);
+    }
+
+    public Decision classify(byte[] pcm, int offset, int length) {
+        int samples = length / 2;
+        if (samples == 0) {
+            return Decision.SILENCE;
+        }
+        long total = 0;
+        int crossings = 0;
+        int previous = 0;
+        for (int i = 0; i < samples; i++) {
+            int sample = (short) ((pcm[offset + i * 2] << 8) | (pcm[offset + i * 2 + 1] & 0xFF));
+            total += Math.abs(sample);
+            if (i > 0 && (sample >= 0) != (previous >= 0)) {
+                crossings++;
+            }
+            previous = sample;
+        }
+        int level = (int) (total / samples);
+        double zcr = (double) crossings / samples;
+        long frameMillis = samples * 1000L / SAMPLE_RATE;
+        lastLevel = level;
+
+        boolean speech = level > MIN_SPEECH_LEVEL && level > noiseLevel * SPEECH_RATIO
+                || level > noiseLevel * SPEECH_RATIO / 2 && zcr > FRICATIVE_ZCR && level > MIN_SPEECH_LEVEL / 2;
+
+        if (speech) {
+            hangoverLeftMillis = HANGOVER_MILLIS;
+            sinceComfortNoiseMillis = COMFORT_NOISE_MILLIS;
+            return Decision.SPEECH;
+        }
+
+        // Solo se aprende el ruido de fondo en tramas sin voz
+        noiseLevel = noiseLevel * 0.9 + level * 0.1;
+
+        if (hangoverLeftMillis > 0) {
+            hangoverLeftMillis -= frameMillis;
+            return Decision.HANGOVER;
+        }
+        sinceComfortNoiseMillis += frameMillis;
+        if (sinceComfortNoiseMillis >= COMFORT_NOISE_MILLIS) {
+            sinceComfortNoiseMillis = 0;
+            return Decision.COMFORT_NOISE;
+        }
+        return Decision.SILENCE;
+    }
+
+    public int getNoiseLevel() {
+        return (int) noiseLevel;
+    }
+
+    public int getLastLevel() {
+        return lastLevel;
+    }
+}
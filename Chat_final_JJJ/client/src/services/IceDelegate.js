@@ -340,11 +340,17 @@ class IceDelegate {
   onIncomingGroupCall(cb) { this.incomingGroupCallCB = cb; }
   onGroupUpdated(cb) { this.groupUpdatedCB = cb; }
   onGroupEnded(cb) { this.groupEndedCB = cb; }
+  onActiveSpeakers(cb) { this.activeSpeakersCB = cb; }
 
   notifyIncomingGroupCall(groupId, fromUser, members) {
     this.incomingGroupCallCB?.(groupId, fromUser, members);
   }
   notifyGroupCallUpdated(groupId, members) {
+    // Modo SFU: los hablantes activos llegan como "<groupId>#speakers"
+    if (groupId.endsWith("#speakers")) {
+      this.activeSpeakersCB?.(groupId.slice(0, -"#speakers".length), members);
+      return;
+    }
     this.groupUpdatedCB?.(groupId, members);
   }
   notifyGroupCallEnded(groupId) {
@@ -39,19 +39,38 @@ const sendCommand = async (client, command, data = null) => {
     }
 
     const timeout = setTimeout(() => {
+      client.removeListener("data", onData)
       reject(new Error("TCP response timeout"))
     }, 10000)
 
-    client.once("data", (buffer) => {
-      clearTimeout(timeout)
-      try {
-        const response = JSON.parse(buffer.toString())
-        console.log(`Respuesta recibida para ${command}:`, response)
-        resolve(response)
-      } catch (err) {
-        reject(new Error("Invalid JSON response from server"))
+    // Una linea JSON por paquete; los push del servidor (p. ej. DELIVER_MESSAGES tras LOGIN)
+    // pueden llegar en el mismo chunk y no son la respuesta al comando
+    let pending = ""
+    const onData = (buffer) => {
+      pending += buffer.toString()
+      const lines = pending.split("\n")
+      pending = lines.pop()
+      for (const line of lines) {
+        if (!line.trim()) continue
+        let response
+        try {
+          response = JSON.parse(line)
+        } catch (err) {
+          clearTimeout(timeout)
+          client.removeListener("data", onData)
+          reject(new Error("Invalid JSON response from server"))
+          return
+        }
+        if (response.command === "SUCCESS" || response.command === "ERROR") {
+          clearTimeout(timeout)
+          client.removeListener("data", onData)
+          console.log(`Respuesta recibida para ${command}:`, response)
+          resolve(response)
+          return
+        }
       }
-    })
+    }
+    client.on("data", onData)
 
     console.log(`Enviando comando ${command} con data:`, data)
     client.write(JSON.stringify(packet) + "\n")
@@ -119,12 +138,27 @@ app.post("/api/login", async (req, res) => {
 
       connections.set(sessionId, { client, user })
 
+      let pendingNotifications = ""
       client.on("data", (buffer) => {
-        try {
-          const notification = JSON.parse(buffer.toString())
-          console.log(`Notification received for user ${user.username}:`, notification.command)
-        } catch (err) {
-          console.error("Error parsing notification:", err.message)
+        pendingNotifications += buffer.toString()
+        const lines = pendingNotifications.split("\n")
+        pendingNotifications = lines.pop()
+        for (const line of lines) {
+          if (!line.trim()) continue
+          try {
+            const notification = JSON.parse(line)
+            console.log(`Notification received for user ${user.username}:`, notification.command)
+            // La web lee el historial por GET_HISTORY: confirmar la bandeja offline para no recibirla otra vez
+            if (notification.command === "DELIVER_MESSAGES") {
+              const page = JSON.parse(notification.data)
+              const last = page.messages[page.messages.length - 1]
+              if (last) {
+                client.write(JSON.stringify({ command: "ACK_DELIVERY", data: String(last.id) }) + "\n")
+              }
+            }
+          } catch (err) {
+            console.error("Error parsing notification:", err.message)
+          }
         }
       })
 
@@ -314,6 +348,26 @@ app.post("/api/messages/send-group", async (req, res) => {
   }
 })
 
+// Paginacion opcional por ?before=<id>&after=<id>&limit=<n>; sin parametros se pide la pagina mas reciente
+const historyQuery = (params, target) => {
+  if (params.before === undefined && params.after === undefined && params.limit === undefined) {
+    return null
+  }
+  const query = { ...target }
+  if (params.before !== undefined) query.beforeId = parseInt(params.before)
+  if (params.after !== undefined) query.afterId = parseInt(params.after)
+  if (params.limit !== undefined) query.limit = parseInt(params.limit)
+  return JSON.stringify(query)
+}
+
+const historyResponse = (data) => {
+  const parsed = JSON.parse(data)
+  if (Array.isArray(parsed)) {
+    return { success: true, messages: parsed }
+  }
+  return { success: true, messages: parsed.messages, hasMore: parsed.hasMore }
+}
+
 // Get message history with user endpoint
 app.get("/api/messages/history/:userId", async (req, res) => {
   const sessionId = req.headers["session-id"]
@@ -329,14 +383,11 @@ app.get("/api/messages/history/:userId", async (req, res) => {
   }
 
   try {
-    const response = await sendCommand(connection.client, "GET_HISTORY", parseInt(userId))
+    const query = historyQuery(req.query, { userId: parseInt(userId) })
+    const response = await sendCommand(connection.client, "GET_HISTORY", query || parseInt(userId))
 
     if (response.command === "SUCCESS") {
-      const messages = JSON.parse(response.data)
-      res.json({
-        success: true,
-        messages: messages,
-      })
+      res.json(historyResponse(response.data))
     } else {
       res.status(400).json({
         success: false,
@@ -366,14 +417,11 @@ app.get("/api/messages/group/:groupId", async (req, res) => {
   }
 
   try {
-    const response = await sendCommand(connection.client, "GET_GROUP_MESSAGES", parseInt(groupId))
+    const query = historyQuery(req.query, { groupId: parseInt(groupId) })
+    const response = await sendCommand(connection.client, "GET_GROUP_MESSAGES", query || parseInt(groupId))
 
     if (response.command === "SUCCESS") {
-      const messages = JSON.parse(response.data)
-      res.json({
-        success: true,
-        messages: messages,
-      })
+      res.json(historyResponse(response.data))
     } else {
       res.status(400).json({
         success: false,
@@ -402,10 +450,24 @@ app.get("/api/users", async (req, res) => {
   }
 
   try {
-    const response = await sendCommand(connection.client, "GET_USERS")
+    // Copia del directorio por sesion: el servidor solo envia lo cambiado desde la ultima version
+    if (!connection.directory) {
+      connection.directory = { version: 0, users: new Map() }
+    }
+    const directory = connection.directory
+    const response = await sendCommand(connection.client, "GET_USERS", String(directory.version))
 
     if (response.command === "SUCCESS") {
-      const users = JSON.parse(response.data)
+      const delta = JSON.parse(response.data)
+      if (delta.full) {
+        directory.users.clear()
+      }
+      for (const user of delta.users) {
+        directory.users.set(user.id, user)
+      }
+      directory.version = delta.version
+
+      const users = Array.from(directory.users.values()).sort((a, b) => a.username.localeCompare(b.username))
       res.json({
         success: true,
         users: users,
@@ -0,0 +1,79 @@
+package chat.audio.codec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Costo por bloque de cada codec sobre un bloque de captura (10240 bytes, ~116 ms) sintetico.
+// Tamaño comprimido y SNR no son tiempos: se imprimen una vez en el setup de cada codec.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark {
+    private static final int FRAME_BYTES = 10240;
+
+    @Param({"pcm", "ulaw", "adpcm"})
+    String codecName;
+
+    private VoiceCodec codec;
+    private byte[] frame;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        codec = VoiceCodecs.forName(codecName);
+        frame = syntheticVoice(FRAME_BYTES);
+        encoded = codec.encode(frame, frame.length);
+        byte[] decoded = codec.decode(encoded, 0, encoded.length);
+        System.out.printf("%n%s: %d bytes (%.1fx), snr %.1f dB%n", codecName, encoded.length,
+                (double) frame.length / encoded.length, snr(frame, decoded));
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(frame, frame.length);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return codec.decode(encoded, 0, encoded.length);
+    }
+
+    // Mezcla de armonicos de voz con algo de ruido, en PCM 16-bit big-endian a 44.1 kHz
+    private static byte[] syntheticVoice(int bytes) {
+        byte[] out = new byte[bytes];
+        Random random = new Random(42);
+        for (int i = 0; i < bytes / 2; i++) {
+            double t = i / (double) Resampler.CAPTURE_RATE;
+            double v = 6000 * Math.sin(2 * Math.PI * 180 * t)
+                    + 3000 * Math.sin(2 * Math.PI * 720 * t)
+                    + 1500 * Math.sin(2 * Math.PI * 2400 * t)
+                    + 300 * random.nextGaussian();
+            int sample = (int) v;
+            out[i * 2] = (byte) (sample >> 8);
+            out[i * 2 + 1] = (byte) sample;
+        }
+        return out;
+    }
+
+    private static double snr(byte[] original, byte[] decoded) {
+        int samples = Math.min(original.length, decoded.length) / 2;
+        double signal = 0;
+        double noise = 0;
+        for (int i = 0; i < samples; i++) {
+            int a = (short) ((original[i * 2] << 8) | (original[i * 2 + 1] & 0xFF));
+            int b = (short) ((decoded[i * 2] << 8) | (decoded[i * 2 + 1] & 0xFF));
+            signal += (double) a * a;
+            noise += (double) (a - b) * (a - b);
+        }
+        return noise == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(signal / noise);
+    }
+}
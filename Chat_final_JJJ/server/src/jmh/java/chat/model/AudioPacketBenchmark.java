@@ -0,0 +1,77 @@
+package chat.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compara AudioPacket.toBytes/fromBytes con AudioPacketWriter/AudioPacketView para un paquete de voz.
+// 1764 bytes = 20 ms PCM, 441 = 20 ms mu-law, 10240 = bloque de nota de voz.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AudioPacketBenchmark {
+    @Param({"441", "1764", "10240"})
+    int audioBytes;
+
+    private byte[] audio;
+    private byte[] serialized;
+    private AudioPacketWriter writer;
+    private AudioPacketView view;
+
+    @Setup
+    public void setup() {
+        audio = new byte[audioBytes];
+        new Random(42).nextBytes(audio);
+        serialized = new AudioPacket(1, 2, 7, audio).toBytes();
+        writer = new AudioPacketWriter(65507);
+        view = new AudioPacketView();
+    }
+
+    @Benchmark
+    public byte[] encodeLegacy() {
+        AudioPacket packet = new AudioPacket(1, 2, 7, audio);
+        packet.setCodecId(1);
+        return packet.toBytes();
+    }
+
+    @Benchmark
+    public int encodeWriter() {
+        return writer.write(1, 2, 7, System.currentTimeMillis(), 1, audio, 0, audio.length).length();
+    }
+
+    @Benchmark
+    public void decodeLegacy(Blackhole bh) {
+        AudioPacket packet = AudioPacket.fromBytes(serialized);
+        bh.consume(packet.getReceiverId());
+        bh.consume(packet.getAudioData());
+    }
+
+    @Benchmark
+    public void decodeView(Blackhole bh) {
+        view.wrap(serialized, 0, serialized.length);
+        bh.consume(view.getReceiverId());
+        bh.consume(view.getPayloadOffset() + view.getDataLength());
+    }
+
+    // Camino del relay: solo se leen los ids para decidir el destino
+    @Benchmark
+    public int routeLegacy() {
+        AudioPacket packet = AudioPacket.fromBytes(serialized);
+        return packet.getSenderId() ^ packet.getReceiverId();
+    }
+
+    @Benchmark
+    public int routeView() {
+        view.wrap(serialized, 0, serialized.length);
+        return view.getSenderId() ^ view.getReceiverId();
+    }
+}
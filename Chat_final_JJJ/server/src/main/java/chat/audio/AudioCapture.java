@@ -3,6 +3,8 @@ package chat.audio;
 import javax.sound.sampled.*;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 public class AudioCapture {
     private static final int SAMPLE_RATE = 44100;
@@ -10,7 +12,8 @@ public class AudioCapture {
     private static final int CHANNELS = 1;
     private static final boolean SIGNED = true;
     private static final boolean BIG_ENDIAN = true;
-    private static final int BUFFER_SIZE = 10240;
+    // Las notas de voz no son interactivas y se graban en bloques grandes
+    private static final int NOTE_CHUNK_SIZE = 10240;
 
     private TargetDataLine microphone;
     private AudioFormat format;
@@ -28,7 +31,7 @@ public class AudioCapture {
         }
 
         microphone = (TargetDataLine) AudioSystem.getLine(info);
-        microphone.open(format);
+        microphone.open(format, VoiceFrames.lineBufferBytes());
         microphone.start();
         isCapturing = true;
 
@@ -40,7 +43,7 @@ public class AudioCapture {
             return null;
         }
 
-        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] buffer = new byte[VoiceFrames.frameBytes()];
         int bytesRead = microphone.read(buffer, 0, buffer.length);
 
         if (bytesRead > 0) {
@@ -71,6 +74,23 @@ public class AudioCapture {
         return outputStream.toByteArray();
     }
 
+    // Entrega cada bloque capturado apenas se lee, sin acumular la grabacion completa
+    public void recordStreaming(int durationMillis, Consumer<byte[]> sink) throws LineUnavailableException {
+        init();
+
+        byte[] buffer = new byte[NOTE_CHUNK_SIZE];
+        long startTime = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() - startTime < durationMillis) {
+            int bytesRead = microphone.read(buffer, 0, buffer.length);
+            if (bytesRead > 0) {
+                sink.accept(Arrays.copyOf(buffer, bytesRead));
+            }
+        }
+
+        stopCapture();
+    }
+
     public void stopCapture() {
         isCapturing = false;
         if (microphone != null) {
@@ -1,8 +1,10 @@
 package chat.audio;
 
+import dsp.ComfortNoise;
+import dsp.JitterBuffer;
+
 import javax.sound.sampled.*;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 public class AudioPlayback extends Thread {
     private static final int SAMPLE_RATE = 44100;
@@ -10,18 +12,27 @@ public class AudioPlayback extends Thread {
     private static final int CHANNELS = 1;
     private static final boolean SIGNED = true;
     private static final boolean BIG_ENDIAN = true;
+    // Ruido de confort: bloques de 20 ms mientras la linea tenga menos de eso pendiente
+    private static final int COMFORT_NOISE_SAMPLES = SAMPLE_RATE / 50;
+    private static final long COMFORT_NOISE_HOLD_MILLIS = 2500;
 
-    private static Queue<byte[]> audioBytes = new LinkedList<>();
-    private boolean isPlay;
+    private final JitterBuffer jitterBuffer = new JitterBuffer();
+    // Secuencia local para el audio que llega sin numero (p. ej. la mezcla local del SFU)
+    private int localSequence;
+    private volatile boolean isPlay;
+    private volatile boolean running = true;
     private DataLine.Info infoSpeaker;
     private SourceDataLine speaker;
     private AudioFormat format;
+    private volatile int comfortNoiseLevel;
+    private volatile long comfortNoiseUntil;
 
     public AudioPlayback() throws LineUnavailableException {
         this.format = new AudioFormat(SAMPLE_RATE, SAMPLE_SIZE_BITS, CHANNELS, SIGNED, BIG_ENDIAN);
         infoSpeaker = new DataLine.Info(SourceDataLine.class, format);
         speaker = (SourceDataLine) AudioSystem.getLine(infoSpeaker);
-        speaker.open(format);
+        // La linea solo guarda unas pocas tramas: el resto de la espera lo decide el jitter buffer
+        speaker.open(format, VoiceFrames.lineBufferBytes());
         speaker.start();
     }
 
@@ -29,9 +40,33 @@ public class AudioPlayback extends Thread {
         this.isPlay = isPlay;
     }
 
-    public void play(byte[] batch) {
-        audioBytes.add(batch);
-        System.out.println("add bytes");
+    public void play(int sequenceNumber, byte[] batch) {
+        comfortNoiseUntil = 0;
+        jitterBuffer.put(sequenceNumber, batch);
+    }
+
+    public synchronized void play(byte[] batch) {
+        play(localSequence++, batch);
+    }
+
+    // El emisor suprimio su silencio: se rellena con ruido de ese nivel hasta que vuelva la voz
+    // o pase COMFORT_NOISE_HOLD_MILLIS sin una nueva marca
+    public void comfortNoise(int level) {
+        comfortNoiseLevel = level;
+        comfortNoiseUntil = System.currentTimeMillis() + COMFORT_NOISE_HOLD_MILLIS;
+        jitterBuffer.markSilence();
+    }
+
+    private void fillWithComfortNoise() {
+        if (System.currentTimeMillis() > comfortNoiseUntil) {
+            return;
+        }
+        int pending = speaker.getBufferSize() - speaker.available();
+        if (pending >= COMFORT_NOISE_SAMPLES * 2) {
+            return;
+        }
+        byte[] noise = ComfortNoise.generate(comfortNoiseLevel, COMFORT_NOISE_SAMPLES);
+        speaker.write(noise, 0, noise.length);
     }
 
     // Metodo para reproduccion directa (usado en notas de voz)
@@ -50,30 +85,44 @@ public class AudioPlayback extends Thread {
         }
     }
 
+    // La escritura en la linea marca el ritmo; sin tramas se espera en el jitter buffer hasta 20 ms
+    // y se rellena con ruido de confort si corresponde
     @Override
     public void run() {
-        while (true) {
+        while (running) {
             try {
                 if (isPlay) {
-                    if (!audioBytes.isEmpty()) {
-                        byte[] current = audioBytes.poll();
-                        if (current != null) {
-                            System.out.println("Reproduciendo audio ...");
-                            speaker.write(current, 0, current.length);
-                        }
+                    byte[] current = jitterBuffer.take(20, TimeUnit.MILLISECONDS);
+                    if (current != null) {
+                        speaker.write(current, 0, current.length);
                     } else {
-                        Thread.yield();
+                        fillWithComfortNoise();
                     }
                 } else {
-                    Thread.sleep(5000);
+                    Thread.sleep(100);
                 }
+            } catch (InterruptedException e) {
+                break;
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
     }
 
+    public String getJitterStats() {
+        return jitterBuffer.stats();
+    }
+
+    public long getBufferedDelayMillis() {
+        return jitterBuffer.targetDelayMillis();
+    }
+
+    public long getLineDelayMillis() {
+        return (speaker.getBufferSize() - speaker.available()) * 1000L / (SAMPLE_RATE * 2);
+    }
+
     public void stopPlayback() {
+        running = false;
         if (speaker != null) {
             speaker.drain();
             speaker.stop();
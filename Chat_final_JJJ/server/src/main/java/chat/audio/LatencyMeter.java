@@ -0,0 +1,41 @@
+package chat.audio;
+
+import java.util.Arrays;
+
+// Guarda las ultimas muestras de latencia (ms) para sacar promedio y percentiles
+public class LatencyMeter {
+    private static final int WINDOW = 1024;
+
+    private final long[] samples = new long[WINDOW];
+    private long total;
+    private int count;
+    private int next;
+
+    public synchronized void record(long millis) {
+        if (count == WINDOW) {
+            total -= samples[next];
+        } else {
+            count++;
+        }
+        samples[next] = millis;
+        total += millis;
+        next = (next + 1) % WINDOW;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    public synchronized long average() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    public synchronized long percentile(int p) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, count * p / 100)];
+    }
+}
@@ -0,0 +1,46 @@
+package chat.audio;
+
+import java.nio.ByteBuffer;
+
+// Cola circular de muestras PCM 16-bit de un participante; si se llena descarta lo mas viejo
+// para que la latencia de la mezcla quede acotada.
+public class SampleFifo {
+    private final short[] ring;
+    private int head = 0;
+    private int size = 0;
+
+    public SampleFifo(int capacitySamples) {
+        this.ring = new short[capacitySamples];
+    }
+
+    // Decodifica PCM 16-bit big-endian (formato de AudioCapture) desde una posicion absoluta
+    public void write(ByteBuffer data, int offset, int byteLength) {
+        int samples = byteLength / 2;
+        for (int i = 0; i < samples; i++) {
+            if (size == ring.length) {
+                head = (head + 1) % ring.length;
+                size--;
+            }
+            ring[(head + size) % ring.length] = data.getShort(offset + i * 2);
+            size++;
+        }
+    }
+
+    // Copia hasta dst.length muestras y completa con silencio; retorna cuantas eran reales
+    public int read(int[] dst) {
+        int n = Math.min(size, dst.length);
+        for (int i = 0; i < n; i++) {
+            dst[i] = ring[(head + i) % ring.length];
+        }
+        for (int i = n; i < dst.length; i++) {
+            dst[i] = 0;
+        }
+        head = (head + n) % ring.length;
+        size -= n;
+        return n;
+    }
+
+    public int available() {
+        return size;
+    }
+}
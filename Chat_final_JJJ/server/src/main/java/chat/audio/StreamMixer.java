@@ -0,0 +1,84 @@
+package chat.audio;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Mezcla local de los flujos que reenvia el servidor en modo SFU: cada emisor tiene su cola de
+// muestras y cada FRAME_MILLIS se suman y se entregan como un solo bloque PCM 16-bit big-endian.
+public class StreamMixer implements Runnable {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAME_MILLIS = 20;
+    private static final int FRAME_SAMPLES = SAMPLE_RATE * FRAME_MILLIS / 1000;
+    private static final int FIFO_SAMPLES = SAMPLE_RATE / 2;
+
+    private final Map<Integer, SampleFifo> streams = new ConcurrentHashMap<>();
+    private final Consumer<byte[]> output;
+    private final int[] frame = new int[FRAME_SAMPLES];
+    private final int[] sum = new int[FRAME_SAMPLES];
+    private volatile boolean running = true;
+
+    public StreamMixer(Consumer<byte[]> output) {
+        this.output = output;
+        Thread thread = new Thread(this, "voice-stream-mixer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void write(int senderId, byte[] audioData) {
+        SampleFifo fifo = streams.computeIfAbsent(senderId, id -> new SampleFifo(FIFO_SAMPLES));
+        synchronized (fifo) {
+            fifo.write(ByteBuffer.wrap(audioData), 0, audioData.length);
+        }
+    }
+
+    @Override
+    public void run() {
+        long next = System.nanoTime();
+        while (running) {
+            next += FRAME_MILLIS * 1_000_000L;
+            mixFrame();
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep / 1_000_000L, (int) (sleep % 1_000_000L));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void mixFrame() {
+        int active = 0;
+        Arrays.fill(sum, 0);
+        for (SampleFifo fifo : streams.values()) {
+            int read;
+            synchronized (fifo) {
+                read = fifo.available() > 0 ? fifo.read(frame) : 0;
+            }
+            if (read > 0) {
+                active++;
+                for (int i = 0; i < FRAME_SAMPLES; i++) {
+                    sum[i] += frame[i];
+                }
+            }
+        }
+        if (active == 0) {
+            return;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(FRAME_SAMPLES * 2);
+        for (int i = 0; i < FRAME_SAMPLES; i++) {
+            out.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sum[i])));
+        }
+        output.accept(out.array());
+    }
+
+    public void stop() {
+        running = false;
+        streams.clear();
+    }
+}
@@ -0,0 +1,55 @@
+package chat.audio;
+
+import javax.sound.sampled.LineUnavailableException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Reproduce una nota de voz mientras sigue llegando; el buffer de chunks pendientes es acotado
+public class StreamingPlayback implements Runnable {
+    private static final int MAX_PENDING_CHUNKS = 64;
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+    private final AudioPlayback playback;
+    private long bytesPlayed;
+
+    public StreamingPlayback() throws LineUnavailableException {
+        this.playback = new AudioPlayback();
+        Thread thread = new Thread(this, "voice-note-playback");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void offer(byte[] chunk) {
+        if (!chunks.offer(chunk)) {
+            System.err.println("Buffer de reproduccion lleno, descartando audio");
+        }
+    }
+
+    public void finish() {
+        try {
+            chunks.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                byte[] chunk = chunks.take();
+                if (chunk == END) {
+                    break;
+                }
+                playback.playChunk(chunk);
+                bytesPlayed += chunk.length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            playback.stopPlayback();
+            System.out.println("Reproduccion completada (" + bytesPlayed + " bytes)");
+        }
+    }
+}
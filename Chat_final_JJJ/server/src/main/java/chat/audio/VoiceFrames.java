@@ -0,0 +1,34 @@
+package chat.audio;
+
+// Tamano de trama de las llamadas: -Dchat.voice.frameMillis=10|20|40 fija cuanto audio se captura
+// antes de enviarlo y -Dchat.voice.framesPerPacket=N agrupa N tramas por paquete para repartir la
+// cabecera (AudioPacket + UDP/IP) cuando la red aguanta algo mas de latencia.
+public final class VoiceFrames {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int BYTES_PER_SAMPLE = 2;
+    // Las lineas de captura y reproduccion guardan estas tramas como maximo
+    private static final int LINE_FRAMES = 4;
+
+    private VoiceFrames() {
+    }
+
+    public static int frameMillis() {
+        int millis = Integer.getInteger("chat.voice.frameMillis", 20);
+        if (millis != 10 && millis != 20 && millis != 40) {
+            throw new IllegalArgumentException("chat.voice.frameMillis debe ser 10, 20 o 40: " + millis);
+        }
+        return millis;
+    }
+
+    public static int framesPerPacket() {
+        return Math.max(1, Integer.getInteger("chat.voice.framesPerPacket", 1));
+    }
+
+    public static int frameBytes() {
+        return SAMPLE_RATE * frameMillis() / 1000 * BYTES_PER_SAMPLE;
+    }
+
+    public static int lineBufferBytes() {
+        return frameBytes() * LINE_FRAMES;
+    }
+}
@@ -0,0 +1,151 @@
+package chat.audio.codec;
+
+import java.nio.ByteBuffer;
+
+// IMA-ADPCM a 16 kHz: 4 bits por muestra, unas 11 veces menos que el PCM de 44.1 kHz.
+// Cada bloque lleva su estado inicial (cantidad de muestras, predictor e indice) y se decodifica
+// solo, asi un paquete perdido no desincroniza al receptor.
+public class ImaAdpcmCodec implements VoiceCodec {
+    public static final int ID = 2;
+    private static final int HEADER_SIZE = 5;
+
+    private static final int[] INDEX_TABLE = {
+            -1, -1, -1, -1, 2, 4, 6, 8,
+            -1, -1, -1, -1, 2, 4, 6, 8
+    };
+
+    private static final int[] STEP_TABLE = {
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+            50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230,
+            253, 279, 307, 337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963,
+            1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066, 2272, 2499, 2749, 3024, 3327,
+            3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487,
+            12635, 13899, 15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "adpcm";
+    }
+
+    @Override
+    public byte[] encode(byte[] pcm, int length) {
+        short[] samples = Resampler.down(pcm, length);
+        int count = samples.length;
+        byte[] out = new byte[HEADER_SIZE + (count + 1) / 2];
+        if (count == 0) {
+            return out;
+        }
+
+        int predictor = samples[0];
+        int index = 0;
+        out[0] = (byte) (count >> 8);
+        out[1] = (byte) count;
+        out[2] = (byte) (predictor >> 8);
+        out[3] = (byte) predictor;
+        out[4] = (byte) index;
+
+        for (int i = 0; i < count; i++) {
+            int step = STEP_TABLE[index];
+            int diff = samples[i] - predictor;
+            int code = 0;
+            if (diff < 0) {
+                code = 8;
+                diff = -diff;
+            }
+            int delta = step >> 3;
+            if (diff >= step) {
+                code |= 4;
+                diff -= step;
+                delta += step;
+            }
+            step >>= 1;
+            if (diff >= step) {
+                code |= 2;
+                diff -= step;
+                delta += step;
+            }
+            step >>= 1;
+            if (diff >= step) {
+                code |= 1;
+                delta += step;
+            }
+
+            predictor += (code & 8) != 0 ? -delta : delta;
+            predictor = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predictor));
+            index = Math.max(0, Math.min(STEP_TABLE.length - 1, index + INDEX_TABLE[code]));
+
+            int pos = HEADER_SIZE + i / 2;
+            out[pos] |= (i & 1) == 0 ? (byte) (code << 4) : (byte) code;
+        }
+        return out;
+    }
+
+    @Override
+    public byte[] decode(byte[] data, int offset, int length) {
+        if (length < HEADER_SIZE) {
+            return new byte[0];
+        }
+        int count = ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+        count = Math.min(count, (length - HEADER_SIZE) * 2);
+        int predictor = (short) ((data[offset + 2] << 8) | (data[offset + 3] & 0xFF));
+        int index = Math.max(0, Math.min(STEP_TABLE.length - 1, data[offset + 4]));
+
+        short[] samples = new short[count];
+        for (int i = 0; i < count; i++) {
+            int b = data[offset + HEADER_SIZE + i / 2];
+            int code = (i & 1) == 0 ? (b >> 4) & 0x0F : b & 0x0F;
+            int step = STEP_TABLE[index];
+
+            int delta = step >> 3;
+            if ((code & 4) != 0) delta += step;
+            if ((code & 2) != 0) delta += step >> 1;
+            if ((code & 1) != 0) delta += step >> 2;
+
+            predictor += (code & 8) != 0 ? -delta : delta;
+            predictor = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predictor));
+            index = Math.max(0, Math.min(STEP_TABLE.length - 1, index + INDEX_TABLE[code]));
+            samples[i] = (short) predictor;
+        }
+        return Resampler.up(samples, count);
+    }
+
+    // Amplitud media en la escala de PCM 16-bit, sin remuestrear ni reservar memoria. El predictor
+    // depende de todas las muestras anteriores, asi que se recorren todas y se promedia una de cada stride.
+    public static int level(ByteBuffer data, int offset, int length, int stride) {
+        if (length < HEADER_SIZE) {
+            return 0;
+        }
+        int count = ((data.get(offset) & 0xFF) << 8) | (data.get(offset + 1) & 0xFF);
+        count = Math.min(count, (length - HEADER_SIZE) * 2);
+        int predictor = (short) ((data.get(offset + 2) << 8) | (data.get(offset + 3) & 0xFF));
+        int index = Math.max(0, Math.min(STEP_TABLE.length - 1, data.get(offset + 4)));
+
+        long total = 0;
+        int measured = 0;
+        for (int i = 0; i < count; i++) {
+            int b = data.get(offset + HEADER_SIZE + i / 2);
+            int code = (i & 1) == 0 ? (b >> 4) & 0x0F : b & 0x0F;
+            int step = STEP_TABLE[index];
+
+            int delta = step >> 3;
+            if ((code & 4) != 0) delta += step;
+            if ((code & 2) != 0) delta += step >> 1;
+            if ((code & 1) != 0) delta += step >> 2;
+
+            predictor += (code & 8) != 0 ? -delta : delta;
+            predictor = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predictor));
+            index = Math.max(0, Math.min(STEP_TABLE.length - 1, index + INDEX_TABLE[code]));
+            if (i % stride == 0) {
+                total += Math.abs(predictor);
+                measured++;
+            }
+        }
+        return measured == 0 ? 0 : (int) (total / measured);
+    }
+}
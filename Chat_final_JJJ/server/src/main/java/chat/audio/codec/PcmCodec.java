@@ -0,0 +1,28 @@
+package chat.audio.codec;
+
+import java.util.Arrays;
+
+// Sin compresion: el formato original de la captura
+public class PcmCodec implements VoiceCodec {
+    public static final int ID = 0;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "pcm";
+    }
+
+    @Override
+    public byte[] encode(byte[] pcm, int length) {
+        return length == pcm.length ? pcm : Arrays.copyOf(pcm, length);
+    }
+
+    @Override
+    public byte[] decode(byte[] data, int offset, int length) {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+}
@@ -0,0 +1,53 @@
+package chat.audio.codec;
+
+// Conversion entre 44.1 kHz (captura/reproduccion) y 16 kHz (banda ancha de voz). Cada bloque se
+// convierte por separado para que la perdida de un paquete no afecte a los siguientes.
+public final class Resampler {
+    public static final int CAPTURE_RATE = 44100;
+    public static final int VOICE_RATE = 16000;
+
+    private Resampler() {
+    }
+
+    public static int voiceSamples(int captureSamples) {
+        return (int) (((long) captureSamples * VOICE_RATE + CAPTURE_RATE / 2) / CAPTURE_RATE);
+    }
+
+    public static int captureSamples(int voiceSamples) {
+        return (int) (((long) voiceSamples * CAPTURE_RATE + VOICE_RATE / 2) / VOICE_RATE);
+    }
+
+    // Diezmado con promedio de cada ventana de entrada, que hace de filtro pasa bajos contra el aliasing
+    public static short[] down(byte[] pcm, int length) {
+        int inSamples = length / 2;
+        int outSamples = voiceSamples(inSamples);
+        short[] out = new short[outSamples];
+        for (int i = 0; i < outSamples; i++) {
+            int start = (int) ((long) i * CAPTURE_RATE / VOICE_RATE);
+            int end = Math.min(inSamples, (int) ((long) (i + 1) * CAPTURE_RATE / VOICE_RATE));
+            int sum = 0;
+            for (int j = start; j < end; j++) {
+                sum += (short) ((pcm[j * 2] << 8) | (pcm[j * 2 + 1] & 0xFF));
+            }
+            out[i] = end > start ? (short) (sum / (end - start)) : 0;
+        }
+        return out;
+    }
+
+    // Interpolacion lineal de vuelta a 44.1 kHz, escrita como PCM 16-bit big-endian
+    public static byte[] up(short[] samples, int count) {
+        int outSamples = captureSamples(count);
+        byte[] out = new byte[outSamples * 2];
+        for (int i = 0; i < outSamples; i++) {
+            long pos = (long) i * VOICE_RATE;
+            int index = (int) (pos / CAPTURE_RATE);
+            int frac = (int) (pos % CAPTURE_RATE);
+            int a = index < count ? samples[index] : 0;
+            int b = index + 1 < count ? samples[index + 1] : a;
+            int sample = a + (int) ((long) (b - a) * frac / CAPTURE_RATE);
+            out[i * 2] = (byte) (sample >> 8);
+            out[i * 2 + 1] = (byte) sample;
+        }
+        return out;
+    }
+}
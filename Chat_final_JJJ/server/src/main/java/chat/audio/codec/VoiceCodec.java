@@ -0,0 +1,15 @@
+package chat.audio.codec;
+
+// Etapa de codificacion entre la captura (PCM 44.1 kHz 16-bit big-endian) y el AudioPacket.
+// El id viaja en la cabecera del paquete para que el receptor elija el decodificador.
+public interface VoiceCodec {
+
+    int getId();
+
+    String getName();
+
+    byte[] encode(byte[] pcm, int length);
+
+    // Devuelve PCM 44.1 kHz 16-bit big-endian listo para AudioPlayback
+    byte[] decode(byte[] data, int offset, int length);
+}
@@ -0,0 +1,39 @@
+package chat.audio.codec;
+
+// Registro de codecs por id (cabecera del AudioPacket) y por nombre (-Dchat.voice.codec)
+public final class VoiceCodecs {
+    // No es un codec: marca de ruido de confort con el nivel del fondo (ver dsp.ComfortNoise)
+    public static final int COMFORT_NOISE_ID = 15;
+
+    private static final VoiceCodec[] BY_ID = {
+            new PcmCodec(), new MuLawCodec(), new ImaAdpcmCodec()
+    };
+
+    private VoiceCodecs() {
+    }
+
+    public static VoiceCodec forId(int id) {
+        if (id < 0 || id >= BY_ID.length) {
+            throw new IllegalArgumentException("Codec de voz desconocido: " + id);
+        }
+        return BY_ID[id];
+    }
+
+    // false para el marcador de ruido de confort y para ids que no son de ningun codec
+    public static boolean isCodec(int id) {
+        return id >= 0 && id < BY_ID.length;
+    }
+
+    public static VoiceCodec forName(String name) {
+        for (VoiceCodec codec : BY_ID) {
+            if (codec.getName().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Codec de voz desconocido: " + name);
+    }
+
+    public static VoiceCodec fromSystemProperty() {
+        return forName(System.getProperty("chat.voice.codec", "pcm"));
+    }
+}
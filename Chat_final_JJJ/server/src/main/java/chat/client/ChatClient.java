@@ -1,6 +1,7 @@
 package chat.client;
 
 import chat.model.*;
+import chat.protocol.BinaryCodec;
 import chat.protocol.Protocol;
 import chat.protocol.Protocol.Command;
 import chat.protocol.Protocol.Packet;
@@ -12,14 +13,21 @@ import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ChatClient {
     private static final String SERVER_HOST = "localhost";
     private static final int SERVER_PORT = 5000;
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    // -Dchat.protocol=binary o argumento --binary: frames binarios y audio sin Base64
+    private final boolean binaryProtocol;
 
     private Socket socket;
     private BufferedReader in;
     private PrintWriter out;
+    private DataInputStream binaryIn;
+    private DataOutputStream binaryOut;
     private Scanner scanner;
     private User currentUser;
     private boolean running = true;
@@ -32,15 +40,35 @@ public class ChatClient {
     private AtomicBoolean inCall = new AtomicBoolean(false);
     private volatile Call currentCall = null;
 
+    // Notas de voz por streaming: las propias por noteId y las entrantes por "remitente:noteId"
+    private final AtomicInteger nextNoteId = new AtomicInteger(1);
+    private final Map<String, chat.audio.StreamingPlayback> incomingVoiceNotes = new ConcurrentHashMap<>();
+    // Copia local del directorio: GET_USERS solo trae lo cambiado desde directoryVersion
+    private final Map<Integer, User> directory = new ConcurrentHashMap<>();
+    private volatile long directoryVersion;
+
     public ChatClient() {
+        this("binary".equalsIgnoreCase(System.getProperty("chat.protocol", "json")));
+    }
+
+    public ChatClient(boolean binaryProtocol) {
+        this.binaryProtocol = binaryProtocol;
         scanner = new Scanner(System.in);
     }
 
     public void start() {
         try {
             socket = new Socket(SERVER_HOST, SERVER_PORT);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(), true);
+            if (binaryProtocol) {
+                binaryIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                binaryOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                // El primer byte negocia el protocolo binario con el servidor
+                binaryOut.write(BinaryCodec.MAGIC);
+                binaryOut.flush();
+            } else {
+                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                out = new PrintWriter(socket.getOutputStream(), true);
+            }
 
             // Iniciar hilo para recibir mensajes
             new Thread(this::receiveMessages).start();
@@ -145,6 +173,8 @@ public class ChatClient {
                 System.out.println("9. Enviar nota de voz");
                 System.out.println("10. Ver usuarios");
                 System.out.println("11. Cerrar sesion");
+                System.out.println("12. Escuchar nota de voz guardada");
+                System.out.println("13. Cambiar mi estado");
                 System.out.print("\nSeleccione una opcion: ");
             }
 
@@ -179,7 +209,11 @@ public class ChatClient {
                     sendPacket(accept);
 
                     System.out.println(" -- Llamada aceptada. Conectando... --");
-                    voiceClient.startCall(call.getCallerId());
+                    if (call.isGroupCall()) {
+                        voiceClient.startGroupCall(call.getReceiverId());
+                    } else {
+                        voiceClient.startCall(call.getCallerId());
+                    }
 
                     System.out.println("En llamada. Presiona ENTER para colgar...");
 
@@ -252,6 +286,12 @@ public class ChatClient {
                 case "11":
                     logout();
                     return;
+                case "12":
+                    playStoredVoiceNote();
+                    break;
+                case "13":
+                    updateStatus();
+                    break;
                 default:
                     System.out.println("Opción inválida");
             }
@@ -570,14 +610,7 @@ public class ChatClient {
             System.out.println("Usando duración por defecto: 5 segundos");
         }
 
-        Message message = new Message(currentUser.getId(), currentUser.getUsername(),
-                "Nota de voz (" + duration + " segundos)");
-        message.setReceiverId(receiverId);
-        message.setType(Message.MessageType.AUDIO);
-
-        Packet packet = new Packet(Command.SEND_MESSAGE, Protocol.toJson(message));
-        sendPacket(packet);
-
+        // El servidor guarda el audio y registra el mensaje en el historial al terminar la nota
         sendVoiceNoteTCP(receiverId, null, duration);
     }
 
@@ -621,45 +654,60 @@ public class ChatClient {
             System.out.println("Usando duración por defecto: 5 segundos");
         }
 
-        Message message = new Message(currentUser.getId(), currentUser.getUsername(),
-                "Nota de voz (" + duration + " segundos)");
-        message.setGroupId(groupId);
-        message.setType(Message.MessageType.AUDIO);
+        sendVoiceNoteTCP(0, groupId, duration);
+    }
 
-        Packet packet = new Packet(Command.SEND_GROUP_MESSAGE, Protocol.toJson(message));
-        sendPacket(packet);
+    // Pide al servidor el audio de una nota del historial ([nota N]); llega como VOICE_NOTE_DATA
+    private void playStoredVoiceNote() {
+        System.out.print("\nID de la nota: ");
+        String idStr;
+        synchronized (scannerLock) {
+            idStr = scanner.nextLine().trim();
+        }
+        try {
+            long voiceNoteId = Long.parseLong(idStr);
+            sendPacket(new Packet(Command.GET_VOICE_NOTE, String.valueOf(voiceNoteId)));
+        } catch (NumberFormatException e) {
+            System.out.println("Error: ID invalido");
+        }
+    }
 
-        sendVoiceNoteTCP(0, groupId, duration);
+    private void updateStatus() {
+        System.out.print("\nNuevo estado (max 140 caracteres): ");
+        String status;
+        synchronized (scannerLock) {
+            status = scanner.nextLine().trim();
+        }
+        sendPacket(new Packet(Command.UPDATE_STATUS, status));
     }
 
     // En ChatClient.java, reemplazar el método sendVoiceNoteTCP:
 
+    // La nota se envia por chunks mientras se graba: VOICE_NOTE_BEGIN, VOICE_NOTE_CHUNK..., VOICE_NOTE_END
     private void sendVoiceNoteTCP(int receiverId, Integer groupId, int durationSeconds) {
         try {
-            System.out.println("\nGrabando audio por " + durationSeconds + " segundos...");
-
-            chat.audio.AudioCapture capture = new chat.audio.AudioCapture();
-            byte[] audioData = capture.recordForDuration(durationSeconds * 1000); // Convertir a milisegundos
-
-            if (audioData == null || audioData.length == 0) {
-                System.out.println("Error: No se capturó audio");
-                return;
-            }
-
-            System.out.println("Audio capturado: " + audioData.length + " bytes");
-            System.out.println("Enviando audio por TCP...");
-
-            VoiceNoteData voiceNote;
+            int noteId = nextNoteId.getAndIncrement();
+            VoiceNoteData header;
             if (groupId != null) {
-                voiceNote = new VoiceNoteData(currentUser.getId(), groupId, audioData, durationSeconds, true);
+                header = new VoiceNoteData(currentUser.getId(), groupId, null, durationSeconds, true);
             } else {
-                voiceNote = new VoiceNoteData(currentUser.getId(), receiverId, audioData, durationSeconds);
+                header = new VoiceNoteData(currentUser.getId(), receiverId, null, durationSeconds);
             }
+            header.setNoteId(noteId);
+            sendPacket(new Packet(Command.VOICE_NOTE_BEGIN, Protocol.toJson(header)));
+
+            System.out.println("\nGrabando y enviando audio por " + durationSeconds + " segundos...");
 
-            Packet packet = new Packet(Command.VOICE_NOTE_DATA, Protocol.toJson(voiceNote));
-            sendPacket(packet);
+            int[] seq = {0};
+            long[] totalBytes = {0};
+            chat.audio.AudioCapture capture = new chat.audio.AudioCapture();
+            capture.recordStreaming(durationSeconds * 1000, chunk -> {
+                sendPacket(voiceNoteChunk(noteId, seq[0]++, chunk));
+                totalBytes[0] += chunk.length;
+            });
 
-            System.out.println("Nota de voz enviada correctamente por TCP");
+            sendPacket(new Packet(Command.VOICE_NOTE_END, Protocol.toJson(new VoiceNoteChunk(noteId, seq[0], null))));
+            System.out.println("Nota de voz enviada por TCP (" + totalBytes[0] + " bytes)");
 
         } catch (Exception e) {
             System.err.println("Error enviando nota de voz: " + e.getMessage());
@@ -667,12 +715,48 @@ public class ChatClient {
         }
     }
 
+    private Packet voiceNoteChunk(int noteId, int seq, byte[] audio) {
+        if (!binaryProtocol) {
+            return new Packet(Command.VOICE_NOTE_CHUNK, Protocol.toJson(new VoiceNoteChunk(noteId, seq, audio)));
+        }
+        Packet packet = new Packet(Command.VOICE_NOTE_CHUNK, Protocol.toJson(new VoiceNoteChunk(noteId, seq, null)));
+        packet.setPayload(audio);
+        return packet;
+    }
+
+    private void handleVoiceNoteBegin(Packet packet) {
+        VoiceNoteData header = Protocol.fromJson(packet.getData(), VoiceNoteData.class);
+        try {
+            incomingVoiceNotes.put(header.getSenderId() + ":" + header.getNoteId(), new chat.audio.StreamingPlayback());
+            System.out.println("\nRecibiendo nota de voz de usuario " + header.getSenderId() +
+                    " (" + header.getDurationSeconds() + " segundos), reproduciendo...");
+        } catch (LineUnavailableException e) {
+            System.err.println("Error reproduciendo nota de voz: " + e.getMessage());
+        }
+    }
+
+    private void handleVoiceNoteChunk(Packet packet) {
+        VoiceNoteChunk chunk = Protocol.fromJson(packet.getData(), VoiceNoteChunk.class);
+        chat.audio.StreamingPlayback playback = incomingVoiceNotes.get(chunk.getSenderId() + ":" + chunk.getNoteId());
+        if (playback != null) {
+            playback.offer(packet.getPayload() != null ? packet.getPayload() : chunk.getAudioBytes());
+        }
+    }
+
+    private void handleVoiceNoteEnd(Packet packet) {
+        VoiceNoteChunk end = Protocol.fromJson(packet.getData(), VoiceNoteChunk.class);
+        chat.audio.StreamingPlayback playback = incomingVoiceNotes.remove(end.getSenderId() + ":" + end.getNoteId());
+        if (playback != null) {
+            playback.finish();
+        }
+    }
+
 // Reemplazar el método handleIncomingVoiceNote:
 
     private void handleIncomingVoiceNote(Packet packet) {
         try {
             VoiceNoteData voiceNote = Protocol.fromJson(packet.getData(), VoiceNoteData.class);
-            byte[] audioData = voiceNote.getAudioBytes();
+            byte[] audioData = packet.getPayload() != null ? packet.getPayload() : voiceNote.getAudioBytes();
 
             if (audioData == null || audioData.length == 0) {
                 System.out.println("\nError: Nota de voz vacía");
@@ -695,10 +779,24 @@ public class ChatClient {
         }
     }
     private void viewUsers() {
-        Packet packet = new Packet(Command.GET_USERS);
+        Packet packet = new Packet(Command.GET_USERS, String.valueOf(directoryVersion));
         sendPacket(packet);
     }
 
+    private void handleDirectoryDelta(UserDirectoryDelta delta) {
+        if (delta.isFull()) {
+            directory.clear();
+        }
+        for (User user : delta.getUsers()) {
+            directory.put(user.getId(), user);
+        }
+        directoryVersion = delta.getVersion();
+
+        List<User> users = new ArrayList<>(directory.values());
+        users.sort(Comparator.comparing(User::getUsername));
+        displayUsers(users);
+    }
+
     private void logout() {
         Packet packet = new Packet(Command.LOGOUT);
         sendPacket(packet);
@@ -708,10 +806,17 @@ public class ChatClient {
 
     private void receiveMessages() {
         try {
-            String line;
-            while (running && (line = in.readLine()) != null) {
-                Packet packet = Protocol.deserialize(line);
-                handleResponse(packet);
+            if (binaryProtocol) {
+                Packet packet;
+                while (running && (packet = BinaryCodec.read(binaryIn, MAX_FRAME_BYTES)) != null) {
+                    handleResponse(packet);
+                }
+            } else {
+                String line;
+                while (running && (line = in.readLine()) != null) {
+                    Packet packet = Protocol.deserialize(line);
+                    handleResponse(packet);
+                }
             }
         } catch (IOException e) {
             if (running) {
@@ -733,9 +838,21 @@ public class ChatClient {
             case RECEIVE_MESSAGE:
                 handleIncomingMessage(packet);
                 break;
+            case DELIVER_MESSAGES:
+                handleDeliveredMessages(packet);
+                break;
             case VOICE_NOTE_DATA:
                 handleIncomingVoiceNote(packet);
                 break;
+            case VOICE_NOTE_BEGIN:
+                handleVoiceNoteBegin(packet);
+                break;
+            case VOICE_NOTE_CHUNK:
+                handleVoiceNoteChunk(packet);
+                break;
+            case VOICE_NOTE_END:
+                handleVoiceNoteEnd(packet);
+                break;
             case CALL_REQUEST:
                 handleIncomingCall(packet);
                 break;
@@ -759,6 +876,9 @@ public class ChatClient {
             // Respuesta de login/register
             currentUser = Protocol.fromJson(packet.getData(), User.class);
             System.out.println("\nAutenticacion exitosa");
+        } else if (packet.getData() != null && packet.getData().startsWith("{")
+                && packet.getData().contains("\"unchanged\"")) {
+            handleDirectoryDelta(Protocol.fromJson(packet.getData(), UserDirectoryDelta.class));
         } else if (packet.getData() != null && packet.getData().startsWith("[")) {
             // Lista de mensajes, usuarios o grupos
             if (packet.getData().contains("\"username\"")) {
@@ -782,6 +902,29 @@ public class ChatClient {
     private void handleIncomingMessage(Packet packet) {
         Message message = Protocol.fromJson(packet.getData(), Message.class);
         System.out.println("\nNuevo mensaje de " + message.getSenderUsername() + ": " + message.getContent());
+        // Sin ACK: la notificacion en vivo puede descartarse por contrapresion y un ACK posterior
+        // saltaria el mensaje perdido. El cursor solo avanza con las paginas de la bandeja.
+    }
+
+    // Mensajes recibidos mientras no habia sesion; llegan en uno o mas lotes tras el login
+    private void handleDeliveredMessages(Packet packet) {
+        MessagePage page = Protocol.fromJson(packet.getData(), MessagePage.class);
+        System.out.println("\n======= MENSAJES PENDIENTES (" + page.getMessages().size() + ") =======");
+        for (Message message : page.getMessages()) {
+            String origin = message.getGroupId() != null ? " [grupo " + message.getGroupId() + "]" : "";
+            System.out.println(message + origin);
+        }
+        System.out.println("===========================================");
+        if (page.getNewestId() != null) {
+            acknowledge(page.getNewestId());
+        }
+    }
+
+    // Avanza el cursor de entrega en el servidor; no tiene respuesta
+    private void acknowledge(int messageId) {
+        if (messageId > 0) {
+            sendPacket(new Packet(Command.ACK_DELIVERY, String.valueOf(messageId)));
+        }
     }
 
     private void handleIncomingCall(Packet packet) {
@@ -808,7 +951,11 @@ public class ChatClient {
             currentCall = call;
             inCall.set(true);
 
-            voiceClient.startCall(call.getReceiverId());
+            if (call.isGroupCall()) {
+                voiceClient.startGroupCall(call.getReceiverId());
+            } else {
+                voiceClient.startCall(call.getReceiverId());
+            }
 
             System.out.println("Llamada en curso");
             System.out.println("Presione Enter para finalizar la llamada");
@@ -867,15 +1014,23 @@ public class ChatClient {
         } else {
             for (User user : users) {
                 if (currentUser != null && user.getId() != currentUser.getId()) {
-                    System.out.println("ID: " + user.getId() + " - " + user);
+                    System.out.println("ID: " + user.getId() + " - " + user + describeStatus(user));
                 } else if (currentUser == null) { // Handle case where currentUser might not be set yet
-                    System.out.println("ID: " + user.getId() + " - " + user);
+                    System.out.println("ID: " + user.getId() + " - " + user + describeStatus(user));
                 }
             }
         }
         System.out.println("==================================");
     }
 
+    private String describeStatus(User user) {
+        String text = user.getStatus() != null ? " - " + user.getStatus() : "";
+        if (!user.isOnline() && user.getLastSeen() != null) {
+            text += " (visto " + user.getLastSeen().withNano(0) + ")";
+        }
+        return text;
+    }
+
     private void viewMyGroups() {
         if (currentUser == null) {
             System.out.println("Usuario no autenticado.");
@@ -939,7 +1094,16 @@ public class ChatClient {
     }
 
     private void sendPacket(Packet packet) {
-        if (out != null && !socket.isClosed()) {
+        if (binaryOut != null && !socket.isClosed()) {
+            try {
+                synchronized (binaryOut) {
+                    binaryOut.write(BinaryCodec.encode(packet).array());
+                    binaryOut.flush();
+                }
+            } catch (IOException e) {
+                System.err.println("Error enviando paquete: " + e.getMessage());
+            }
+        } else if (out != null && !socket.isClosed()) {
             out.println(Protocol.serialize(packet));
         } else {
             System.err.println("Error: No se puede enviar paquete. Conexion cerrada o no inicializada.");
@@ -970,6 +1134,9 @@ public class ChatClient {
             if (in != null) {
                 in.close();
             }
+            if (binaryIn != null) {
+                binaryIn.close();
+            }
         } catch (IOException e) {
             System.err.println("Error al desconectar: " + e.getMessage());
         }
@@ -977,7 +1144,8 @@ public class ChatClient {
 
 
     public static void main(String[] args) {
-        ChatClient client = new ChatClient();
+        boolean binary = Arrays.asList(args).contains("--binary");
+        ChatClient client = binary ? new ChatClient(true) : new ChatClient();
         client.start();
     }
 }
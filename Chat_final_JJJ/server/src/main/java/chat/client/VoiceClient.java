@@ -2,19 +2,30 @@ package chat.client;
 
 import chat.audio.AudioCapture;
 import chat.audio.AudioPlayback;
-import chat.model.AudioPacket;
+import chat.audio.LatencyMeter;
+import chat.audio.StreamMixer;
+import chat.audio.VoiceFrames;
+import chat.audio.codec.PcmCodec;
+import chat.audio.codec.VoiceCodec;
+import chat.audio.codec.VoiceCodecs;
+import chat.model.AudioPacketView;
+import chat.model.AudioPacketWriter;
+import dsp.ComfortNoise;
+import dsp.VoiceActivityDetector;
 
 import javax.sound.sampled.LineUnavailableException;
 import java.io.IOException;
 import java.net.*;
+import java.util.HashMap;
+import java.util.Map;
 
 public class VoiceClient {
     private static final String SERVER_HOST = "localhost";
     private static final int UDP_PORT = 5001;
-    private static final int BUFFER_SIZE = 10240 + 24; // Audio buffer + AudioPacket header
+    private static final int BUFFER_SIZE = 65507; // Datagrama UDP maximo: varias tramas por paquete
 
     private DatagramSocket socket;
-    private InetAddress serverAddress;
+    private InetSocketAddress serverEndpoint;
     private boolean inCall = false;
     private Thread sendThread;
     private Thread listenerThread;
@@ -22,6 +33,21 @@ public class VoiceClient {
 
     private AudioCapture audioCapture;
     private AudioPlayback audioPlayback;
+    // Solo en llamadas grupales SFU: el servidor reenvia varios flujos que se mezclan aqui
+    private StreamMixer groupMixer;
+    // Codec de salida (-Dchat.voice.codec=pcm|ulaw|adpcm); lo recibido se decodifica segun la cabecera
+    private final VoiceCodec codec = VoiceCodecs.fromSystemProperty();
+    // Supresion de silencios (-Dchat.voice.vad=false la desactiva)
+    private final boolean vadEnabled = Boolean.parseBoolean(System.getProperty("chat.voice.vad", "true"));
+    private int framesSent;
+    private int framesSuppressed;
+    // Transito emisor -> receptor segun el timestamp del AudioPacket. Resta dos relojes distintos: solo
+    // es real en la misma maquina o con relojes sincronizados, y se informa como estimacion
+    private final LatencyMeter networkLatency = new LatencyMeter();
+    // Transito por encima del menor visto de cada emisor: el desfase entre relojes se cancela y queda
+    // la espera variable en la red, medida sin depender de la sincronizacion
+    private final LatencyMeter networkQueueing = new LatencyMeter();
+    private final Map<Integer, Long> minTransit = new HashMap<>();
 
     private int userId;
     private int otherUserId;
@@ -30,7 +56,7 @@ public class VoiceClient {
     public VoiceClient(int userId) throws SocketException, UnknownHostException, LineUnavailableException {
         this.userId = userId;
         this.socket = new DatagramSocket();
-        this.serverAddress = InetAddress.getByName(SERVER_HOST);
+        this.serverEndpoint = new InetSocketAddress(InetAddress.getByName(SERVER_HOST), UDP_PORT);
         this.audioCapture = new AudioCapture();
         this.audioPlayback = new AudioPlayback();
 
@@ -43,16 +69,7 @@ public class VoiceClient {
 
     private void registerWithServer() {
         try {
-            AudioPacket registerPacket = new AudioPacket(userId, 0, 0, new byte[0]);
-            byte[] packetData = registerPacket.toBytes();
-
-            DatagramPacket packet = new DatagramPacket(
-                    packetData,
-                    packetData.length,
-                    serverAddress,
-                    UDP_PORT
-            );
-            socket.send(packet);
+            sendPacket(0, 0, PcmCodec.ID, new byte[0]);
             System.out.println("[VoiceClient] Registrado con servidor UDP");
         } catch (IOException e) {
             System.err.println("Error registrando con servidor UDP: " + e.getMessage());
@@ -61,27 +78,47 @@ public class VoiceClient {
 
     private void startBackgroundListener() {
         listenerThread = new Thread(() -> {
+            // Buffer, datagrama y vista se reutilizan: el audio solo se copia al decodificarlo
             byte[] buffer = new byte[BUFFER_SIZE];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            AudioPacketView view = new AudioPacketView();
 
             while (running) {
                 try {
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    packet.setLength(buffer.length);
                     socket.setSoTimeout(100);
                     socket.receive(packet);
 
-                    byte[] receivedData = new byte[packet.getLength()];
-                    System.arraycopy(packet.getData(), 0, receivedData, 0, packet.getLength());
-
-                    AudioPacket audioPacket = AudioPacket.fromBytes(receivedData);
-
-                    if (audioPacket.getAudioData() == null || audioPacket.getAudioData().length == 0) {
+                    view.wrap(buffer, 0, packet.getLength());
+                    if (!view.isValid() || view.getDataLength() == 0) {
                         continue;
                     }
-
-                    audioPlayback.play(audioPacket.getAudioData());
+                    int audioOffset = view.getPayloadOffset();
+                    int audioLength = view.getDataLength();
+                    if (view.getCodecId() == VoiceCodecs.COMFORT_NOISE_ID) {
+                        // En grupos SFU el hueco lo cubre la mezcla local; en 1 a 1 se genera ruido de fondo
+                        if (view.getReceiverId() > 0 && audioLength >= 2) {
+                            audioPlayback.comfortNoise(ComfortNoise.level(buffer, audioOffset));
+                        }
+                        continue;
+                    }
+                    long transit = System.currentTimeMillis() - view.getTimestamp();
+                    long fastest = minTransit.merge(view.getSenderId(), transit, Math::min);
+                    networkLatency.record(transit);
+                    networkQueueing.record(transit - fastest);
+                    byte[] pcm = VoiceCodecs.forId(view.getCodecId()).decode(buffer, audioOffset, audioLength);
+
+                    // receiverId negativo = flujo de otro emisor reenviado por el SFU del grupo
+                    if (view.getReceiverId() < 0) {
+                        groupMixer().write(view.getSenderId(), pcm);
+                    } else {
+                        audioPlayback.play(view.getSequenceNumber(), pcm);
+                    }
 
                 } catch (SocketTimeoutException e) {
                     // Timeout normal
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Paquete de audio descartado: " + e.getMessage());
                 } catch (IOException e) {
                     if (running) {
                         System.err.println("Error en listener de audio: " + e.getMessage());
@@ -121,31 +158,93 @@ public class VoiceClient {
         System.out.println(" -- Hable ahora... --");
     }
 
+    // Llamada grupal: el audio va a receiverId = -groupId; el servidor devuelve la mezcla del resto
+    // o, en modo SFU, los flujos de los hablantes activos
+    public void startGroupCall(int groupId) {
+        startCall(-groupId);
+    }
+
+    private synchronized StreamMixer groupMixer() {
+        if (groupMixer == null) {
+            groupMixer = new StreamMixer(audioPlayback::play);
+        }
+        return groupMixer;
+    }
+
     private void sendAudio() {
+        VoiceActivityDetector vad = new VoiceActivityDetector();
+        int framesPerPacket = VoiceFrames.framesPerPacket();
+        byte[] batch = new byte[VoiceFrames.frameBytes() * framesPerPacket];
+        framesSent = 0;
+        framesSuppressed = 0;
+
         while (inCall) {
-            byte[] buffer = audioCapture.captureChunk();
+            // Se juntan framesPerPacket tramas; el paquete sale si alguna de ellas tenia voz
+            VoiceActivityDetector.Decision decision = VoiceActivityDetector.Decision.SILENCE;
+            int filled = 0;
+            while (inCall && filled < framesPerPacket) {
+                byte[] frame = audioCapture.captureChunk();
+                if (frame == null) {
+                    break;
+                }
+                System.arraycopy(frame, 0, batch, filled * frame.length, frame.length);
+                filled++;
+                decision = decision.strongest(vadEnabled
+                        ? vad.classify(frame, frame.length)
+                        : VoiceActivityDetector.Decision.SPEECH);
+            }
+            if (filled < framesPerPacket) {
+                continue;
+            }
 
-            if (buffer != null) {
-                try {
-                    AudioPacket audioPacket = new AudioPacket(userId, otherUserId, sequenceNumber++, buffer);
-                    byte[] packetData = audioPacket.toBytes();
-
-                    DatagramPacket packet = new DatagramPacket(
-                            packetData,
-                            packetData.length,
-                            serverAddress,
-                            UDP_PORT
-                    );
-                    socket.send(packet);
-                } catch (IOException e) {
-                    if (inCall) {
-                        System.err.println("Error enviando audio: " + e.getMessage());
-                    }
+            // El numero de secuencia avanza tambien con los paquetes suprimidos
+            int seq = sequenceNumber++;
+            if (!decision.shouldSend()) {
+                framesSuppressed += filled;
+                continue;
+            }
+
+            try {
+                if (decision == VoiceActivityDetector.Decision.COMFORT_NOISE) {
+                    sendPacket(otherUserId, seq, VoiceCodecs.COMFORT_NOISE_ID, ComfortNoise.marker(vad.getNoiseLevel()));
+                } else {
+                    sendPacket(otherUserId, seq, codec.getId(), codec.encode(batch, batch.length));
+                }
+                framesSent += filled;
+            } catch (IOException e) {
+                if (inCall) {
+                    System.err.println("Error enviando audio: " + e.getMessage());
                 }
             }
         }
     }
 
+    // Escribe la cabecera y el audio en el buffer del hilo y lo envia sin crear AudioPacket ni arreglos
+    private void sendPacket(int receiverId, int seq, int codecId, byte[] payload) throws IOException {
+        AudioPacketWriter writer = AudioPacketWriter.forCurrentThread()
+                .write(userId, receiverId, seq, System.currentTimeMillis(), codecId, payload, 0, payload.length);
+        socket.send(writer.datagram(serverEndpoint));
+    }
+
+    // Boca-oido estimado: lo que tarda en juntarse un paquete, la red, el jitter buffer y la linea.
+    // La red depende de que los relojes esten sincronizados; la espera variable no.
+    private void printLatency() {
+        if (networkLatency.count() == 0) {
+            return;
+        }
+        long capture = (long) VoiceFrames.frameMillis() * VoiceFrames.framesPerPacket();
+        long network = networkLatency.average();
+        long buffer = audioPlayback.getBufferedDelayMillis();
+        long line = audioPlayback.getLineDelayMillis();
+        System.out.println("Latencia (trama " + VoiceFrames.frameMillis() + " ms x" + VoiceFrames.framesPerPacket() +
+                "): captura " + capture + " + red ~" + network + " (asume relojes sincronizados; espera variable " +
+                networkQueueing.average() + ", p95 " + networkQueueing.percentile(95) + ") + jitter buffer " + buffer +
+                " + linea " + line + " = ~" + (capture + network + buffer + line) + " ms");
+        if (network < 0) {
+            System.out.println("Los relojes del emisor y el receptor no estan sincronizados: la red medida no es valida");
+        }
+    }
+
     public void sendVoiceNote(int receiverId, int durationSeconds) {
         System.out.println("=== Grabando nota de voz por " + durationSeconds + " segundos ===");
         System.out.println("Hable ahora...");
@@ -160,16 +259,7 @@ public class VoiceClient {
                 byte[] buffer = audioCapture.captureChunk();
 
                 if (buffer != null) {
-                    AudioPacket audioPacket = new AudioPacket(userId, receiverId, seq++, buffer);
-                    byte[] packetData = audioPacket.toBytes();
-
-                    DatagramPacket packet = new DatagramPacket(
-                            packetData,
-                            packetData.length,
-                            serverAddress,
-                            UDP_PORT
-                    );
-                    socket.send(packet);
+                    sendPacket(receiverId, seq++, codec.getId(), codec.encode(buffer, buffer.length));
                 }
             }
 
@@ -199,6 +289,12 @@ public class VoiceClient {
 
         try { audioCapture.stopCapture(); } catch (Exception ignored) {}
 
+        if (framesSent + framesSuppressed > 0) {
+            System.out.println("Tramas enviadas: " + framesSent + ", silencios suprimidos: " + framesSuppressed);
+        }
+        System.out.println("Recepcion: " + audioPlayback.getJitterStats());
+        printLatency();
+
         otherUserId = -1;
         sequenceNumber = 0;
 
@@ -213,6 +309,9 @@ public class VoiceClient {
             listenerThread.interrupt();
         }
 
+        if (groupMixer != null) {
+            groupMixer.stop();
+        }
         audioPlayback.stopPlayback();
 
         if (socket != null && !socket.isClosed()) {
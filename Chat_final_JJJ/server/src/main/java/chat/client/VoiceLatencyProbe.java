@@ -0,0 +1,126 @@
+package chat.client;
+
+import chat.audio.LatencyMeter;
+import chat.model.AudioPacket;
+import dsp.JitterBuffer;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Mide la latencia boca-oido de cada tamano de trama contra un VoiceServer en marcha: un emisor envia
+// a ritmo real, el receptor pasa por un JitterBuffer y un reloj de reproduccion, y se suma lo que tarda
+// en juntarse el paquete, la red, la espera en el buffer y la linea de salida (LINE_FRAMES tramas).
+//   java chat.client.VoiceLatencyProbe [host] [puerto] [segundos por prueba]
+public class VoiceLatencyProbe {
+    private static final int SENDER_ID = 910001;
+    private static final int RECEIVER_ID = 910000;
+    private static final int SAMPLE_RATE = 44100;
+    private static final int LINE_FRAMES = 4;
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5001;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        InetSocketAddress server = new InetSocketAddress(host, port);
+
+        System.out.printf("%-8s %-7s %8s %8s %8s %8s %8s %10s %8s%n", "trama", "x/paq", "captura", "red",
+                "red p95", "buffer", "linea", "boca-oido", "kbit/s");
+        for (int frameMillis : new int[]{10, 20, 40}) {
+            for (int framesPerPacket : new int[]{1, 2}) {
+                probe(server, frameMillis, framesPerPacket, seconds);
+            }
+        }
+    }
+
+    private static void probe(InetSocketAddress server, int frameMillis, int framesPerPacket, int seconds)
+            throws Exception {
+        int packetMillis = frameMillis * framesPerPacket;
+        int audioBytes = SAMPLE_RATE * frameMillis / 1000 * 2 * framesPerPacket;
+        int packets = seconds * 1000 / packetMillis;
+        JitterBuffer jitterBuffer = new JitterBuffer();
+        LatencyMeter network = new LatencyMeter();
+        LatencyMeter buffered = new LatencyMeter();
+        Map<Integer, Long> arrivals = new ConcurrentHashMap<>();
+
+        try (DatagramChannel sink = DatagramChannel.open(); DatagramChannel out = DatagramChannel.open()) {
+            sink.connect(server);
+            out.connect(server);
+            sink.write(ByteBuffer.wrap(new AudioPacket(RECEIVER_ID, 0, 0, new byte[0]).toBytes()));
+            Thread.sleep(100);
+
+            Thread receiver = new Thread(() -> {
+                ByteBuffer buffer = ByteBuffer.allocate(65507);
+                try {
+                    for (int i = 0; i < packets; i++) {
+                        buffer.clear();
+                        sink.read(buffer);
+                        AudioPacket packet = AudioPacket.fromBytes(Arrays.copyOf(buffer.array(), buffer.position()));
+                        long now = System.nanoTime();
+                        // El timestamp del paquete lleva nanoTime del emisor (mismo proceso)
+                        network.record(TimeUnit.NANOSECONDS.toMicros(now - packet.getTimestamp()));
+                        arrivals.put(packet.getSequenceNumber(), now);
+                        jitterBuffer.put(packet.getSequenceNumber(), packet.getAudioData());
+                    }
+                } catch (Exception e) {
+                    // Fin de la prueba
+                }
+            });
+            receiver.setDaemon(true);
+            receiver.start();
+
+            Thread player = new Thread(() -> {
+                try {
+                    long next = System.nanoTime();
+                    while (true) {
+                        byte[] frame = jitterBuffer.take(packetMillis * 4L, TimeUnit.MILLISECONDS);
+                        if (frame == null) {
+                            return;
+                        }
+                        Long arrival = arrivals.remove(ByteBuffer.wrap(frame).getInt());
+                        if (arrival != null) {
+                            buffered.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - arrival));
+                        }
+                        // La linea consume una trama cada packetMillis
+                        next += packetMillis * 1_000_000L;
+                        long sleep = next - System.nanoTime();
+                        if (sleep > 0) {
+                            TimeUnit.NANOSECONDS.sleep(sleep);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            player.setDaemon(true);
+            player.start();
+
+            long next = System.nanoTime();
+            for (int seq = 0; seq < packets; seq++) {
+                byte[] audio = new byte[audioBytes];
+                ByteBuffer.wrap(audio).putInt(seq);
+                AudioPacket packet = new AudioPacket(SENDER_ID, RECEIVER_ID, seq, audio);
+                packet.setTimestamp(System.nanoTime());
+                out.write(ByteBuffer.wrap(packet.toBytes()));
+                next += packetMillis * 1_000_000L;
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+            }
+            player.join(packetMillis * 10L);
+        }
+
+        double networkMillis = network.average() / 1000.0;
+        double bufferMillis = buffered.average() / 1000.0;
+        int lineMillis = LINE_FRAMES * frameMillis;
+        double total = packetMillis + networkMillis + bufferMillis + lineMillis;
+        double kbits = (audioBytes + 24 + 28) * 8.0 * (1000.0 / packetMillis) / 1000.0;
+        System.out.printf("%-8s %-7d %8d %8.2f %8.2f %8.2f %8d %10.1f %8.0f%n", frameMillis + "ms", framesPerPacket,
+                packetMillis, networkMillis, network.percentile(95) / 1000.0, bufferMillis, lineMillis, total, kbits);
+    }
+}
@@ -0,0 +1,99 @@
+package chat.client;
+
+import chat.model.AudioPacket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Carga sintetica para el servidor de voz: N llamadas (emisor -> receptor, cada uno con su socket)
+// envian AudioPackets lo mas rapido posible y se mide cuantos paquetes por segundo llegan.
+// Correr contra server.voice.mode=legacy y server.voice.mode=channel (variando server.voice.reactors).
+//   java chat.client.VoiceLoadGenerator [host] [puerto] [llamadas] [segundos] [bytesAudio]
+public class VoiceLoadGenerator {
+    private static final int FIRST_USER_ID = 900000;
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5001;
+        int calls = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int audioBytes = args.length > 4 ? Integer.parseInt(args[4]) : 640;
+
+        InetSocketAddress server = new InetSocketAddress(host, port);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder sent = new LongAdder();
+        LongAdder received = new LongAdder();
+
+        for (int i = 0; i < calls; i++) {
+            int receiverId = FIRST_USER_ID + 2 * i;
+            int senderId = receiverId + 1;
+
+            // Receptor: se registra con receiverId 0 y cuenta lo que le reenvian
+            DatagramChannel sink = DatagramChannel.open();
+            sink.connect(server);
+            sink.write(ByteBuffer.wrap(new AudioPacket(receiverId, 0, 0, new byte[0]).toBytes()));
+            start("voice-load-sink-" + i, () -> {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(65507);
+                while (running.get()) {
+                    buffer.clear();
+                    if (sink.read(buffer) > 0) {
+                        received.increment();
+                    }
+                }
+            });
+
+            start("voice-load-sender-" + i, () -> {
+                try (DatagramChannel out = DatagramChannel.open()) {
+                    out.connect(server);
+                    ByteBuffer packet = ByteBuffer.wrap(
+                            new AudioPacket(senderId, receiverId, 0, new byte[audioBytes]).toBytes());
+                    Thread.sleep(200);
+                    while (running.get()) {
+                        packet.rewind();
+                        out.write(packet);
+                        sent.increment();
+                    }
+                }
+            });
+        }
+
+        long lastSent = 0;
+        long lastReceived = 0;
+        Thread.sleep(200);
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            long totalSent = sent.sum();
+            long totalReceived = received.sum();
+            System.out.println("t=" + s + "s enviados/s=" + (totalSent - lastSent) +
+                    " recibidos/s=" + (totalReceived - lastReceived));
+            lastSent = totalSent;
+            lastReceived = totalReceived;
+        }
+        running.set(false);
+
+        System.out.println("Total: llamadas=" + calls + " enviados=" + sent.sum() + " recibidos=" + received.sum() +
+                " (" + (received.sum() / Math.max(1, seconds)) + " paquetes/s)");
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static void start(String name, Task task) {
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                System.err.println(name + ": " + e.getMessage());
+            } catch (Exception e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
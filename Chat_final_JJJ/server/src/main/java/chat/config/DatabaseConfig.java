@@ -23,6 +23,8 @@ public class DatabaseConfig {
         config.setUsername("postgres");
         config.setPassword("59121213");
         config.setDriverClassName("org.postgresql.Driver");
+        // Los lotes JDBC (escritura diferida de mensajes) viajan como un solo INSERT multi-VALUES
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
 
         // Configuración del pool de conexiones (HikariCP)
         config.setMaximumPoolSize(10);
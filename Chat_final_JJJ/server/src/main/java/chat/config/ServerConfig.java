@@ -13,9 +13,71 @@ public class ServerConfig {
     private static final int DEFAULT_THREAD_POOL_SIZE = 10;
     private static final String DEFAULT_HOST = "localhost";
     
+    // Almacenamiento: "postgres", "embedded" (motor en memoria del proceso, sin base de datos)
+    // o "durable" (el motor embebido con WAL y snapshots en disco)
+    private static final String DEFAULT_STORAGE = "postgres";
+    
+    // WAL del modo durable. sync: "batch" (cada escritura espera el fsync de su lote) o "interval"
+    // (fsync cada syncMillis; una caida puede perder ese intervalo a cambio de mas throughput)
+    private static final String DEFAULT_WAL_DIR = "embedded-data";
+    private static final int DEFAULT_WAL_SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final String DEFAULT_WAL_SYNC = "batch";
+    private static final int DEFAULT_WAL_SYNC_MILLIS = 100;
+    private static final int DEFAULT_WAL_SNAPSHOT_SECONDS = 300;
+    
+    // Modo de E/S del servidor TCP: "blocking" (un hilo por conexion) o "nio" (selector)
+    private static final String DEFAULT_IO_MODE = "blocking";
+    private static final int DEFAULT_NIO_REACTORS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    
+    // "fixed" usa server.threadpool.size hilos de plataforma; "virtual" un hilo virtual por sesion (Java 21+)
+    private static final String DEFAULT_EXECUTOR_MODE = "fixed";
+    private static final int DEFAULT_METRICS_INTERVAL_SECONDS = 0;
+    
+    // Cola de salida por conexion y politica cuando un cliente lento la llena
+    private static final long DEFAULT_OUTBOUND_MAX_BYTES = 2 * 1024 * 1024;
+    private static final String DEFAULT_OUTBOUND_POLICY = "DROP_NOTIFICATIONS";
+    private static final long DEFAULT_OUTBOUND_SPILL_MAX_BYTES = 64 * 1024 * 1024;
+    
+    // Cache de miembros de grupo usado en el fan-out
+    private static final int DEFAULT_GROUP_CACHE_MAX_GROUPS = 10000;
+    private static final int DEFAULT_GROUP_CACHE_TTL_SECONDS = 300;
+    // Usuarios cacheados por id y username delante de PostgresUserRepository (LRU)
+    private static final int DEFAULT_USER_CACHE_MAX_USERS = 10000;
+    
+    // Limites de las notas de voz por streaming
+    private static final long DEFAULT_VOICE_NOTE_MAX_BYTES = 16 * 1024 * 1024;
+    private static final int DEFAULT_VOICE_NOTE_MAX_ACTIVE = 4;
+    // Almacen de audio de las notas: segmentos de solo-agregar mapeados en memoria
+    private static final String DEFAULT_VOICE_NOTE_DIR = "voice-notes";
+    private static final int DEFAULT_VOICE_NOTE_SEGMENT_BYTES = 64 * 1024 * 1024;
+    
+    // Paginas de historial (GET_HISTORY / GET_GROUP_MESSAGES)
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 50;
+    private static final int DEFAULT_HISTORY_MAX_PAGE_SIZE = 500;
+    // Mensajes por paquete DELIVER_MESSAGES al entregar la bandeja offline en LOGIN
+    private static final int DEFAULT_INBOX_BATCH_SIZE = 500;
+    private static final int DEFAULT_PRESENCE_FLUSH_MILLIS = 1000;
+    
+    // Escritura diferida de mensajes: se entregan antes de persistirse y se insertan por lotes
+    private static final boolean DEFAULT_MESSAGES_WRITE_BEHIND = false;
+    private static final int DEFAULT_MESSAGES_BATCH_SIZE = 256;
+    private static final int DEFAULT_MESSAGES_FLUSH_MILLIS = 10;
+    private static final int DEFAULT_MESSAGES_MAX_PENDING = 100000;
+    
+    // Servidor de voz UDP: "legacy" (DatagramSocket + pool por paquete) o "channel" (relay sin copias)
+    private static final String DEFAULT_VOICE_MODE = "legacy";
+    // Bucles de recepcion del relay, cada uno con su socket SO_REUSEPORT en el mismo puerto
+    private static final int DEFAULT_VOICE_REACTORS = Runtime.getRuntime().availableProcessors();
+    // Llamadas grupales: "mix" (mezcla en el servidor) o "sfu" (reenvio de los K emisores mas fuertes)
+    private static final String DEFAULT_VOICE_GROUP_MODE = "mix";
+    private static final int DEFAULT_VOICE_MIX_FRAME_MILLIS = 20;
+    private static final int DEFAULT_VOICE_SFU_TOP_K = 3;
+    
     private ServerConfig() {
         properties = new Properties();
         loadDefaultProperties();
+        loadSystemOverrides();
     }
     
     public static synchronized ServerConfig getInstance() {
@@ -30,6 +92,49 @@ public class ServerConfig {
         properties.setProperty("server.udp.port", String.valueOf(DEFAULT_UDP_PORT));
         properties.setProperty("server.host", DEFAULT_HOST);
         properties.setProperty("server.threadpool.size", String.valueOf(DEFAULT_THREAD_POOL_SIZE));
+        properties.setProperty("server.io.mode", DEFAULT_IO_MODE);
+        properties.setProperty("server.storage", DEFAULT_STORAGE);
+        properties.setProperty("server.wal.dir", DEFAULT_WAL_DIR);
+        properties.setProperty("server.wal.segmentBytes", String.valueOf(DEFAULT_WAL_SEGMENT_BYTES));
+        properties.setProperty("server.wal.sync", DEFAULT_WAL_SYNC);
+        properties.setProperty("server.wal.syncMillis", String.valueOf(DEFAULT_WAL_SYNC_MILLIS));
+        properties.setProperty("server.wal.snapshotSeconds", String.valueOf(DEFAULT_WAL_SNAPSHOT_SECONDS));
+        properties.setProperty("server.nio.reactors", String.valueOf(DEFAULT_NIO_REACTORS));
+        properties.setProperty("server.nio.maxFrameBytes", String.valueOf(DEFAULT_MAX_FRAME_BYTES));
+        properties.setProperty("server.executor.mode", DEFAULT_EXECUTOR_MODE);
+        properties.setProperty("server.metrics.intervalSeconds", String.valueOf(DEFAULT_METRICS_INTERVAL_SECONDS));
+        properties.setProperty("server.outbound.maxBytes", String.valueOf(DEFAULT_OUTBOUND_MAX_BYTES));
+        properties.setProperty("server.outbound.policy", DEFAULT_OUTBOUND_POLICY);
+        properties.setProperty("server.outbound.spillMaxBytes", String.valueOf(DEFAULT_OUTBOUND_SPILL_MAX_BYTES));
+        properties.setProperty("server.groupCache.maxGroups", String.valueOf(DEFAULT_GROUP_CACHE_MAX_GROUPS));
+        properties.setProperty("server.groupCache.ttlSeconds", String.valueOf(DEFAULT_GROUP_CACHE_TTL_SECONDS));
+        properties.setProperty("server.userCache.maxUsers", String.valueOf(DEFAULT_USER_CACHE_MAX_USERS));
+        properties.setProperty("server.voiceNote.maxBytes", String.valueOf(DEFAULT_VOICE_NOTE_MAX_BYTES));
+        properties.setProperty("server.voiceNote.maxActive", String.valueOf(DEFAULT_VOICE_NOTE_MAX_ACTIVE));
+        properties.setProperty("server.voiceNote.dir", DEFAULT_VOICE_NOTE_DIR);
+        properties.setProperty("server.voiceNote.segmentBytes", String.valueOf(DEFAULT_VOICE_NOTE_SEGMENT_BYTES));
+        properties.setProperty("server.history.pageSize", String.valueOf(DEFAULT_HISTORY_PAGE_SIZE));
+        properties.setProperty("server.history.maxPageSize", String.valueOf(DEFAULT_HISTORY_MAX_PAGE_SIZE));
+        properties.setProperty("server.inbox.batchSize", String.valueOf(DEFAULT_INBOX_BATCH_SIZE));
+        properties.setProperty("server.presence.flushMillis", String.valueOf(DEFAULT_PRESENCE_FLUSH_MILLIS));
+        properties.setProperty("server.messages.writeBehind", String.valueOf(DEFAULT_MESSAGES_WRITE_BEHIND));
+        properties.setProperty("server.messages.batchSize", String.valueOf(DEFAULT_MESSAGES_BATCH_SIZE));
+        properties.setProperty("server.messages.flushMillis", String.valueOf(DEFAULT_MESSAGES_FLUSH_MILLIS));
+        properties.setProperty("server.messages.maxPending", String.valueOf(DEFAULT_MESSAGES_MAX_PENDING));
+        properties.setProperty("server.voice.mode", DEFAULT_VOICE_MODE);
+        properties.setProperty("server.voice.reactors", String.valueOf(DEFAULT_VOICE_REACTORS));
+        properties.setProperty("server.voice.groupMode", DEFAULT_VOICE_GROUP_MODE);
+        properties.setProperty("server.voice.mixFrameMillis", String.valueOf(DEFAULT_VOICE_MIX_FRAME_MILLIS));
+        properties.setProperty("server.voice.sfuTopK", String.valueOf(DEFAULT_VOICE_SFU_TOP_K));
+    }
+    
+    // Permite sobrescribir cualquier propiedad con -Dserver.xxx=valor
+    private void loadSystemOverrides() {
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("server.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
     }
     
     public int getTcpPort() {
@@ -47,4 +152,145 @@ public class ServerConfig {
     public int getThreadPoolSize() {
         return Integer.parseInt(properties.getProperty("server.threadpool.size"));
     }
-}
+    
+    public boolean isNioMode() {
+        return "nio".equalsIgnoreCase(properties.getProperty("server.io.mode"));
+    }
+    
+    // El modo durable tambien usa el motor embebido
+    public boolean isEmbeddedStorage() {
+        return "embedded".equalsIgnoreCase(properties.getProperty("server.storage")) || isDurableStorage();
+    }
+    
+    public boolean isDurableStorage() {
+        return "durable".equalsIgnoreCase(properties.getProperty("server.storage"));
+    }
+    
+    public String getWalDir() {
+        return properties.getProperty("server.wal.dir");
+    }
+    
+    public int getWalSegmentBytes() {
+        return Integer.parseInt(properties.getProperty("server.wal.segmentBytes"));
+    }
+    
+    public boolean isWalSyncPerBatch() {
+        return !"interval".equalsIgnoreCase(properties.getProperty("server.wal.sync"));
+    }
+    
+    public int getWalSyncMillis() {
+        return Integer.parseInt(properties.getProperty("server.wal.syncMillis"));
+    }
+    
+    public int getWalSnapshotSeconds() {
+        return Integer.parseInt(properties.getProperty("server.wal.snapshotSeconds"));
+    }
+    
+    public int getNioReactorCount() {
+        return Integer.parseInt(properties.getProperty("server.nio.reactors"));
+    }
+    
+    public int getMaxFrameBytes() {
+        return Integer.parseInt(properties.getProperty("server.nio.maxFrameBytes"));
+    }
+    
+    public boolean isVirtualThreadMode() {
+        return "virtual".equalsIgnoreCase(properties.getProperty("server.executor.mode"));
+    }
+    
+    public int getMetricsIntervalSeconds() {
+        return Integer.parseInt(properties.getProperty("server.metrics.intervalSeconds"));
+    }
+    
+    public long getOutboundMaxBytes() {
+        return Long.parseLong(properties.getProperty("server.outbound.maxBytes"));
+    }
+    
+    public String getOutboundPolicy() {
+        return properties.getProperty("server.outbound.policy");
+    }
+    
+    public long getOutboundSpillMaxBytes() {
+        return Long.parseLong(properties.getProperty("server.outbound.spillMaxBytes"));
+    }
+    
+    public int getGroupCacheMaxGroups() {
+        return Integer.parseInt(properties.getProperty("server.groupCache.maxGroups"));
+    }
+    
+    public int getGroupCacheTtlSeconds() {
+        return Integer.parseInt(properties.getProperty("server.groupCache.ttlSeconds"));
+    }
+    
+    public int getUserCacheMaxUsers() {
+        return Integer.parseInt(properties.getProperty("server.userCache.maxUsers"));
+    }
+    
+    public long getVoiceNoteMaxBytes() {
+        return Long.parseLong(properties.getProperty("server.voiceNote.maxBytes"));
+    }
+    
+    public int getVoiceNoteMaxActive() {
+        return Integer.parseInt(properties.getProperty("server.voiceNote.maxActive"));
+    }
+    
+    public String getVoiceNoteDir() {
+        return properties.getProperty("server.voiceNote.dir");
+    }
+    
+    public int getVoiceNoteSegmentBytes() {
+        return Integer.parseInt(properties.getProperty("server.voiceNote.segmentBytes"));
+    }
+    
+    public int getHistoryPageSize() {
+        return Integer.parseInt(properties.getProperty("server.history.pageSize"));
+    }
+    
+    public int getHistoryMaxPageSize() {
+        return Integer.parseInt(properties.getProperty("server.history.maxPageSize"));
+    }
+    
+    public int getInboxBatchSize() {
+        return Integer.parseInt(properties.getProperty("server.inbox.batchSize"));
+    }
+    
+    public int getPresenceFlushMillis() {
+        return Integer.parseInt(properties.getProperty("server.presence.flushMillis"));
+    }
+    
+    public boolean isMessageWriteBehind() {
+        return Boolean.parseBoolean(properties.getProperty("server.messages.writeBehind"));
+    }
+    
+    public int getMessageBatchSize() {
+        return Integer.parseInt(properties.getProperty("server.messages.batchSize"));
+    }
+    
+    public int getMessageFlushMillis() {
+        return Integer.parseInt(properties.getProperty("server.messages.flushMillis"));
+    }
+    
+    public int getMessageMaxPending() {
+        return Integer.parseInt(properties.getProperty("server.messages.maxPending"));
+    }
+    
+    public boolean isVoiceChannelMode() {
+        return "channel".equalsIgnoreCase(properties.getProperty("server.voice.mode"));
+    }
+    
+    public int getVoiceReactorCount() {
+        return Integer.parseInt(properties.getProperty("server.voice.reactors"));
+    }
+    
+    public int getVoiceMixFrameMillis() {
+        return Integer.parseInt(properties.getProperty("server.voice.mixFrameMillis"));
+    }
+    
+    public boolean isVoiceSfuMode() {
+        return "sfu".equalsIgnoreCase(properties.getProperty("server.voice.groupMode"));
+    }
+    
+    public int getVoiceSfuTopK() {
+        return Integer.parseInt(properties.getProperty("server.voice.sfuTopK"));
+    }
+}
\ No newline at end of file
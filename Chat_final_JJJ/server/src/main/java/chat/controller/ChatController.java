@@ -1,11 +1,14 @@
 package chat.controller;
 
+import chat.config.ServerConfig;
 import chat.model.*;
 import chat.protocol.Protocol;
 import chat.protocol.Protocol.Command;
 import chat.protocol.Protocol.Packet;
 import chat.service.*;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 public class ChatController {
@@ -13,13 +16,18 @@ public class ChatController {
     private final MessageService messageService;
     private final GroupService groupService;
     private final CallService callService;
+    private final PresenceService presenceService;
+    private final UserDirectoryService directoryService;
     
     public ChatController(UserService userService, MessageService messageService, 
-                         GroupService groupService, CallService callService) {
+                         GroupService groupService, CallService callService,
+                         PresenceService presenceService, UserDirectoryService directoryService) {
         this.userService = userService;
         this.messageService = messageService;
         this.groupService = groupService;
         this.callService = callService;
+        this.presenceService = presenceService;
+        this.directoryService = directoryService;
     }
     
     public Packet handleRegister(String username) {
@@ -40,8 +48,31 @@ public class ChatController {
         }
     }
     
-    public void handleLogout(int userId) {
-        userService.logout(userId);
+    // data: un id (responde UserStatus) o varios separados por coma (responde lista)
+    public Packet handleGetUserStatus(String data) {
+        String[] ids = data.split(",");
+        if (ids.length == 1) {
+            UserStatus status = presenceService.getStatus(Integer.parseInt(ids[0].trim()));
+            return status != null
+                    ? new Packet(Command.SUCCESS, Protocol.toJson(status))
+                    : createErrorPacket("Usuario no encontrado");
+        }
+        List<UserStatus> statuses = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            UserStatus status = presenceService.getStatus(Integer.parseInt(id.trim()));
+            if (status != null) {
+                statuses.add(status);
+            }
+        }
+        return new Packet(Command.SUCCESS, Protocol.toJson(statuses));
+    }
+    
+    public Packet handleUpdateStatus(int userId, String status) {
+        if (status != null && status.trim().length() > PresenceService.MAX_STATUS_LENGTH) {
+            return createErrorPacket("El estado no puede superar " + PresenceService.MAX_STATUS_LENGTH + " caracteres");
+        }
+        presenceService.updateStatus(userId, status);
+        return new Packet(Command.SUCCESS, "Estado actualizado");
     }
     
     public Packet handleSendMessage(Message message) {
@@ -52,6 +83,9 @@ public class ChatController {
                 message.getReceiverId(),
                 message.getContent()
             );
+            // La notificacion al destinatario lleva el id real para que pueda confirmarlo
+            message.setId(savedMessage.getId());
+            message.setTimestamp(savedMessage.getTimestamp());
             return new Packet(Command.SUCCESS, "Mensaje enviado");
         } catch (Exception e) {
             return createErrorPacket(e.getMessage());
@@ -66,20 +100,80 @@ public class ChatController {
                 message.getGroupId(),
                 message.getContent()
             );
+            message.setId(savedMessage.getId());
+            message.setTimestamp(savedMessage.getTimestamp());
             return new Packet(Command.SUCCESS, "Mensaje enviado al grupo");
         } catch (Exception e) {
             return createErrorPacket(e.getMessage());
         }
     }
     
-    public Packet handleGetHistory(int userId1, int userId2) {
-        List<Message> messages = messageService.getChatHistory(userId1, userId2);
-        return new Packet(Command.SUCCESS, Protocol.toJson(messages));
+    // data: id del otro usuario (historial completo, como lista, para los clientes existentes)
+    // o un HistoryQuery JSON (responde una MessagePage)
+    public Packet handleGetHistory(int userId, String data) {
+        HistoryQuery query = parseHistoryQuery(data);
+        if (query == null) {
+            List<Message> messages = messageService.getChatHistory(userId, Integer.parseInt(data.trim()));
+            return new Packet(Command.SUCCESS, Protocol.toJson(messages));
+        }
+        if (query.getUserId() == null) {
+            return createErrorPacket("userId requerido");
+        }
+        MessagePage page = messageService.getChatHistoryPage(userId, query.getUserId(),
+                query.getBeforeId(), query.getAfterId(), pageSize(query.getLimit()));
+        return new Packet(Command.SUCCESS, Protocol.toJson(page));
+    }
+    
+    public Packet handleGetGroupMessages(String data) {
+        HistoryQuery query = parseHistoryQuery(data);
+        if (query == null) {
+            List<Message> messages = messageService.getGroupMessages(Integer.parseInt(data.trim()));
+            return new Packet(Command.SUCCESS, Protocol.toJson(messages));
+        }
+        if (query.getGroupId() == null) {
+            return createErrorPacket("groupId requerido");
+        }
+        MessagePage page = messageService.getGroupMessagesPage(query.getGroupId(),
+                query.getBeforeId(), query.getAfterId(), pageSize(query.getLimit()));
+        return new Packet(Command.SUCCESS, Protocol.toJson(page));
     }
     
-    public Packet handleGetGroupMessages(int groupId) {
-        List<Message> messages = messageService.getGroupMessages(groupId);
-        return new Packet(Command.SUCCESS, Protocol.toJson(messages));
+    private HistoryQuery parseHistoryQuery(String data) {
+        String trimmed = data.trim();
+        return trimmed.startsWith("{") ? Protocol.fromJson(trimmed, HistoryQuery.class) : null;
+    }
+    
+    private int pageSize(Integer requested) {
+        ServerConfig config = ServerConfig.getInstance();
+        if (requested == null || requested <= 0) {
+            return config.getHistoryPageSize();
+        }
+        return Math.min(requested, config.getHistoryMaxPageSize());
+    }
+    
+    public long handleStoreVoiceNoteAudio(long previousId, byte[] audio) {
+        return messageService.storeVoiceNoteAudio(previousId, audio);
+    }
+    
+    public Message handleSaveVoiceNote(User sender, VoiceNoteData note, long voiceNoteId) {
+        return messageService.sendVoiceNote(sender.getId(), sender.getUsername(), note.getReceiverId(),
+                note.isGroupMessage() ? note.getGroupId() : 0, note.getDurationSeconds(), voiceNoteId);
+    }
+    
+    public Message handleFindVoiceNote(long voiceNoteId) {
+        return messageService.getVoiceNoteMessage(voiceNoteId);
+    }
+    
+    public ByteBuffer[] handleGetVoiceNoteAudio(long voiceNoteId) {
+        return messageService.getVoiceNoteAudio(voiceNoteId);
+    }
+    
+    public MessagePage handleGetInbox(int userId, Integer afterId) {
+        return messageService.getUndelivered(userId, afterId, ServerConfig.getInstance().getInboxBatchSize());
+    }
+    
+    public void handleAckDelivery(int userId, String data) {
+        messageService.acknowledgeDelivery(userId, Integer.parseInt(data.trim()));
     }
     
     public Packet handleCreateGroup(String name, int creatorId) {
@@ -105,9 +199,16 @@ public class ChatController {
         }
     }
     
-    public Packet handleGetUsers() {
-        List<User> users = userService.getAllUsers();
-        return new Packet(Command.SUCCESS, Protocol.toJson(users));
+    // Sin datos: directorio completo (lista). Con la ultima version vista: UserDirectoryDelta
+    public Packet handleGetUsers(String data) {
+        if (data == null || data.trim().isEmpty()) {
+            List<User> users = directoryService.getAllUsers();
+            presenceService.apply(users);
+            return new Packet(Command.SUCCESS, Protocol.toJson(users));
+        }
+        UserDirectoryDelta delta = directoryService.getChangesSince(Long.parseLong(data.trim()));
+        presenceService.apply(delta.getUsers());
+        return new Packet(Command.SUCCESS, Protocol.toJson(delta));
     }
     
     public void handleCallRequest(Call call) {
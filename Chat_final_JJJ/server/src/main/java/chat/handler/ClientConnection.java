@@ -0,0 +1,23 @@
+package chat.handler;
+
+import chat.protocol.WireFormat;
+
+import java.nio.ByteBuffer;
+
+// Transporte de una sesion: abstrae si el socket es bloqueante o atendido por un selector NIO.
+// write() nunca bloquea al llamador: el frame se encola y lo drena el escritor de la conexion.
+// El frame puede estar compartido entre varias conexiones, por eso cada una escribe un duplicate().
+public interface ClientConnection {
+    // droppable = notificacion push que puede descartarse si el cliente no da abasto
+    void write(ByteBuffer frame, boolean droppable);
+
+    // Un solo frame repartido en varios buffers (cabecera + audio mapeado); se encola sin intercalarse
+    void write(ByteBuffer[] parts, boolean droppable);
+
+    void close();
+
+    String getRemoteAddress();
+
+    // Formato negociado por el cliente al conectarse (JSON por defecto)
+    WireFormat getWireFormat();
+}
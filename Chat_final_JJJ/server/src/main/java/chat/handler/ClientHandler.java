@@ -1,39 +1,89 @@
 package chat.handler;
 
+import chat.config.ServerConfig;
 import chat.controller.ChatController;
+import chat.metrics.Metrics;
 import chat.model.*;
+import chat.protocol.BinaryCodec;
 import chat.protocol.Protocol;
 import chat.protocol.Protocol.Command;
 import chat.protocol.Protocol.Packet;
+import chat.protocol.WireFormat;
+import chat.repository.VoiceNoteRepository;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class ClientHandler implements Runnable {
+    // PCM 16 bits mono a 44.1 kHz, para informar la duracion de una nota guardada
+    private static final int VOICE_NOTE_BYTES_PER_SECOND = 44100 * 2;
+
     private final Socket socket;
     private final ChatController controller;
     private final ClientRegistry clientRegistry;
+    private final Executor writers;
+    private final Metrics metrics = Metrics.getInstance();
 
-    private BufferedReader in;
-    private PrintWriter out;
+    private ClientConnection connection;
     private User currentUser;
+    // requestId del paquete en curso; se copia en las respuestas de send()
+    private Integer currentRequestId;
+    // Notas de voz por streaming abiertas por este cliente, por noteId
+    private final Map<Integer, VoiceNoteStream> voiceNoteStreams = new HashMap<>();
 
-    public ClientHandler(Socket socket, ChatController controller, ClientRegistry clientRegistry) {
+    public ClientHandler(Socket socket, ChatController controller, ClientRegistry clientRegistry, Executor writers) {
         this.socket = socket;
         this.controller = controller;
         this.clientRegistry = clientRegistry;
+        this.writers = writers;
+    }
+
+    // Usado por el servidor NIO: la lectura y el framing los hace el reactor
+    public ClientHandler(ClientConnection connection, ChatController controller, ClientRegistry clientRegistry) {
+        this.socket = null;
+        this.writers = null;
+        this.connection = connection;
+        this.controller = controller;
+        this.clientRegistry = clientRegistry;
+        metrics.add("sessions.active", 1);
     }
 
     @Override
     public void run() {
+        metrics.add("sessions.active", 1);
         try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(), true);
+            ServerConfig config = ServerConfig.getInstance();
+            InputStream input = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+
+            // El primer byte decide el formato de la conexion
+            input.mark(1);
+            int first = input.read();
+            if (first < 0) {
+                return;
+            }
+            WireFormat format = (byte) first == BinaryCodec.MAGIC ? WireFormat.BINARY : WireFormat.JSON;
+            if (format == WireFormat.JSON) {
+                input.reset();
+            }
+            connection = new SocketConnection(socket, OutboundQueue.create(config), writers, format);
 
-            String line;
-            while ((line = in.readLine()) != null) {
-                Packet packet = Protocol.deserialize(line);
-                handlePacket(packet);
+            if (format == WireFormat.BINARY) {
+                DataInputStream in = new DataInputStream(input);
+                Packet packet;
+                while ((packet = BinaryCodec.read(in, config.getMaxFrameBytes())) != null) {
+                    onPacket(packet);
+                }
+            } else {
+                BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    onPacket(Protocol.deserialize(line));
+                }
             }
         } catch (IOException e) {
             System.out.println("Cliente desconectado: " +
@@ -43,6 +93,23 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    public void onPacket(Packet packet) {
+        if (packet != null) {
+            currentRequestId = packet.getRequestId();
+            long start = System.nanoTime();
+            handlePacket(packet);
+            metrics.increment("packets.handled");
+            metrics.add("packets.handleMicros", (System.nanoTime() - start) / 1000);
+            currentRequestId = null;
+        }
+    }
+
+    public void onDisconnect() {
+        System.out.println("Cliente desconectado: " +
+                (currentUser != null ? currentUser.getUsername() : "desconocido"));
+        disconnect();
+    }
+
     private void handlePacket(Packet packet) {
         try {
             Packet response;
@@ -56,6 +123,9 @@ public class ClientHandler implements Runnable {
                         System.out.println("Nuevo usuario registrado: " + currentUser.getUsername());
                     }
                     send(response);
+                    if (response.getCommand() == Command.SUCCESS) {
+                        deliverInbox();
+                    }
                     break;
 
                 case LOGIN:
@@ -66,10 +136,18 @@ public class ClientHandler implements Runnable {
                         System.out.println("Usuario conectado: " + currentUser.getUsername());
                     }
                     send(response);
+                    if (response.getCommand() == Command.SUCCESS) {
+                        deliverInbox();
+                    }
+                    break;
+
+                case ACK_DELIVERY:
+                    // Sin respuesta: el cliente confirma en segundo plano lo que ya mostro
+                    controller.handleAckDelivery(currentUser.getId(), packet.getData());
                     break;
 
                 case LOGOUT:
-                    controller.handleLogout(currentUser.getId());
+                    clientRegistry.unregister(currentUser.getId(), this);
                     send(new Packet(Command.SUCCESS, "Sesion cerrada"));
                     break;
 
@@ -85,7 +163,7 @@ public class ClientHandler implements Runnable {
                         ClientHandler receiver = clientRegistry.get(message.getReceiverId());
                         if (receiver != null) {
                             Packet notification = new Packet(Command.RECEIVE_MESSAGE, Protocol.toJson(message));
-                            receiver.send(notification);
+                            receiver.push(notification);
                         }
                     }
                     break;
@@ -102,14 +180,12 @@ public class ClientHandler implements Runnable {
                     break;
 
                 case GET_HISTORY:
-                    int otherUserId = Integer.parseInt(packet.getData());
-                    response = controller.handleGetHistory(currentUser.getId(), otherUserId);
+                    response = controller.handleGetHistory(currentUser.getId(), packet.getData());
                     send(response);
                     break;
 
                 case GET_GROUP_MESSAGES:
-                    int groupId = Integer.parseInt(packet.getData());
-                    response = controller.handleGetGroupMessages(groupId);
+                    response = controller.handleGetGroupMessages(packet.getData());
                     send(response);
                     break;
 
@@ -133,7 +209,17 @@ public class ClientHandler implements Runnable {
                     break;
 
                 case GET_USERS:
-                    response = controller.handleGetUsers();
+                    response = controller.handleGetUsers(packet.getData());
+                    send(response);
+                    break;
+
+                case GET_USER_STATUS:
+                    response = controller.handleGetUserStatus(packet.getData());
+                    send(response);
+                    break;
+
+                case UPDATE_STATUS:
+                    response = controller.handleUpdateStatus(currentUser.getId(), packet.getData());
                     send(response);
                     break;
 
@@ -141,6 +227,22 @@ public class ClientHandler implements Runnable {
                     handleVoiceNoteData(packet);
                     break;
 
+                case VOICE_NOTE_BEGIN:
+                    handleVoiceNoteBegin(packet);
+                    break;
+
+                case VOICE_NOTE_CHUNK:
+                    handleVoiceNoteChunk(packet);
+                    break;
+
+                case VOICE_NOTE_END:
+                    handleVoiceNoteEnd(packet);
+                    break;
+
+                case GET_VOICE_NOTE:
+                    handleGetVoiceNote(packet);
+                    break;
+
                 case CALL_REQUEST:
                     handleCallRequest(packet);
                     break;
@@ -165,30 +267,65 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    // Lo recibido desde el ultimo ACK_DELIVERY, en lotes de server.inbox.batchSize. Cada lote es una
+    // consulta por rango desde el ultimo id entregado; el cursor solo avanza cuando el cliente confirma.
+    private void deliverInbox() {
+        Integer afterId = null;
+        int delivered = 0;
+        while (true) {
+            MessagePage page = controller.handleGetInbox(currentUser.getId(), afterId);
+            if (page.getMessages().isEmpty()) {
+                break;
+            }
+            // Sin requestId y no descartable: no es la respuesta al LOGIN pero tampoco puede perderse
+            Packet batch = new Packet(Command.DELIVER_MESSAGES, Protocol.toJson(page));
+            connection.write(Protocol.encodeFrame(batch, getWireFormat()), false);
+            delivered += page.getMessages().size();
+            afterId = page.getNewestId();
+            if (!page.isHasMore()) {
+                break;
+            }
+        }
+        if (delivered > 0) {
+            metrics.add("inbox.delivered", delivered);
+            System.out.println("Entregados " + delivered + " mensajes pendientes a " + currentUser.getUsername());
+        }
+    }
+
     private void handleVoiceNoteData(Packet packet) {
         try {
             VoiceNoteData voiceNote = Protocol.fromJson(packet.getData(), VoiceNoteData.class);
+            byte[] audio = packet.getPayload() != null ? packet.getPayload() : voiceNote.getAudioBytes();
 
             System.out.println("Nota de voz recibida de usuario " + voiceNote.getSenderId() +
-                    " (" + voiceNote.getAudioBytes().length + " bytes)");
+                    " (" + audio.length + " bytes)");
+            if (!voiceNote.isGroupMessage() && voiceNote.getReceiverId() == 0) {
+                sendError("ID de destinatario invalido");
+                return;
+            }
+
+            // Se guarda antes de reenviar: el destinatario desconectado la obtiene luego con GET_VOICE_NOTE
+            long voiceNoteId = controller.handleStoreVoiceNoteAudio(VoiceNoteRepository.NO_PREVIOUS, audio);
+            controller.handleSaveVoiceNote(currentUser, voiceNote, voiceNoteId);
+            voiceNote.setVoiceNoteId(voiceNoteId);
+
+            // El audio se reenvia como payload: crudo a clientes binarios, Base64 a clientes JSON
+            voiceNote.setRawAudio(audio);
+            Packet notification = new Packet(Command.VOICE_NOTE_DATA, Protocol.toJson(voiceNote));
+            notification.setPayload(audio);
 
             if (voiceNote.isGroupMessage()) {
                 // Enviar a todos los miembros del grupo excepto el remitente
-                clientRegistry.notifyGroupVoiceNote(voiceNote, currentUser.getId());
+                clientRegistry.notifyGroupVoiceNote(voiceNote.getGroupId(), notification, currentUser.getId());
                 send(new Packet(Command.SUCCESS, "Nota de voz enviada al grupo"));
             } else {
                 // Enviar al destinatario específico
-                if (voiceNote.getReceiverId() != 0) {
-                    ClientHandler receiver = clientRegistry.get(voiceNote.getReceiverId());
-                    if (receiver != null) {
-                        Packet notification = new Packet(Command.VOICE_NOTE_DATA, Protocol.toJson(voiceNote));
-                        receiver.send(notification);
-                        send(new Packet(Command.SUCCESS, "Nota de voz enviada"));
-                    } else {
-                        sendError("Usuario no disponible");
-                    }
+                ClientHandler receiver = clientRegistry.get(voiceNote.getReceiverId());
+                if (receiver != null) {
+                    receiver.push(notification);
+                    send(new Packet(Command.SUCCESS, "Nota de voz enviada"));
                 } else {
-                    sendError("ID de destinatario invalido");
+                    send(new Packet(Command.SUCCESS, "Nota de voz guardada, el usuario no esta conectado"));
                 }
             }
         } catch (Exception e) {
@@ -197,6 +334,170 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    private void handleVoiceNoteBegin(Packet packet) {
+        VoiceNoteData header = Protocol.fromJson(packet.getData(), VoiceNoteData.class);
+        ServerConfig config = ServerConfig.getInstance();
+
+        if (header.getNoteId() == null) {
+            sendError("noteId requerido");
+            return;
+        }
+        if (voiceNoteStreams.containsKey(header.getNoteId())
+                || voiceNoteStreams.size() >= config.getVoiceNoteMaxActive()) {
+            sendError("Demasiadas notas de voz en curso");
+            return;
+        }
+
+        int[] recipients;
+        if (header.isGroupMessage()) {
+            recipients = clientRegistry.getGroupMembers(header.getGroupId());
+            if (recipients == null) {
+                sendError("Grupo no encontrado");
+                return;
+            }
+        } else {
+            // El destinatario puede estar desconectado: la nota queda guardada para despues
+            if (header.getReceiverId() <= 0) {
+                sendError("ID de destinatario invalido");
+                return;
+            }
+            recipients = new int[]{header.getReceiverId()};
+        }
+
+        header.setSenderId(currentUser.getId());
+        voiceNoteStreams.put(header.getNoteId(), new VoiceNoteStream(header.getNoteId(), recipients, header));
+        clientRegistry.relay(recipients, currentUser.getId(), new Packet(Command.VOICE_NOTE_BEGIN, Protocol.toJson(header)));
+        send(new Packet(Command.SUCCESS, "Nota de voz iniciada"));
+    }
+
+    // Cada chunk se reenvia apenas llega; no se responde por chunk, solo en caso de error
+    private void handleVoiceNoteChunk(Packet packet) {
+        VoiceNoteChunk chunk = Protocol.fromJson(packet.getData(), VoiceNoteChunk.class);
+        VoiceNoteStream stream = voiceNoteStreams.get(chunk.getNoteId());
+        if (stream == null) {
+            // BEGIN rechazado o nota ya cerrada: el error ya se informo una vez
+            metrics.increment("voiceNote.unknownChunks");
+            return;
+        }
+
+        byte[] audio = packet.getPayload() != null ? packet.getPayload() : chunk.getAudioBytes();
+        if (audio == null || audio.length == 0) {
+            return;
+        }
+        if (!stream.accept(audio.length, ServerConfig.getInstance().getVoiceNoteMaxBytes())) {
+            endVoiceNoteStream(stream);
+            sendError("Nota de voz demasiado larga");
+            return;
+        }
+        try {
+            stream.setLastChunkId(controller.handleStoreVoiceNoteAudio(stream.getLastChunkId(), audio));
+        } catch (RuntimeException e) {
+            System.err.println("Error guardando nota de voz: " + e.getMessage());
+            endVoiceNoteStream(stream);
+            sendError("Error guardando nota de voz");
+            return;
+        }
+
+        chunk.setSenderId(currentUser.getId());
+        chunk.setRawAudio(audio);
+        Packet notification = new Packet(Command.VOICE_NOTE_CHUNK, Protocol.toJson(chunk));
+        notification.setPayload(audio);
+        clientRegistry.relay(stream.getRecipients(), currentUser.getId(), notification);
+
+        metrics.increment("voiceNote.chunksRelayed");
+        metrics.add("voiceNote.bytesRelayed", audio.length);
+    }
+
+    private void handleVoiceNoteEnd(Packet packet) {
+        VoiceNoteChunk end = Protocol.fromJson(packet.getData(), VoiceNoteChunk.class);
+        VoiceNoteStream stream = voiceNoteStreams.get(end.getNoteId());
+        if (stream == null) {
+            sendError("Nota de voz desconocida: " + end.getNoteId());
+            return;
+        }
+        endVoiceNoteStream(stream);
+        if (stream.getLastChunkId() == VoiceNoteRepository.NO_PREVIOUS) {
+            send(new Packet(Command.SUCCESS, "Nota de voz vacia descartada"));
+            return;
+        }
+        controller.handleSaveVoiceNote(currentUser, stream.getHeader(), stream.getLastChunkId());
+        System.out.println("Nota de voz por streaming de usuario " + currentUser.getId() +
+                " (" + stream.getBytesRelayed() + " bytes)");
+        send(new Packet(Command.SUCCESS, "Nota de voz enviada"));
+    }
+
+    // data = voiceNoteId. Solo el remitente, el destinatario o un miembro del grupo pueden leerla.
+    private void handleGetVoiceNote(Packet packet) {
+        long voiceNoteId = Long.parseLong(packet.getData().trim());
+        Message message = controller.handleFindVoiceNote(voiceNoteId);
+        ByteBuffer[] audio = message != null && canRead(message) ? controller.handleGetVoiceNoteAudio(voiceNoteId) : null;
+        if (audio == null) {
+            sendError("Nota de voz no encontrada");
+            return;
+        }
+
+        int length = 0;
+        for (ByteBuffer chunk : audio) {
+            length += chunk.remaining();
+        }
+        int seconds = length / VOICE_NOTE_BYTES_PER_SECOND;
+        VoiceNoteData note = message.getGroupId() != null
+                ? new VoiceNoteData(message.getSenderId(), message.getGroupId(), null, seconds, true)
+                : new VoiceNoteData(message.getSenderId(), message.getReceiverId(), null, seconds);
+        note.setVoiceNoteId(voiceNoteId);
+        Packet response = new Packet(Command.VOICE_NOTE_DATA, Protocol.toJson(note));
+        if (currentRequestId != null) {
+            response.setRequestId(currentRequestId);
+        }
+
+        if (getWireFormat() == WireFormat.BINARY) {
+            // Cabecera en el heap y el audio como slices del segmento mapeado, sin copiarlo
+            ByteBuffer[] parts = new ByteBuffer[audio.length + 1];
+            parts[0] = BinaryCodec.encodeHeader(response, length);
+            System.arraycopy(audio, 0, parts, 1, audio.length);
+            connection.write(parts, false);
+        } else {
+            // JSON necesita el audio en Base64: unica copia al heap
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            for (ByteBuffer chunk : audio) {
+                int size = chunk.remaining();
+                chunk.duplicate().get(bytes, offset, size);
+                offset += size;
+            }
+            response.setPayload(bytes);
+            send(response);
+        }
+        metrics.increment("voiceNote.served");
+        metrics.add("voiceNote.bytesServed", length);
+    }
+
+    private boolean canRead(Message message) {
+        int userId = currentUser.getId();
+        if (message.getSenderId() == userId
+                || (message.getReceiverId() != null && message.getReceiverId() == userId)) {
+            return true;
+        }
+        if (message.getGroupId() != null) {
+            int[] members = clientRegistry.getGroupMembers(message.getGroupId());
+            if (members != null) {
+                for (int member : members) {
+                    if (member == userId) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void endVoiceNoteStream(VoiceNoteStream stream) {
+        voiceNoteStreams.remove(stream.getNoteId());
+        VoiceNoteChunk end = new VoiceNoteChunk(stream.getNoteId(), -1, null);
+        end.setSenderId(currentUser.getId());
+        clientRegistry.relay(stream.getRecipients(), currentUser.getId(), new Packet(Command.VOICE_NOTE_END, Protocol.toJson(end)));
+    }
+
     private void handleCallRequest(Packet packet) {
         Call call = Protocol.fromJson(packet.getData(), Call.class);
         call.setCallerId(currentUser.getId());
@@ -210,7 +511,7 @@ public class ClientHandler implements Runnable {
             ClientHandler receiver = clientRegistry.get(call.getReceiverId());
             if (receiver != null) {
                 Packet notification = new Packet(Command.CALL_REQUEST, Protocol.toJson(call));
-                receiver.send(notification);
+                receiver.push(notification);
                 send(new Packet(Command.SUCCESS, "Llamada iniciada"));
             } else {
                 sendError("Usuario no disponible");
@@ -226,7 +527,7 @@ public class ClientHandler implements Runnable {
         ClientHandler caller = clientRegistry.get(call.getCallerId());
         if (caller != null) {
             Packet notification = new Packet(Command.CALL_ACCEPT, Protocol.toJson(call));
-            caller.send(notification);
+            caller.push(notification);
         }
     }
 
@@ -238,7 +539,7 @@ public class ClientHandler implements Runnable {
         ClientHandler caller = clientRegistry.get(call.getCallerId());
         if (caller != null) {
             Packet notification = new Packet(Command.CALL_REJECT, Protocol.toJson(call));
-            caller.send(notification);
+            caller.push(notification);
         }
     }
 
@@ -253,12 +554,31 @@ public class ClientHandler implements Runnable {
         ClientHandler other = clientRegistry.get(otherUserId);
         if (other != null) {
             Packet notification = new Packet(Command.CALL_END, Protocol.toJson(call));
-            other.send(notification);
+            other.push(notification);
         }
     }
 
+    // Respuesta al propio cliente: nunca se descarta
     public void send(Packet packet) {
-        out.println(Protocol.serialize(packet));
+        if (currentRequestId != null && packet.getRequestId() == null) {
+            packet.setRequestId(currentRequestId);
+        }
+        connection.write(Protocol.encodeFrame(packet, getWireFormat()), false);
+    }
+
+    // Notificacion hacia este cliente originada por otro usuario; no bloquea al emisor
+    public void push(Packet packet) {
+        connection.write(Protocol.encodeFrame(packet, getWireFormat()), true);
+    }
+
+    // Igual que push pero con un frame ya codificado y compartido (fan-out a grupos)
+    public void pushFrame(ByteBuffer frame, boolean droppable) {
+        connection.write(frame, droppable);
+    }
+
+    public WireFormat getWireFormat() {
+        WireFormat format = connection.getWireFormat();
+        return format != null ? format : WireFormat.JSON;
     }
 
     private void sendError(String error) {
@@ -268,12 +588,20 @@ public class ClientHandler implements Runnable {
     }
 
     private void disconnect() {
+        metrics.add("sessions.active", -1);
         try {
             if (currentUser != null) {
-                controller.handleLogout(currentUser.getId());
-                clientRegistry.unregister(currentUser.getId());
+                // Cerrar en los destinatarios las notas de voz que quedaron a medias
+                for (VoiceNoteStream stream : voiceNoteStreams.values().toArray(new VoiceNoteStream[0])) {
+                    endVoiceNoteStream(stream);
+                }
+                clientRegistry.unregister(currentUser.getId(), this);
+            }
+            if (connection != null) {
+                connection.close();
+            } else {
+                socket.close();
             }
-            socket.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
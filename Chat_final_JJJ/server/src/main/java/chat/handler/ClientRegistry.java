@@ -1,31 +1,41 @@
 package chat.handler;
 
+import chat.metrics.Metrics;
 import chat.model.Call;
-import chat.model.Group;
 import chat.model.Message;
-import chat.model.VoiceNoteData;
 import chat.protocol.Protocol;
 import chat.protocol.Protocol.Command;
 import chat.protocol.Protocol.Packet;
-import chat.repository.GroupRepository;
+import chat.protocol.WireFormat;
+import chat.repository.impl.GroupMembershipCache;
+import chat.service.PresenceService;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ClientRegistry {
     private final Map<Integer, ClientHandler> connectedClients = new ConcurrentHashMap<>();
-    private final GroupRepository groupRepository;
+    private final GroupMembershipCache membershipCache;
+    private final PresenceService presence;
+    private final Metrics metrics = Metrics.getInstance();
 
-    public ClientRegistry(GroupRepository groupRepository) {
-        this.groupRepository = groupRepository;
+    public ClientRegistry(GroupMembershipCache membershipCache, PresenceService presence) {
+        this.membershipCache = membershipCache;
+        this.presence = presence;
     }
 
     public void register(int userId, ClientHandler handler) {
         connectedClients.put(userId, handler);
+        presence.connected(userId);
     }
 
-    public void unregister(int userId) {
-        connectedClients.remove(userId);
+    // Solo si la sesion sigue siendo la registrada: al reconectar, el cierre de la conexion
+    // vieja no debe dejar al usuario como desconectado
+    public void unregister(int userId, ClientHandler handler) {
+        if (connectedClients.remove(userId, handler)) {
+            presence.disconnected(userId);
+        }
     }
 
     public ClientHandler get(int userId) {
@@ -33,50 +43,74 @@ public class ClientRegistry {
     }
 
     public void notifyGroupMessage(Message message, int senderId) {
-        groupRepository.findById(message.getGroupId()).ifPresent(group -> {
-            for (int memberId : group.getMemberIds()) {
-                if (memberId != senderId) {
-                    ClientHandler member = connectedClients.get(memberId);
-                    if (member != null) {
-                        Packet notification = new Packet(Command.RECEIVE_MESSAGE, Protocol.toJson(message));
-                        member.send(notification);
-                    }
-                }
-            }
-        });
+        int[] members = membershipCache.getMembers(message.getGroupId());
+        if (members != null) {
+            fanOut(members, senderId, new Packet(Command.RECEIVE_MESSAGE, Protocol.toJson(message)));
+        }
     }
 
-    public void notifyGroupVoiceNote(VoiceNoteData voiceNote, int senderId) {
-        groupRepository.findById(voiceNote.getGroupId()).ifPresent(group -> {
-            System.out.println("Enviando nota de voz a grupo " + voiceNote.getGroupId() +
-                    " con " + group.getMemberIds().size() + " miembros");
-
-            for (int memberId : group.getMemberIds()) {
-                if (memberId != senderId) {
-                    ClientHandler member = connectedClients.get(memberId);
-                    if (member != null) {
-                        Packet notification = new Packet(Command.VOICE_NOTE_DATA, Protocol.toJson(voiceNote));
-                        member.send(notification);
-                        System.out.println("Nota de voz enviada a miembro " + memberId);
-                    } else {
-                        System.out.println("Miembro " + memberId + " no esta conectado");
-                    }
-                }
-            }
-        });
+    public void notifyGroupVoiceNote(int groupId, Packet notification, int senderId) {
+        int[] members = membershipCache.getMembers(groupId);
+        if (members != null) {
+            System.out.println("Enviando nota de voz a grupo " + groupId +
+                    " con " + members.length + " miembros");
+
+            int delivered = fanOut(members, senderId, notification);
+            System.out.println("Nota de voz enviada a " + delivered + " miembros conectados");
+        }
     }
 
     public void notifyGroupCall(Call call, int callerId) {
-        groupRepository.findById(call.getReceiverId()).ifPresent(group -> {
-            for (int memberId : group.getMemberIds()) {
-                if (memberId != callerId) {
-                    ClientHandler member = connectedClients.get(memberId);
-                    if (member != null) {
-                        Packet notification = new Packet(Command.CALL_REQUEST, Protocol.toJson(call));
-                        member.send(notification);
-                    }
+        int[] members = membershipCache.getMembers(call.getReceiverId());
+        if (members != null) {
+            fanOut(members, callerId, new Packet(Command.CALL_REQUEST, Protocol.toJson(call)));
+        }
+    }
+
+    public int[] getGroupMembers(int groupId) {
+        return membershipCache.getMembers(groupId);
+    }
+
+    // Reenvia a un conjunto de destinatarios ya resuelto (notas de voz por streaming).
+    // Los frames del stream no se descartan con DROP_NOTIFICATIONS: perder un CHUNK o el END corromperia
+    // la reproduccion; lo que puede acumularse esta acotado por server.voiceNote.maxBytes.
+    public int relay(int[] recipients, int senderId, Packet notification) {
+        return fanOut(recipients, senderId, notification, false);
+    }
+
+    private int fanOut(int[] members, int senderId, Packet notification) {
+        return fanOut(members, senderId, notification, true);
+    }
+
+    // Serializa la notificacion una sola vez por formato y escribe el mismo buffer inmutable a cada miembro conectado
+    private int fanOut(int[] members, int senderId, Packet notification, boolean droppable) {
+        ByteBuffer[] frames = new ByteBuffer[WireFormat.values().length];
+        long bytesSent = 0;
+        int delivered = 0;
+
+        for (int memberId : members) {
+            if (memberId == senderId) {
+                continue;
+            }
+            ClientHandler member = connectedClients.get(memberId);
+            if (member != null) {
+                WireFormat format = member.getWireFormat();
+                ByteBuffer frame = frames[format.ordinal()];
+                if (frame == null) {
+                    frame = Protocol.encodeFrame(notification, format).asReadOnlyBuffer();
+                    frames[format.ordinal()] = frame;
+                    metrics.add("fanout.bytesEncoded", frame.remaining());
                 }
+                member.pushFrame(frame, droppable);
+                bytesSent += frame.remaining();
+                delivered++;
             }
-        });
+        }
+
+        if (delivered > 0) {
+            metrics.add("fanout.bytesSent", bytesSent);
+            metrics.add("fanout.recipients", delivered);
+        }
+        return delivered;
     }
 }
@@ -0,0 +1,196 @@
+package chat.handler;
+
+import chat.config.ServerConfig;
+import chat.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+// Cola de salida acotada (en bytes) de una conexion.
+// Cuando se llena aplica la politica configurada en server.outbound.policy.
+public class OutboundQueue {
+
+    public enum OverflowPolicy {
+        DROP_NOTIFICATIONS, // descartar notificaciones push, nunca respuestas
+        DISCONNECT,         // cerrar la conexion del cliente lento
+        SPILL               // derramar a un archivo temporal y reenviar en orden
+    }
+
+    public enum Offer {
+        ENQUEUED, DROPPED, OVERFLOW
+    }
+
+    private final ArrayDeque<ByteBuffer> frames = new ArrayDeque<>();
+    private final long maxBytes;
+    private final long spillMaxBytes;
+    private final OverflowPolicy policy;
+    private final Metrics metrics = Metrics.getInstance();
+
+    private long queuedBytes = 0;
+    private SpillFile spill;
+
+    public OutboundQueue(long maxBytes, OverflowPolicy policy, long spillMaxBytes) {
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.spillMaxBytes = spillMaxBytes;
+    }
+
+    public static OutboundQueue create(ServerConfig config) {
+        return new OutboundQueue(config.getOutboundMaxBytes(),
+                OverflowPolicy.valueOf(config.getOutboundPolicy().toUpperCase()),
+                config.getOutboundSpillMaxBytes());
+    }
+
+    public synchronized Offer offer(ByteBuffer frame, boolean droppable) {
+        int size = frame.remaining();
+
+        // Mientras haya datos derramados todo va al archivo para conservar el orden
+        if (spill != null && !spill.isEmpty()) {
+            return spill(frame);
+        }
+
+        // Un frame individual mas grande que el limite se acepta si la cola esta vacia
+        if (frames.isEmpty() || queuedBytes + size <= maxBytes) {
+            frames.add(frame);
+            queuedBytes += size;
+            return Offer.ENQUEUED;
+        }
+
+        switch (policy) {
+            case DROP_NOTIFICATIONS:
+                if (droppable) {
+                    metrics.increment("outbound.dropped");
+                    return Offer.DROPPED;
+                }
+                frames.add(frame);
+                queuedBytes += size;
+                return Offer.ENQUEUED;
+            case SPILL:
+                return spill(frame);
+            default:
+                metrics.increment("outbound.overflowDisconnects");
+                return Offer.OVERFLOW;
+        }
+    }
+
+    public synchronized ByteBuffer poll() {
+        ByteBuffer frame = frames.poll();
+        if (frame != null) {
+            queuedBytes -= frame.remaining();
+            return frame;
+        }
+        if (spill != null && !spill.isEmpty()) {
+            try {
+                return spill.read();
+            } catch (IOException e) {
+                System.err.println("Error leyendo cola derramada: " + e.getMessage());
+                closeSpill();
+            }
+        }
+        return null;
+    }
+
+    public synchronized boolean isEmpty() {
+        return frames.isEmpty() && (spill == null || spill.isEmpty());
+    }
+
+    public synchronized void clear() {
+        frames.clear();
+        queuedBytes = 0;
+        closeSpill();
+    }
+
+    private Offer spill(ByteBuffer frame) {
+        try {
+            if (spill == null) {
+                spill = new SpillFile();
+            }
+            if (spill.size() + frame.remaining() > spillMaxBytes) {
+                metrics.increment("outbound.overflowDisconnects");
+                return Offer.OVERFLOW;
+            }
+            metrics.add("outbound.spilledBytes", frame.remaining());
+            spill.write(frame);
+            return Offer.ENQUEUED;
+        } catch (IOException e) {
+            System.err.println("Error derramando cola de salida: " + e.getMessage());
+            return Offer.OVERFLOW;
+        }
+    }
+
+    private void closeSpill() {
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+    }
+
+    // Archivo temporal con frames [longitud][bytes]; se trunca cada vez que se vacia
+    private static class SpillFile {
+        private final FileChannel channel;
+        private final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        private long writePosition = 0;
+        private long readPosition = 0;
+
+        SpillFile() throws IOException {
+            Path path = Files.createTempFile("chat-outbound-", ".spill");
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        void write(ByteBuffer frame) throws IOException {
+            ByteBuffer data = frame.duplicate();
+            lengthBuffer.clear();
+            lengthBuffer.putInt(data.remaining()).flip();
+            writePosition += channel.write(lengthBuffer, writePosition);
+            while (data.hasRemaining()) {
+                writePosition += channel.write(data, writePosition);
+            }
+        }
+
+        ByteBuffer read() throws IOException {
+            lengthBuffer.clear();
+            readFully(lengthBuffer);
+            ByteBuffer frame = ByteBuffer.allocate(lengthBuffer.flip().getInt());
+            readFully(frame);
+            frame.flip();
+
+            if (readPosition == writePosition) {
+                channel.truncate(0);
+                readPosition = 0;
+                writePosition = 0;
+            }
+            return frame;
+        }
+
+        private void readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, readPosition);
+                if (n < 0) {
+                    throw new IOException("Archivo de cola truncado");
+                }
+                readPosition += n;
+            }
+        }
+
+        long size() {
+            return writePosition - readPosition;
+        }
+
+        boolean isEmpty() {
+            return readPosition == writePosition;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package chat.handler;
+
+import chat.protocol.WireFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SocketConnection implements ClientConnection {
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final OutboundQueue queue;
+    private final Executor writers;
+    private final WireFormat format;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final byte[] scratch = new byte[8192];
+    private volatile boolean closed = false;
+
+    public SocketConnection(Socket socket, OutboundQueue queue, Executor writers, WireFormat format) throws IOException {
+        this.socket = socket;
+        this.out = new BufferedOutputStream(socket.getOutputStream(), WRITE_BUFFER_SIZE);
+        this.queue = queue;
+        this.writers = writers;
+        this.format = format;
+    }
+
+    @Override
+    public void write(ByteBuffer frame, boolean droppable) {
+        if (closed) {
+            return;
+        }
+        OutboundQueue.Offer offer = queue.offer(frame.duplicate(), droppable);
+        if (offer == OutboundQueue.Offer.OVERFLOW) {
+            System.err.println("Cliente lento " + getRemoteAddress() + ", cerrando conexion");
+            close();
+        } else if (offer == OutboundQueue.Offer.ENQUEUED && scheduled.compareAndSet(false, true)) {
+            writers.execute(this::drain);
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer[] parts, boolean droppable) {
+        if (closed) {
+            return;
+        }
+        OutboundQueue.Offer offer = OutboundQueue.Offer.ENQUEUED;
+        synchronized (queue) {
+            for (int i = 0; i < parts.length && offer == OutboundQueue.Offer.ENQUEUED; i++) {
+                offer = queue.offer(parts[i].duplicate(), droppable);
+            }
+        }
+        if (offer != OutboundQueue.Offer.ENQUEUED) {
+            // Un frame a medias desincroniza al cliente: se corta la conexion
+            System.err.println("No se pudo encolar el frame completo para " + getRemoteAddress() + ", cerrando conexion");
+            close();
+        } else if (scheduled.compareAndSet(false, true)) {
+            writers.execute(this::drain);
+        }
+    }
+
+    // Escritor de la conexion: vacia todo lo encolado y hace un solo flush por lote
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer frame;
+                while ((frame = queue.poll()) != null) {
+                    writeFrame(frame);
+                }
+                out.flush();
+
+                scheduled.set(false);
+                if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            scheduled.set(false);
+            close();
+        }
+    }
+
+    private void writeFrame(ByteBuffer frame) throws IOException {
+        if (frame.hasArray()) {
+            out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            return;
+        }
+        ByteBuffer data = frame.duplicate();
+        while (data.hasRemaining()) {
+            int length = Math.min(scratch.length, data.remaining());
+            data.get(scratch, 0, length);
+            out.write(scratch, 0, length);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.clear();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    @Override
+    public WireFormat getWireFormat() {
+        return format;
+    }
+}
@@ -0,0 +1,54 @@
+package chat.handler;
+
+import chat.model.VoiceNoteData;
+import chat.repository.VoiceNoteRepository;
+
+// Transferencia por streaming en curso: cada chunk se reenvia y se agrega al almacen de notas
+// enlazado al anterior. Los destinatarios se fijan en VOICE_NOTE_BEGIN para que nadie reciba una
+// nota a medias; los que no estaban conectados la obtienen despues con GET_VOICE_NOTE.
+class VoiceNoteStream {
+    private final int noteId;
+    private final int[] recipients;
+    private final VoiceNoteData header;
+    private long bytesRelayed;
+    private long lastChunkId = VoiceNoteRepository.NO_PREVIOUS;
+
+    VoiceNoteStream(int noteId, int[] recipients, VoiceNoteData header) {
+        this.noteId = noteId;
+        this.recipients = recipients;
+        this.header = header;
+    }
+
+    int getNoteId() {
+        return noteId;
+    }
+
+    int[] getRecipients() {
+        return recipients;
+    }
+
+    // Retorna false si el chunk supera el tamaño maximo de la nota
+    boolean accept(int length, long maxBytes) {
+        if (bytesRelayed + length > maxBytes) {
+            return false;
+        }
+        bytesRelayed += length;
+        return true;
+    }
+
+    long getBytesRelayed() {
+        return bytesRelayed;
+    }
+
+    VoiceNoteData getHeader() {
+        return header;
+    }
+
+    long getLastChunkId() {
+        return lastChunkId;
+    }
+
+    void setLastChunkId(long lastChunkId) {
+        this.lastChunkId = lastChunkId;
+    }
+}
@@ -0,0 +1,67 @@
+package chat.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Contadores simples del servidor; se imprimen periodicamente para comparar configuraciones bajo carga
+public class Metrics {
+    private static final Metrics instance = new Metrics();
+
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService reporter;
+
+    private Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    // Para rutas calientes: el llamador guarda el contador y evita la busqueda por nombre
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public long get(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public String snapshot() {
+        StringBuilder sb = new StringBuilder("[METRICS]");
+        counters.forEach((name, value) -> sb.append(' ').append(name).append('=').append(value.sum()));
+        gauges.forEach((name, supplier) -> sb.append(' ').append(name).append('=').append(supplier.getAsLong()));
+        return sb.toString();
+    }
+
+    public synchronized void startReporter(int intervalSeconds) {
+        if (intervalSeconds <= 0 || reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.out.println(snapshot()),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
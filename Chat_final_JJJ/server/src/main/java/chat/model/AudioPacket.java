@@ -5,6 +5,9 @@ import java.nio.ByteBuffer;
 
 public class AudioPacket implements Serializable {
     private static final long serialVersionUID = 1L;
+    // El byte alto del campo de longitud lleva el codec (0 = PCM), asi la cabecera sigue en 24 bytes
+    public static final int CODEC_SHIFT = 24;
+    public static final int LENGTH_MASK = 0x00FFFFFF;
 
     private int senderId;
     private int receiverId;
@@ -12,6 +15,7 @@ public class AudioPacket implements Serializable {
     private long timestamp;
     private byte[] audioData;
     private int dataLength;
+    private int codecId;
 
     public AudioPacket() {
         this.timestamp = System.currentTimeMillis();
@@ -33,7 +37,7 @@ public class AudioPacket implements Serializable {
         buffer.putInt(receiverId);
         buffer.putInt(sequenceNumber);
         buffer.putLong(timestamp);
-        buffer.putInt(dataLength);
+        buffer.putInt((codecId << CODEC_SHIFT) | dataLength);
         if (audioData != null) {
             buffer.put(audioData);
         }
@@ -54,7 +58,9 @@ public class AudioPacket implements Serializable {
             packet.receiverId = buffer.getInt();
             packet.sequenceNumber = buffer.getInt();
             packet.timestamp = buffer.getLong();
-            packet.dataLength = buffer.getInt();
+            int lengthField = buffer.getInt();
+            packet.codecId = lengthField >>> CODEC_SHIFT;
+            packet.dataLength = lengthField & LENGTH_MASK;
 
             if (packet.dataLength > 0 && buffer.remaining() >= packet.dataLength) {
                 packet.audioData = new byte[packet.dataLength];
@@ -118,4 +124,12 @@ public class AudioPacket implements Serializable {
     public int getDataLength() {
         return dataLength;
     }
+
+    public int getCodecId() {
+        return codecId;
+    }
+
+    public void setCodecId(int codecId) {
+        this.codecId = codecId;
+    }
 }
@@ -0,0 +1,108 @@
+package chat.model;
+
+import java.nio.ByteBuffer;
+
+// Vista flyweight sobre un AudioPacket ya serializado (mismo formato que AudioPacket.toBytes): lee y
+// escribe los campos de la cabecera de 24 bytes en su lugar y expone el audio como slice, sin crear
+// objetos ni copiar. Se reutiliza llamando a wrap con cada datagrama.
+public final class AudioPacketView {
+    public static final int HEADER_SIZE = 24;
+    private static final int SENDER_OFFSET = 0;
+    private static final int RECEIVER_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int TIMESTAMP_OFFSET = 12;
+    private static final int LENGTH_OFFSET = 20;
+
+    private ByteBuffer buffer;
+    private byte[] wrappedArray;
+    private int offset;
+    private int length;
+
+    public AudioPacketView wrap(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.wrappedArray = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public AudioPacketView wrap(byte[] data, int offset, int length) {
+        // Mismo arreglo que la vez anterior (buffer de recepcion reutilizado): no se crea otro ByteBuffer
+        if (data != wrappedArray) {
+            buffer = ByteBuffer.wrap(data);
+            wrappedArray = data;
+        }
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    // Cabecera completa y longitud de audio coherente con lo recibido
+    public boolean isValid() {
+        return length >= HEADER_SIZE && getDataLength() <= length - HEADER_SIZE;
+    }
+
+    public int getSenderId() {
+        return buffer.getInt(offset + SENDER_OFFSET);
+    }
+
+    public AudioPacketView setSenderId(int senderId) {
+        buffer.putInt(offset + SENDER_OFFSET, senderId);
+        return this;
+    }
+
+    public int getReceiverId() {
+        return buffer.getInt(offset + RECEIVER_OFFSET);
+    }
+
+    public AudioPacketView setReceiverId(int receiverId) {
+        buffer.putInt(offset + RECEIVER_OFFSET, receiverId);
+        return this;
+    }
+
+    public int getSequenceNumber() {
+        return buffer.getInt(offset + SEQUENCE_OFFSET);
+    }
+
+    public AudioPacketView setSequenceNumber(int sequenceNumber) {
+        buffer.putInt(offset + SEQUENCE_OFFSET, sequenceNumber);
+        return this;
+    }
+
+    public long getTimestamp() {
+        return buffer.getLong(offset + TIMESTAMP_OFFSET);
+    }
+
+    public AudioPacketView setTimestamp(long timestamp) {
+        buffer.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+        return this;
+    }
+
+    public int getCodecId() {
+        return buffer.getInt(offset + LENGTH_OFFSET) >>> AudioPacket.CODEC_SHIFT;
+    }
+
+    public int getDataLength() {
+        return buffer.getInt(offset + LENGTH_OFFSET) & AudioPacket.LENGTH_MASK;
+    }
+
+    public AudioPacketView setPayloadInfo(int codecId, int dataLength) {
+        buffer.putInt(offset + LENGTH_OFFSET, (codecId << AudioPacket.CODEC_SHIFT) | dataLength);
+        return this;
+    }
+
+    // Posicion absoluta del audio dentro del buffer o arreglo envuelto
+    public int getPayloadOffset() {
+        return offset + HEADER_SIZE;
+    }
+
+    public ByteBuffer payload() {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(getPayloadOffset() + getDataLength()).position(getPayloadOffset());
+        return slice.slice();
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+}
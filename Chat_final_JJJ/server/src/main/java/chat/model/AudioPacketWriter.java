@@ -0,0 +1,67 @@
+package chat.model;
+
+import java.net.DatagramPacket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+// Codificador de AudioPackets sobre un buffer reutilizable: escribe cabecera y audio en el mismo
+// arreglo en cada envio en vez de crear AudioPacket + ByteBuffer + byte[] por paquete. Hay uno por
+// hilo (forCurrentThread), asi que el resultado vale hasta el siguiente write del mismo hilo.
+public final class AudioPacketWriter {
+    private static final int MAX_DATAGRAM = 65507;
+    private static final ThreadLocal<AudioPacketWriter> POOL =
+            ThreadLocal.withInitial(() -> new AudioPacketWriter(MAX_DATAGRAM));
+
+    private final byte[] array;
+    private final ByteBuffer buffer;
+    private final AudioPacketView view = new AudioPacketView();
+    private final DatagramPacket datagram;
+    private int length;
+
+    public AudioPacketWriter(int capacity) {
+        this.array = new byte[capacity];
+        this.buffer = ByteBuffer.wrap(array);
+        this.view.wrap(array, 0, capacity);
+        this.datagram = new DatagramPacket(array, 0);
+    }
+
+    public static AudioPacketWriter forCurrentThread() {
+        return POOL.get();
+    }
+
+    public AudioPacketWriter write(int senderId, int receiverId, int sequenceNumber, long timestamp,
+                                   int codecId, byte[] audio, int audioOffset, int audioLength) {
+        if (AudioPacketView.HEADER_SIZE + audioLength > array.length) {
+            throw new IllegalArgumentException("Audio demasiado grande para un datagrama: " + audioLength);
+        }
+        view.setSenderId(senderId)
+                .setReceiverId(receiverId)
+                .setSequenceNumber(sequenceNumber)
+                .setTimestamp(timestamp)
+                .setPayloadInfo(codecId, audioLength);
+        System.arraycopy(audio, audioOffset, array, AudioPacketView.HEADER_SIZE, audioLength);
+        length = AudioPacketView.HEADER_SIZE + audioLength;
+        return this;
+    }
+
+    public byte[] array() {
+        return array;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // Vista lista para DatagramChannel.send/write: [0, length)
+    public ByteBuffer buffer() {
+        buffer.clear().limit(length);
+        return buffer;
+    }
+
+    // DatagramPacket reutilizado para DatagramSocket.send
+    public DatagramPacket datagram(SocketAddress target) {
+        datagram.setData(array, 0, length);
+        datagram.setSocketAddress(target);
+        return datagram;
+    }
+}
@@ -0,0 +1,54 @@
+package chat.model;
+
+// Peticion paginada de GET_HISTORY / GET_GROUP_MESSAGES con cursores por id (keyset).
+// Sin cursores se devuelve la pagina mas reciente; beforeId pagina hacia atras y afterId hacia adelante.
+public class HistoryQuery {
+    private Integer userId;
+    private Integer groupId;
+    private Integer beforeId;
+    private Integer afterId;
+    private Integer limit;
+    
+    public HistoryQuery() {
+    }
+    
+    public Integer getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+    
+    public Integer getGroupId() {
+        return groupId;
+    }
+    
+    public void setGroupId(Integer groupId) {
+        this.groupId = groupId;
+    }
+    
+    public Integer getBeforeId() {
+        return beforeId;
+    }
+    
+    public void setBeforeId(Integer beforeId) {
+        this.beforeId = beforeId;
+    }
+    
+    public Integer getAfterId() {
+        return afterId;
+    }
+    
+    public void setAfterId(Integer afterId) {
+        this.afterId = afterId;
+    }
+    
+    public Integer getLimit() {
+        return limit;
+    }
+    
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+}
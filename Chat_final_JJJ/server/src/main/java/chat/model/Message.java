@@ -20,6 +20,8 @@ public class Message implements Serializable {
     private LocalDateTime timestamp;
     private boolean delivered;
     private boolean read;
+    // Notas de voz: id del audio en el almacen de segmentos (MappedVoiceNoteRepository)
+    private Long voiceNoteId;
     
     public Message() {
         this.timestamp = LocalDateTime.now();
@@ -116,6 +118,14 @@ public class Message implements Serializable {
         this.read = read;
     }
     
+    public Long getVoiceNoteId() {
+        return voiceNoteId;
+    }
+    
+    public void setVoiceNoteId(Long voiceNoteId) {
+        this.voiceNoteId = voiceNoteId;
+    }
+    
     @Override
     public String toString() {
         String typeIcon = getTypeIcon();
@@ -123,7 +133,7 @@ public class Message implements Serializable {
             timestamp.toLocalTime().toString().substring(0, 5),
             senderUsername,
             typeIcon,
-            content);
+            voiceNoteId != null ? content + " [nota " + voiceNoteId + "]" : content);
     }
     
     private String getTypeIcon() {
@@ -0,0 +1,31 @@
+package chat.model;
+
+import java.util.List;
+
+// Pagina de historial en orden ascendente por id; hasMore indica si hay mas en la direccion pedida
+public class MessagePage {
+    private List<Message> messages;
+    private boolean hasMore;
+    
+    public MessagePage(List<Message> messages, boolean hasMore) {
+        this.messages = messages;
+        this.hasMore = hasMore;
+    }
+    
+    public List<Message> getMessages() {
+        return messages;
+    }
+    
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    
+    // Cursores para la siguiente peticion
+    public Integer getOldestId() {
+        return messages.isEmpty() ? null : messages.get(0).getId();
+    }
+    
+    public Integer getNewestId() {
+        return messages.isEmpty() ? null : messages.get(messages.size() - 1).getId();
+    }
+}
@@ -0,0 +1,36 @@
+package chat.model;
+
+import java.util.List;
+
+// Respuesta de GET_USERS con version: usuarios nuevos o cambiados desde la version del cliente.
+// full indica que users es el directorio completo (version desconocida o de otro arranque);
+// unchanged equivale a un 304: el cliente ya tiene la version actual y users viene vacio.
+public class UserDirectoryDelta {
+    private long version;
+    private boolean full;
+    private boolean unchanged;
+    private List<User> users;
+    
+    public UserDirectoryDelta(long version, boolean full, boolean unchanged, List<User> users) {
+        this.version = version;
+        this.full = full;
+        this.unchanged = unchanged;
+        this.users = users;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public boolean isFull() {
+        return full;
+    }
+    
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+    
+    public List<User> getUsers() {
+        return users;
+    }
+}
@@ -0,0 +1,34 @@
+package chat.model;
+
+import java.time.LocalDateTime;
+
+// Presencia de un usuario (GET_USER_STATUS): se sirve desde memoria, no desde la tabla users
+public class UserStatus {
+    private int userId;
+    private boolean online;
+    private LocalDateTime lastSeen;
+    private String status;
+    
+    public UserStatus(int userId, boolean online, LocalDateTime lastSeen, String status) {
+        this.userId = userId;
+        this.online = online;
+        this.lastSeen = lastSeen;
+        this.status = status;
+    }
+    
+    public int getUserId() {
+        return userId;
+    }
+    
+    public boolean isOnline() {
+        return online;
+    }
+    
+    public LocalDateTime getLastSeen() {
+        return lastSeen;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+}
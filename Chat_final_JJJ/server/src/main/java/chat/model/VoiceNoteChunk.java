@@ -0,0 +1,47 @@
+package chat.model;
+
+import java.util.Base64;
+
+// Fragmento de una nota de voz en streaming (VOICE_NOTE_CHUNK / VOICE_NOTE_END)
+public class VoiceNoteChunk {
+    private int noteId;
+    private int senderId;
+    private int seq;
+    private String audioData;
+    // Audio recibido sin Base64 (protocolo binario)
+    private transient byte[] rawAudio;
+
+    public VoiceNoteChunk(int noteId, int seq, byte[] audioBytes) {
+        this.noteId = noteId;
+        this.seq = seq;
+        this.audioData = audioBytes != null ? Base64.getEncoder().encodeToString(audioBytes) : null;
+    }
+
+    public int getNoteId() {
+        return noteId;
+    }
+
+    public int getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(int senderId) {
+        this.senderId = senderId;
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public byte[] getAudioBytes() {
+        if (rawAudio != null) {
+            return rawAudio;
+        }
+        return audioData != null ? Base64.getDecoder().decode(audioData) : null;
+    }
+
+    public void setRawAudio(byte[] audio) {
+        this.rawAudio = audio;
+        this.audioData = null;
+    }
+}
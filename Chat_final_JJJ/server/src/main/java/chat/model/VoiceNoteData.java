@@ -8,18 +8,24 @@ public class VoiceNoteData {
     private Integer groupId;
     private String audioData; 
     private int durationSeconds;
+    // Solo en VOICE_NOTE_BEGIN: identifica la transferencia por streaming del remitente
+    private Integer noteId;
+    // Id del audio guardado en el servidor; con el se pide de nuevo por GET_VOICE_NOTE
+    private Long voiceNoteId;
+    // Audio recibido sin Base64 (protocolo binario)
+    private transient byte[] rawAudio;
 
     public VoiceNoteData(int senderId, int receiverId, byte[] audioBytes, int durationSeconds) {
         this.senderId = senderId;
         this.receiverId = receiverId;
-        this.audioData = Base64.getEncoder().encodeToString(audioBytes);
+        this.audioData = audioBytes != null ? Base64.getEncoder().encodeToString(audioBytes) : null;
         this.durationSeconds = durationSeconds;
     }
 
     public VoiceNoteData(int senderId, int groupId, byte[] audioBytes, int durationSeconds, boolean isGroup) {
         this.senderId = senderId;
         this.groupId = groupId;
-        this.audioData = Base64.getEncoder().encodeToString(audioBytes);
+        this.audioData = audioBytes != null ? Base64.getEncoder().encodeToString(audioBytes) : null;
         this.durationSeconds = durationSeconds;
     }
 
@@ -27,6 +33,10 @@ public class VoiceNoteData {
         return senderId;
     }
 
+    public void setSenderId(int senderId) {
+        this.senderId = senderId;
+    }
+
     public int getReceiverId() {
         return receiverId;
     }
@@ -36,13 +46,38 @@ public class VoiceNoteData {
     }
 
     public byte[] getAudioBytes() {
-        return Base64.getDecoder().decode(audioData);
+        if (rawAudio != null) {
+            return rawAudio;
+        }
+        return audioData != null ? Base64.getDecoder().decode(audioData) : null;
+    }
+
+    // Deja solo los metadatos en el JSON; el audio viaja como payload del Packet
+    public void setRawAudio(byte[] audio) {
+        this.rawAudio = audio;
+        this.audioData = null;
     }
 
     public int getDurationSeconds() {
         return durationSeconds;
     }
 
+    public Integer getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Integer noteId) {
+        this.noteId = noteId;
+    }
+
+    public Long getVoiceNoteId() {
+        return voiceNoteId;
+    }
+
+    public void setVoiceNoteId(Long voiceNoteId) {
+        this.voiceNoteId = voiceNoteId;
+    }
+
     public boolean isGroupMessage() {
         return groupId != null;
     }
@@ -0,0 +1,139 @@
+package chat.protocol;
+
+import chat.protocol.Protocol.Command;
+import chat.protocol.Protocol.Packet;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Protocolo binario negociado: el cliente envia MAGIC como primer byte de la conexion.
+//
+// Frame (big-endian):
+//   int32  longitud del resto del frame
+//   byte   comando (ordinal de Command)
+//   int32  requestId (0 = sin id)
+//   byte   flags: 1 = data, 2 = error, 4 = payload binario
+//   [int32 + UTF-8]  data   si flags & 1
+//   [int32 + UTF-8]  error  si flags & 2
+//   [bytes]          payload hasta el final del frame si flags & 4
+public class BinaryCodec {
+    public static final byte MAGIC = (byte) 0xB1;
+
+    private static final int HEADER_SIZE = 1 + 4 + 1;
+    private static final byte FLAG_DATA = 1;
+    private static final byte FLAG_ERROR = 2;
+    private static final byte FLAG_PAYLOAD = 4;
+    private static final Command[] COMMANDS = Command.values();
+
+    private BinaryCodec() {
+    }
+
+    public static ByteBuffer encode(Packet packet) {
+        byte[] payload = packet.getPayload();
+        return encode(packet, payload, payload != null ? payload.length : -1);
+    }
+
+    // Frame sin los bytes del payload: el llamador escribe a continuacion payloadLength bytes propios
+    // (p. ej. slices de un segmento mapeado) sin copiarlos a este buffer
+    public static ByteBuffer encodeHeader(Packet packet, int payloadLength) {
+        return encode(packet, null, payloadLength);
+    }
+
+    // payloadLength < 0 = sin payload
+    private static ByteBuffer encode(Packet packet, byte[] payload, int payloadLength) {
+        byte[] data = packet.getData() != null ? packet.getData().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] error = packet.getError() != null ? packet.getError().getBytes(StandardCharsets.UTF_8) : null;
+
+        int bodyLength = HEADER_SIZE
+                + (data != null ? 4 + data.length : 0)
+                + (error != null ? 4 + error.length : 0)
+                + Math.max(payloadLength, 0);
+
+        byte flags = 0;
+        if (data != null) flags |= FLAG_DATA;
+        if (error != null) flags |= FLAG_ERROR;
+        if (payloadLength >= 0) flags |= FLAG_PAYLOAD;
+
+        int inlinePayload = payload != null ? payload.length : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bodyLength - Math.max(payloadLength, 0) + inlinePayload);
+        buffer.putInt(bodyLength);
+        buffer.put((byte) packet.getCommand().ordinal());
+        buffer.putInt(packet.getRequestId() != null ? packet.getRequestId() : 0);
+        buffer.put(flags);
+        if (data != null) {
+            buffer.putInt(data.length).put(data);
+        }
+        if (error != null) {
+            buffer.putInt(error.length).put(error);
+        }
+        if (payload != null) {
+            buffer.put(payload);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // body = frame sin el prefijo de longitud. Un frame mal formado es IOException: el lector
+    // cierra la conexion en lugar de que escape una excepcion no verificada
+    public static Packet decode(ByteBuffer body) throws IOException {
+        if (body.remaining() < HEADER_SIZE) {
+            throw new IOException("Frame binario demasiado corto: " + body.remaining() + " bytes");
+        }
+        int commandIndex = body.get() & 0xFF;
+        if (commandIndex >= COMMANDS.length) {
+            throw new IOException("Comando binario desconocido: " + commandIndex);
+        }
+        Packet packet = new Packet(COMMANDS[commandIndex]);
+
+        int requestId = body.getInt();
+        if (requestId != 0) {
+            packet.setRequestId(requestId);
+        }
+
+        byte flags = body.get();
+        if ((flags & FLAG_DATA) != 0) {
+            packet.setData(readString(body));
+        }
+        if ((flags & FLAG_ERROR) != 0) {
+            packet.setError(readString(body));
+        }
+        if ((flags & FLAG_PAYLOAD) != 0) {
+            byte[] payload = new byte[body.remaining()];
+            body.get(payload);
+            packet.setPayload(payload);
+        }
+        return packet;
+    }
+
+    // Lectura bloqueante de un frame; retorna null al llegar al fin del stream
+    public static Packet read(DataInputStream in, int maxFrameBytes) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < HEADER_SIZE || length > maxFrameBytes) {
+            throw new IOException("Longitud de frame invalida: " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return decode(ByteBuffer.wrap(body));
+    }
+
+    private static String readString(ByteBuffer body) throws IOException {
+        if (body.remaining() < 4) {
+            throw new IOException("Frame binario truncado: falta la longitud del texto");
+        }
+        int length = body.getInt();
+        if (length < 0 || length > body.remaining()) {
+            throw new IOException("Longitud de texto invalida en frame binario: " + length);
+        }
+        String value = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+        body.position(body.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,29 @@
+package chat.protocol;
+
+import chat.protocol.Protocol.Packet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Frame completo recibido por el reactor; se decodifica despues, en el hilo worker
+public final class InboundFrame {
+    private final String line;
+    private final ByteBuffer body;
+
+    private InboundFrame(String line, ByteBuffer body) {
+        this.line = line;
+        this.body = body;
+    }
+
+    public static InboundFrame json(String line) {
+        return new InboundFrame(line, null);
+    }
+
+    public static InboundFrame binary(ByteBuffer body) {
+        return new InboundFrame(null, body);
+    }
+
+    public Packet decode() throws IOException {
+        return line != null ? Protocol.deserialize(line) : BinaryCodec.decode(body);
+    }
+}
@@ -0,0 +1,67 @@
+package chat.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Separa el flujo de bytes en lineas terminadas en '\n' sin bloquear (cada linea es un Packet JSON)
+public class LineFramer {
+    private static final int RETAINED_CAPACITY = 64 * 1024;
+
+    private final int maxFrameBytes;
+    private byte[] pending = new byte[1024];
+    private int size = 0;
+
+    public LineFramer(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    // Retorna false si una linea supera el tamaño maximo permitido
+    public boolean feed(ByteBuffer data, Consumer<String> sink) {
+        while (data.hasRemaining()) {
+            int start = data.position();
+            int end = data.limit();
+            int newline = -1;
+            for (int i = start; i < end; i++) {
+                if (data.get(i) == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+
+            int chunkEnd = newline >= 0 ? newline : end;
+            int chunkLength = chunkEnd - start;
+            if (size + chunkLength > maxFrameBytes) {
+                return false;
+            }
+
+            ensureCapacity(size + chunkLength);
+            data.get(pending, size, chunkLength);
+            size += chunkLength;
+
+            if (newline >= 0) {
+                data.get(); // consumir '\n'
+                int length = size;
+                if (length > 0 && pending[length - 1] == '\r') {
+                    length--;
+                }
+                if (length > 0) {
+                    sink.accept(new String(pending, 0, length, StandardCharsets.UTF_8));
+                }
+                size = 0;
+                if (pending.length > RETAINED_CAPACITY) {
+                    // No retener buffers grandes (notas de voz) en conexiones inactivas
+                    pending = new byte[1024];
+                }
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(required, pending.length * 2));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package chat.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+// Decodificador no bloqueante de una conexion: detecta el formato con el primer byte
+// (BinaryCodec.MAGIC = binario, cualquier otro = lineas JSON) y separa los frames.
+public class PacketDecoder {
+    private final int maxFrameBytes;
+    private final LineFramer lineFramer;
+    private volatile WireFormat format;
+
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+    private ByteBuffer body;
+
+    public PacketDecoder(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+        this.lineFramer = new LineFramer(maxFrameBytes);
+    }
+
+    // Retorna false si el flujo es invalido o un frame supera el tamaño maximo
+    public boolean feed(ByteBuffer data, Consumer<InboundFrame> sink) {
+        if (format == null) {
+            if (!data.hasRemaining()) {
+                return true;
+            }
+            if (data.get(data.position()) == BinaryCodec.MAGIC) {
+                data.get();
+                format = WireFormat.BINARY;
+            } else {
+                format = WireFormat.JSON;
+            }
+        }
+
+        if (format == WireFormat.JSON) {
+            return lineFramer.feed(data, line -> sink.accept(InboundFrame.json(line)));
+        }
+        return feedBinary(data, sink);
+    }
+
+    private boolean feedBinary(ByteBuffer data, Consumer<InboundFrame> sink) {
+        while (data.hasRemaining()) {
+            if (body == null) {
+                while (lengthBuffer.hasRemaining() && data.hasRemaining()) {
+                    lengthBuffer.put(data.get());
+                }
+                if (lengthBuffer.hasRemaining()) {
+                    return true;
+                }
+                int length = lengthBuffer.flip().getInt();
+                lengthBuffer.clear();
+                if (length <= 0 || length > maxFrameBytes) {
+                    return false;
+                }
+                body = ByteBuffer.allocate(length);
+            }
+
+            int chunk = Math.min(body.remaining(), data.remaining());
+            ByteBuffer slice = data.duplicate();
+            slice.limit(slice.position() + chunk);
+            body.put(slice);
+            data.position(data.position() + chunk);
+
+            if (!body.hasRemaining()) {
+                body.flip();
+                sink.accept(InboundFrame.binary(body));
+                body = null;
+            }
+        }
+        return true;
+    }
+
+    // null mientras no se haya recibido el primer byte
+    public WireFormat getFormat() {
+        return format;
+    }
+}
@@ -3,14 +3,23 @@ package chat.protocol;
 import chat.model.*;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 
 public class Protocol {
     private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
             .create();
 
+    // Campo del data JSON donde va el payload binario (Base64) cuando se envia en modo JSON
+    public static final String PAYLOAD_FIELD = "audioData";
+
+    // El ordinal es el codigo de comando del protocolo binario: los nuevos comandos van al final
     public enum Command {
         // Autenticación
         LOGIN, REGISTER, LOGOUT,
@@ -30,13 +39,26 @@ public class Protocol {
         GET_USERS, GET_USER_STATUS, UPDATE_STATUS,
 
         // Respuestas
-        SUCCESS, ERROR, NOTIFICATION
+        SUCCESS, ERROR, NOTIFICATION,
+
+        // Notas de voz por streaming
+        VOICE_NOTE_BEGIN, VOICE_NOTE_CHUNK, VOICE_NOTE_END,
+
+        // Audio de una nota guardada (data = voiceNoteId); responde VOICE_NOTE_DATA
+        GET_VOICE_NOTE,
+
+        // Bandeja offline: el servidor envia lotes (MessagePage) al iniciar sesion y el cliente
+        // confirma con ACK_DELIVERY (data = id del ultimo mensaje procesado, sin respuesta)
+        DELIVER_MESSAGES, ACK_DELIVERY
     }
 
     public static class Packet {
         private Command command;
         private String data;
         private String error;
+        private Integer requestId;
+        // Bytes crudos (p. ej. audio); en JSON se serializan dentro de data, ver serialize()
+        private transient byte[] payload;
 
         public Packet(Command command, String data) {
             this.command = command;
@@ -66,10 +88,48 @@ public class Protocol {
         public void setError(String error) {
             this.error = error;
         }
+
+        public Integer getRequestId() {
+            return requestId;
+        }
+
+        public void setRequestId(Integer requestId) {
+            this.requestId = requestId;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public void setPayload(byte[] payload) {
+            this.payload = payload;
+        }
     }
 
     public static String serialize(Packet packet) {
-        return gson.toJson(packet);
+        if (packet.getPayload() == null) {
+            return gson.toJson(packet);
+        }
+        // Los clientes JSON reciben el payload en Base64 dentro de data, como antes
+        Packet json = new Packet(packet.getCommand(), foldPayload(packet.getData(), packet.getPayload()));
+        json.setError(packet.getError());
+        json.setRequestId(packet.getRequestId());
+        return gson.toJson(json);
+    }
+
+    private static String foldPayload(String data, byte[] payload) {
+        JsonObject object = data != null ? JsonParser.parseString(data).getAsJsonObject() : new JsonObject();
+        object.addProperty(PAYLOAD_FIELD, Base64.getEncoder().encodeToString(payload));
+        return gson.toJson(object);
+    }
+
+    // Linea JSON terminada en '\n' lista para escribir en el socket
+    public static ByteBuffer encodeFrame(Packet packet) {
+        return ByteBuffer.wrap((serialize(packet) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ByteBuffer encodeFrame(Packet packet, WireFormat format) {
+        return format == WireFormat.BINARY ? BinaryCodec.encode(packet) : encodeFrame(packet);
     }
 
     public static Packet deserialize(String json) {
@@ -0,0 +1,7 @@
+package chat.protocol;
+
+// Formato de los frames en una conexion TCP
+public enum WireFormat {
+    JSON,   // una linea JSON por Packet (proxy Node y clientes existentes)
+    BINARY  // frames con prefijo de longitud, ver BinaryCodec
+}
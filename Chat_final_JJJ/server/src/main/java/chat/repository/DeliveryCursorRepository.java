@@ -0,0 +1,10 @@
+package chat.repository;
+
+// Cursor de entrega por usuario: ultimo id de mensaje que el cliente confirmo con ACK_DELIVERY
+public interface DeliveryCursorRepository {
+    // 0 si el usuario nunca confirmo nada; crea el cursor si no existe
+    int getLastDelivered(int userId);
+
+    // Solo avanza: un ACK atrasado no hace retroceder el cursor
+    void advance(int userId, int messageId);
+}
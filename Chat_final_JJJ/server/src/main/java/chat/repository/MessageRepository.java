@@ -7,4 +7,16 @@ public interface MessageRepository {
     Message save(Message message);
     List<Message> findByUsers(int userId1, int userId2);
     List<Message> findByGroupId(int groupId);
+    Message findByVoiceNoteId(long voiceNoteId);
+
+    // Paginas por cursor de id (keyset), en orden ascendente. Sin cursores: los mas recientes.
+    List<Message> findPageByUsers(int userId1, int userId2, Integer beforeId, Integer afterId, int limit);
+    List<Message> findPageByGroupId(int groupId, Integer beforeId, Integer afterId, int limit);
+
+    // Bandeja de entrada: mensajes directos y de sus grupos con id > afterId, sin los propios, ascendente
+    List<Message> findInbox(int userId, int afterId, int limit);
+
+    // Escritura diferida: reserva ids de la secuencia e inserta lotes con id y timestamp ya asignados
+    int[] reserveIds(int count);
+    void saveBatch(List<Message> messages);
 }
@@ -1,14 +1,20 @@
 package chat.repository;
 
 import chat.model.User;
+import chat.model.UserStatus;
 import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository {
     User save(User user);
+    // Inserta si el username esta libre (una sola consulta); vacio si ya existia
+    Optional<User> insertIfAbsent(User user);
     Optional<User> findById(int id);
     Optional<User> findByUsername(String username);
     List<User> findAll();
     boolean existsByUsername(String username);
-    void updateOnlineStatus(int userId, boolean online);
+    // Persiste en un solo lote el ultimo estado de presencia de varios usuarios
+    void updatePresence(List<UserStatus> changes);
+    // Al arrancar el servidor nadie esta conectado
+    void resetOnlineStatus();
 }
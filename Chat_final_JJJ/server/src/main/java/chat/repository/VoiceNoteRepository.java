@@ -0,0 +1,15 @@
+package chat.repository;
+
+import java.nio.ByteBuffer;
+
+// Audio de las notas de voz, fuera de la base: la tabla messages solo guarda el id (voice_note_id).
+// Una nota es una cadena de fragmentos; su id es el del ultimo fragmento agregado.
+public interface VoiceNoteRepository {
+    long NO_PREVIOUS = -1;
+
+    // Agrega un fragmento enlazado al anterior (NO_PREVIOUS para el primero) y retorna su id
+    long append(long previousId, byte[] audio, int offset, int length);
+
+    // Fragmentos de la nota en orden, de solo lectura; null si el id no existe
+    ByteBuffer[] find(long voiceNoteId);
+}
@@ -0,0 +1,150 @@
+package chat.repository.impl;
+
+import chat.metrics.Metrics;
+import chat.model.User;
+import chat.model.UserStatus;
+import chat.repository.UserRepository;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Cache de lectura delante de UserRepository: login, registro y findById dejan de ir a la base
+// para los usuarios frecuentes. byId es el LRU acotado; byUsername solo indexa sus entradas y se
+// limpia en cada desalojo, asi ambos mapas siempre describen el mismo conjunto.
+// Se entregan copias: los llamadores modifican los User (online, estado) y no deben tocar la cache.
+public class CachingUserRepository implements UserRepository {
+    private final UserRepository delegate;
+    private final Map<Integer, User> byId;
+    private final Map<String, Integer> byUsername = new HashMap<>();
+    private final Metrics metrics = Metrics.getInstance();
+
+    public CachingUserRepository(UserRepository delegate, int maxUsers) {
+        this.delegate = delegate;
+        this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, User> eldest) {
+                if (size() <= maxUsers) {
+                    return false;
+                }
+                byUsername.remove(eldest.getValue().getUsername());
+                metrics.increment("userCache.evictions");
+                return true;
+            }
+        };
+        metrics.gauge("userCache.size", () -> {
+            synchronized (byId) {
+                return byId.size();
+            }
+        });
+    }
+
+    @Override
+    public User save(User user) {
+        delegate.save(user);
+        cache(user);
+        return user;
+    }
+
+    @Override
+    public Optional<User> insertIfAbsent(User user) {
+        // Un username cacheado ya existe: se rechaza sin ir a la base
+        synchronized (byId) {
+            if (byUsername.containsKey(user.getUsername())) {
+                metrics.increment("userCache.hits");
+                return Optional.empty();
+            }
+        }
+        Optional<User> inserted = delegate.insertIfAbsent(user);
+        inserted.ifPresent(this::cache);
+        return inserted;
+    }
+
+    @Override
+    public Optional<User> findById(int id) {
+        synchronized (byId) {
+            User cached = byId.get(id);
+            if (cached != null) {
+                metrics.increment("userCache.hits");
+                return Optional.of(copy(cached));
+            }
+        }
+        // La consulta a la base se hace fuera del lock
+        metrics.increment("userCache.misses");
+        Optional<User> user = delegate.findById(id);
+        user.ifPresent(this::cache);
+        return user;
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        synchronized (byId) {
+            Integer id = byUsername.get(username);
+            if (id != null) {
+                metrics.increment("userCache.hits");
+                return Optional.of(copy(byId.get(id)));
+            }
+        }
+        metrics.increment("userCache.misses");
+        Optional<User> user = delegate.findByUsername(username);
+        user.ifPresent(this::cache);
+        return user;
+    }
+
+    @Override
+    public List<User> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return findByUsername(username).isPresent();
+    }
+
+    // Se escribe primero en la base y luego se actualizan las entradas cacheadas
+    @Override
+    public void updatePresence(List<UserStatus> changes) {
+        delegate.updatePresence(changes);
+        synchronized (byId) {
+            for (UserStatus change : changes) {
+                User cached = byId.get(change.getUserId());
+                if (cached != null) {
+                    cached.setOnline(change.isOnline());
+                    cached.setLastSeen(change.getLastSeen());
+                    cached.setStatus(change.getStatus());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void resetOnlineStatus() {
+        delegate.resetOnlineStatus();
+        synchronized (byId) {
+            for (User cached : byId.values()) {
+                cached.setOnline(false);
+            }
+        }
+    }
+
+    private void cache(User user) {
+        User copy = copy(user);
+        synchronized (byId) {
+            User previous = byId.put(copy.getId(), copy);
+            if (previous != null && !previous.getUsername().equals(copy.getUsername())) {
+                byUsername.remove(previous.getUsername());
+            }
+            byUsername.put(copy.getUsername(), copy.getId());
+        }
+    }
+
+    private static User copy(User user) {
+        User copy = new User(user.getId(), user.getUsername());
+        copy.setOnline(user.isOnline());
+        copy.setLastSeen(user.getLastSeen());
+        copy.setStatus(user.getStatus());
+        return copy;
+    }
+}
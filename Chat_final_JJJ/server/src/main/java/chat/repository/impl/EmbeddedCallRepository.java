@@ -0,0 +1,172 @@
+package chat.repository.impl;
+
+import chat.model.Call;
+import chat.repository.CallRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// Historial de llamadas del motor embebido: arreglo indexado por id e indices int[] por usuario
+// (emisor y receptor de las llamadas 1 a 1) y por grupo. Se entregan copias.
+// Con WAL cada cambio se registra dentro del lock (el orden del log es el de memoria) y se espera
+// el fsync fuera de el.
+public class EmbeddedCallRepository implements CallRepository {
+    private static final int[] NO_CALLS = new int[0];
+
+    private Call[] calls = new Call[256];
+    private int nextId = 1;
+    private final LongObjectMap<int[]> byUser = new LongObjectMap<>();
+    private final LongObjectMap<int[]> byGroup = new LongObjectMap<>();
+    private WriteAheadLog wal;
+
+    @Override
+    public Call save(Call call) {
+        long lsn;
+        synchronized (this) {
+            call.setCallId(nextId);
+            restore(call);
+            lsn = log(EmbeddedRecords.CALL, EmbeddedRecords.call(call));
+        }
+        awaitDurable(lsn);
+        return call;
+    }
+
+    // Guarda la llamada con su id; si ya existia (recuperacion) solo reemplaza su estado
+    synchronized void restore(Call call) {
+        int id = call.getId();
+        if (id >= calls.length) {
+            calls = Arrays.copyOf(calls, Math.max(calls.length * 2, id + 1));
+        }
+        boolean existed = calls[id] != null;
+        calls[id] = copy(call);
+        nextId = Math.max(nextId, id + 1);
+        if (existed) {
+            return;
+        }
+
+        // Como en la tabla calls: las grupales guardan el grupo y no un receptor
+        index(byUser, call.getCallerId(), id);
+        if (call.isGroupCall()) {
+            index(byGroup, call.getReceiverId(), id);
+        } else if (call.getReceiverId() != call.getCallerId()) {
+            index(byUser, call.getReceiverId(), id);
+        }
+    }
+
+    @Override
+    public synchronized Optional<Call> findById(int id) {
+        Call call = id > 0 && id < nextId ? calls[id] : null;
+        return call != null ? Optional.of(copy(call)) : Optional.empty();
+    }
+
+    @Override
+    public synchronized List<Call> findByUserId(int userId) {
+        return newestFirst(byUser.get(userId));
+    }
+
+    @Override
+    public synchronized List<Call> findByGroupId(int groupId) {
+        return newestFirst(byGroup.get(groupId));
+    }
+
+    @Override
+    public void updateCallStatus(int callId, String status) {
+        Call.CallStatus value = Call.CallStatus.valueOf(status);
+        long lsn;
+        synchronized (this) {
+            if (!applyStatus(callId, value)) {
+                return;
+            }
+            lsn = log(EmbeddedRecords.CALL_STATUS, EmbeddedRecords.callStatus(callId, value));
+        }
+        awaitDurable(lsn);
+    }
+
+    @Override
+    public void endCall(int callId, int durationSeconds) {
+        LocalDateTime endTime = LocalDateTime.now();
+        long lsn;
+        synchronized (this) {
+            if (!applyEnd(callId, durationSeconds, endTime)) {
+                return;
+            }
+            lsn = log(EmbeddedRecords.CALL_END, EmbeddedRecords.callEnd(callId, durationSeconds, endTime));
+        }
+        awaitDurable(lsn);
+    }
+
+    synchronized boolean applyStatus(int callId, Call.CallStatus status) {
+        Call call = callId > 0 && callId < nextId ? calls[callId] : null;
+        if (call == null) {
+            return false;
+        }
+        call.setStatus(status);
+        return true;
+    }
+
+    synchronized boolean applyEnd(int callId, int durationSeconds, LocalDateTime endTime) {
+        Call call = callId > 0 && callId < nextId ? calls[callId] : null;
+        if (call == null) {
+            return false;
+        }
+        call.setEndTime(endTime);
+        call.setDurationSeconds(durationSeconds);
+        call.setStatus(Call.CallStatus.ENDED);
+        return true;
+    }
+
+    synchronized void attach(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+
+    // Estado actual de cada llamada: los cambios de estado quedan compactados en un solo registro
+    synchronized void writeTo(WriteAheadLog.RecordSink sink) {
+        for (int id = 1; id < nextId && id < calls.length; id++) {
+            if (calls[id] != null) {
+                sink.write(EmbeddedRecords.CALL, EmbeddedRecords.call(calls[id]));
+            }
+        }
+    }
+
+    private long log(byte type, byte[] payload) {
+        return wal != null ? wal.append(type, payload) : 0;
+    }
+
+    private void awaitDurable(long lsn) {
+        if (lsn > 0) {
+            wal.awaitDurable(lsn);
+        }
+    }
+
+    // Los ids crecen con started_at: el orden inverso equivale a ORDER BY started_at DESC
+    private List<Call> newestFirst(int[] callIds) {
+        int[] ids = callIds != null ? callIds : NO_CALLS;
+        List<Call> result = new ArrayList<>(ids.length);
+        for (int i = ids.length - 1; i >= 0; i--) {
+            result.add(copy(calls[ids[i]]));
+        }
+        return result;
+    }
+
+    private static void index(LongObjectMap<int[]> index, int key, int callId) {
+        int[] current = index.get(key);
+        int[] updated = current == null ? new int[1] : Arrays.copyOf(current, current.length + 1);
+        updated[updated.length - 1] = callId;
+        index.put(key, updated);
+    }
+
+    private static Call copy(Call call) {
+        Call copy = new Call(call.getCallerId(), call.getCallerUsername(),
+                call.getReceiverId(), call.getReceiverUsername());
+        copy.setId(call.getId());
+        copy.setGroupCall(call.isGroupCall());
+        copy.setStatus(call.getStatus());
+        copy.setStartTime(call.getStartTime());
+        copy.setEndTime(call.getEndTime());
+        copy.setDurationSeconds(call.getDurationSeconds());
+        return copy;
+    }
+}
@@ -0,0 +1,48 @@
+package chat.repository.impl;
+
+import chat.repository.DeliveryCursorRepository;
+
+import java.util.Arrays;
+
+// Cursores de entrega del motor embebido: int[] indexado por userId, 0 = nada confirmado.
+// Con WAL los avances se registran sin esperar el fsync: perder el ultimo solo provoca una reentrega.
+public class EmbeddedDeliveryCursorRepository implements DeliveryCursorRepository {
+    private int[] cursors = new int[256];
+    private WriteAheadLog wal;
+
+    @Override
+    public synchronized int getLastDelivered(int userId) {
+        return userId < cursors.length ? cursors[userId] : 0;
+    }
+
+    @Override
+    public synchronized void advance(int userId, int messageId) {
+        if (restore(userId, messageId) && wal != null) {
+            wal.append(EmbeddedRecords.CURSOR, EmbeddedRecords.cursor(userId, messageId));
+        }
+    }
+
+    // false si el cursor ya estaba en messageId o mas adelante
+    synchronized boolean restore(int userId, int messageId) {
+        if (userId >= cursors.length) {
+            cursors = Arrays.copyOf(cursors, Math.max(cursors.length * 2, userId + 1));
+        }
+        if (messageId <= cursors[userId]) {
+            return false;
+        }
+        cursors[userId] = messageId;
+        return true;
+    }
+
+    synchronized void attach(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+
+    synchronized void writeTo(WriteAheadLog.RecordSink sink) {
+        for (int userId = 1; userId < cursors.length; userId++) {
+            if (cursors[userId] != 0) {
+                sink.write(EmbeddedRecords.CURSOR, EmbeddedRecords.cursor(userId, cursors[userId]));
+            }
+        }
+    }
+}
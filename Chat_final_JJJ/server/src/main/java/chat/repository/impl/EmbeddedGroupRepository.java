@@ -0,0 +1,157 @@
+package chat.repository.impl;
+
+import chat.model.Group;
+import chat.repository.GroupRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// Grupos del motor embebido. Los ids son consecutivos, asi el grupo se indexa directo en un arreglo;
+// el indice inverso usuario -> grupos es int[] por usuario. Guarda la fecha de ingreso de cada
+// miembro para que la bandeja offline no entregue mensajes anteriores a su llegada (como joined_at).
+// Se entregan copias: GroupMembershipCache y los servicios leen memberIds sin el lock.
+// Con WAL se registra el grupo y cada ingreso con su fecha; el fsync se espera fuera del lock.
+public class EmbeddedGroupRepository implements GroupRepository {
+    private static final int[] NO_GROUPS = new int[0];
+
+    private Group[] groups = new Group[64];
+    private int nextId = 1;
+    private final LongObjectMap<int[]> groupsByUser = new LongObjectMap<>();
+    private final LongObjectMap<LocalDateTime> joinedAt = new LongObjectMap<>();
+    private WriteAheadLog wal;
+
+    @Override
+    public Group save(Group group) {
+        long lsn;
+        synchronized (this) {
+            group.setId(nextId);
+            restore(group);
+            log(EmbeddedRecords.GROUP, EmbeddedRecords.group(group));
+            lsn = join(group.getId(), group.getCreatorId(), LocalDateTime.now());
+        }
+        awaitDurable(lsn);
+        return group;
+    }
+
+    // Guarda el grupo sin miembros (llegan como registros aparte); si ya existia no hace nada
+    synchronized void restore(Group group) {
+        int id = group.getId();
+        if (id >= groups.length) {
+            groups = Arrays.copyOf(groups, Math.max(groups.length * 2, id + 1));
+        }
+        nextId = Math.max(nextId, id + 1);
+        if (groups[id] != null) {
+            return;
+        }
+        Group stored = new Group(group.getName(), group.getCreatorId());
+        stored.setId(id);
+        stored.setDescription(group.getDescription());
+        stored.setCreatedAt(group.getCreatedAt());
+        stored.setMemberIds(new ArrayList<>());
+        groups[id] = stored;
+    }
+
+    @Override
+    public synchronized Optional<Group> findById(int id) {
+        Group group = id > 0 && id < nextId ? groups[id] : null;
+        return group != null ? Optional.of(copy(group)) : Optional.empty();
+    }
+
+    // Mas recientes primero, como el ORDER BY created_at DESC de PostgresGroupRepository
+    @Override
+    public synchronized List<Group> findByUserId(int userId) {
+        int[] groupIds = groupIdsOf(userId);
+        List<Group> result = new ArrayList<>(groupIds.length);
+        for (int i = groupIds.length - 1; i >= 0; i--) {
+            result.add(copy(groups[groupIds[i]]));
+        }
+        return result;
+    }
+
+    @Override
+    public void addMember(int groupId, int userId) {
+        long lsn;
+        synchronized (this) {
+            lsn = join(groupId, userId, LocalDateTime.now());
+        }
+        awaitDurable(lsn);
+    }
+
+    // Agrega el miembro sin registrar; false si el grupo no existe o ya era miembro
+    synchronized boolean restoreMember(int groupId, int userId, LocalDateTime joinedAt) {
+        Group group = groupId > 0 && groupId < nextId ? groups[groupId] : null;
+        if (group == null || group.getMemberIds().contains(userId)) {
+            return false;
+        }
+        group.getMemberIds().add(userId);
+        this.joinedAt.put(memberKey(groupId, userId), joinedAt);
+
+        int[] current = groupIdsOf(userId);
+        int[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = groupId;
+        groupsByUser.put(userId, updated);
+        return true;
+    }
+
+    synchronized void attach(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+
+    // Cada grupo seguido de sus miembros, asi la recuperacion los encuentra ya creados
+    synchronized void writeTo(WriteAheadLog.RecordSink sink) {
+        for (int id = 1; id < nextId && id < groups.length; id++) {
+            Group group = groups[id];
+            if (group == null) {
+                continue;
+            }
+            sink.write(EmbeddedRecords.GROUP, EmbeddedRecords.group(group));
+            for (int userId : group.getMemberIds()) {
+                sink.write(EmbeddedRecords.GROUP_MEMBER,
+                        EmbeddedRecords.groupMember(id, userId, joinedAt(id, userId)));
+            }
+        }
+    }
+
+    // Ids de los grupos del usuario en orden de ingreso; el arreglo no se modifica despues de publicarlo
+    synchronized int[] groupIdsOf(int userId) {
+        int[] groupIds = groupsByUser.get(userId);
+        return groupIds != null ? groupIds : NO_GROUPS;
+    }
+
+    synchronized LocalDateTime joinedAt(int groupId, int userId) {
+        return joinedAt.get(memberKey(groupId, userId));
+    }
+
+    private long join(int groupId, int userId, LocalDateTime when) {
+        if (!restoreMember(groupId, userId, when)) {
+            return 0;
+        }
+        return log(EmbeddedRecords.GROUP_MEMBER, EmbeddedRecords.groupMember(groupId, userId, when));
+    }
+
+    private long log(byte type, byte[] payload) {
+        return wal != null ? wal.append(type, payload) : 0;
+    }
+
+    private void awaitDurable(long lsn) {
+        if (lsn > 0) {
+            wal.awaitDurable(lsn);
+        }
+    }
+
+    private static long memberKey(int groupId, int userId) {
+        return ((long) groupId << 32) | userId;
+    }
+
+    private static Group copy(Group group) {
+        Group copy = new Group(group.getName(), group.getCreatorId());
+        copy.setId(group.getId());
+        copy.setDescription(group.getDescription());
+        copy.setCreatedAt(group.getCreatedAt());
+        copy.setMemberIds(new ArrayList<>(group.getMemberIds()));
+        return copy;
+    }
+}
@@ -0,0 +1,202 @@
+package chat.repository.impl;
+
+import chat.metrics.Metrics;
+import chat.model.Message;
+import chat.repository.MessageRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Mensajes del motor embebido: un MessageLog de solo-agregar por conversacion, repartidos en franjas
+// con su propio lock para que los envios a conversaciones distintas no compitan.
+// Claves de los logs (un solo espacio de long):
+//   par de usuarios  (menor << 32) | mayor   >= 2^32
+//   grupo            -groupId                 < 0
+//   bandeja          receiverId               1 .. 2^31-1 (indice secundario de mensajes directos)
+// Un mensaje directo se agrega a su par y a la bandeja del destinatario, tomando un lock a la vez.
+// Con WAL (EmbeddedStore) cada mensaje se aplica en memoria y luego se registra; save espera el fsync
+// y saveBatch espera una sola vez por el lote completo.
+public class EmbeddedMessageRepository implements MessageRepository {
+    private static final int STRIPES = 64;
+
+    private final LongObjectMap<MessageLog>[] stripes;
+    private final AtomicInteger sequence = new AtomicInteger(1);
+    private final Map<Long, Message> byVoiceNote = new ConcurrentHashMap<>();
+    // Para resolver los grupos del usuario en findInbox; null = solo mensajes directos
+    private final EmbeddedGroupRepository groupRepository;
+    private final Metrics metrics = Metrics.getInstance();
+    private volatile WriteAheadLog wal;
+
+    public EmbeddedMessageRepository() {
+        this(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public EmbeddedMessageRepository(EmbeddedGroupRepository groupRepository) {
+        this.groupRepository = groupRepository;
+        this.stripes = (LongObjectMap<MessageLog>[]) new LongObjectMap<?>[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongObjectMap<>();
+        }
+    }
+
+    @Override
+    public Message save(Message message) {
+        long lsn = store(message);
+        if (lsn > 0) {
+            wal.awaitDurable(lsn);
+        }
+        return message;
+    }
+
+    // Aplica el mensaje y retorna su LSN (0 sin WAL o si ya estaba)
+    private long store(Message message) {
+        if (message.getId() == 0) {
+            message.setId(sequence.getAndIncrement());
+        } else {
+            // Ids asignados fuera (reserveIds o recuperacion): la secuencia nunca queda por detras
+            sequence.accumulateAndGet(message.getId() + 1, Math::max);
+        }
+
+        if (message.getGroupId() != null && message.getGroupId() > 0) {
+            if (!append(groupKey(message.getGroupId()), message)) {
+                return 0;
+            }
+        } else if (message.getReceiverId() != null) {
+            if (!append(pairKey(message.getSenderId(), message.getReceiverId()), message)) {
+                return 0;
+            }
+            if (message.getReceiverId() != message.getSenderId()) {
+                append(message.getReceiverId(), message);
+            }
+        } else {
+            throw new IllegalStateException("Message must have either groupId or receiverId");
+        }
+
+        if (message.getVoiceNoteId() != null) {
+            byVoiceNote.put(message.getVoiceNoteId(), message);
+        }
+        metrics.increment("embedded.messages");
+        WriteAheadLog log = wal;
+        return log != null ? log.append(EmbeddedRecords.MESSAGE, EmbeddedRecords.message(message)) : 0;
+    }
+
+    @Override
+    public List<Message> findByUsers(int userId1, int userId2) {
+        return read(pairKey(userId1, userId2), MessageLog::all);
+    }
+
+    @Override
+    public List<Message> findByGroupId(int groupId) {
+        return read(groupKey(groupId), MessageLog::all);
+    }
+
+    @Override
+    public Message findByVoiceNoteId(long voiceNoteId) {
+        return byVoiceNote.get(voiceNoteId);
+    }
+
+    @Override
+    public List<Message> findPageByUsers(int userId1, int userId2, Integer beforeId, Integer afterId, int limit) {
+        return read(pairKey(userId1, userId2), log -> page(log, beforeId, afterId, limit));
+    }
+
+    @Override
+    public List<Message> findPageByGroupId(int groupId, Integer beforeId, Integer afterId, int limit) {
+        return read(groupKey(groupId), log -> page(log, beforeId, afterId, limit));
+    }
+
+    @Override
+    public List<Message> findInbox(int userId, int afterId, int limit) {
+        List<Message> inbox = read(userId, log -> log.after(afterId, limit));
+        if (groupRepository != null) {
+            for (int groupId : groupRepository.groupIdsOf(userId)) {
+                LocalDateTime joinedAt = groupRepository.joinedAt(groupId, userId);
+                inbox.addAll(read(groupKey(groupId), log -> log.after(afterId, limit, message ->
+                        message.getSenderId() != userId &&
+                        (joinedAt == null || !message.getTimestamp().isBefore(joinedAt)))));
+            }
+            inbox.sort(Comparator.comparingInt(Message::getId));
+        }
+        return inbox.size() > limit ? new ArrayList<>(inbox.subList(0, limit)) : inbox;
+    }
+
+    @Override
+    public int[] reserveIds(int count) {
+        int first = sequence.getAndAdd(count);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = first + i;
+        }
+        return ids;
+    }
+
+    // Group commit natural para la escritura diferida: un solo fsync por lote
+    @Override
+    public void saveBatch(List<Message> messages) {
+        long lastLsn = 0;
+        for (Message message : messages) {
+            lastLsn = Math.max(lastLsn, store(message));
+        }
+        if (lastLsn > 0) {
+            wal.awaitDurable(lastLsn);
+        }
+    }
+
+    // Se conecta despues de recuperar: lo reproducido desde el WAL no se vuelve a registrar
+    void attach(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+
+    // Cada mensaje una vez: se omiten las bandejas, que repiten los mensajes de los pares
+    void writeTo(WriteAheadLog.RecordSink sink) {
+        for (LongObjectMap<MessageLog> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEach((key, log) -> {
+                    if (key < 0 || key > Integer.MAX_VALUE) {
+                        log.forEach(message -> sink.write(EmbeddedRecords.MESSAGE, EmbeddedRecords.message(message)));
+                    }
+                });
+            }
+        }
+    }
+
+    private boolean append(long key, Message message) {
+        LongObjectMap<MessageLog> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.computeIfAbsent(key, k -> new MessageLog()).append(message);
+        }
+    }
+
+    private List<Message> read(long key, Function<MessageLog, List<Message>> query) {
+        LongObjectMap<MessageLog> stripe = stripe(key);
+        synchronized (stripe) {
+            MessageLog log = stripe.get(key);
+            return log != null ? query.apply(log) : new ArrayList<>();
+        }
+    }
+
+    private static List<Message> page(MessageLog log, Integer beforeId, Integer afterId, int limit) {
+        return afterId != null ? log.after(afterId, limit) : log.before(beforeId, limit);
+    }
+
+    private LongObjectMap<MessageLog> stripe(long key) {
+        return stripes[(int) (key ^ (key >>> 32)) & (STRIPES - 1)];
+    }
+
+    private static long pairKey(int userId1, int userId2) {
+        int low = Math.min(userId1, userId2);
+        int high = Math.max(userId1, userId2);
+        return ((long) low << 32) | high;
+    }
+
+    private static long groupKey(int groupId) {
+        return -(long) groupId;
+    }
+}
@@ -0,0 +1,222 @@
+package chat.repository.impl;
+
+import chat.model.Call;
+import chat.model.Group;
+import chat.model.Message;
+import chat.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Tipos y formato binario de los registros del WAL y las snapshots del motor embebido.
+// Los enteros opcionales llevan un byte de presencia; los textos, int longitud + UTF-8 (-1 = null);
+// las fechas, segundos y nanos UTC (Long.MIN_VALUE = null).
+final class EmbeddedRecords {
+    static final byte MESSAGE = 1;
+    static final byte CALL = 2;
+    static final byte CALL_STATUS = 3;
+    static final byte CALL_END = 4;
+    static final byte USER = 5;
+    static final byte GROUP = 6;
+    static final byte GROUP_MEMBER = 7;
+    static final byte CURSOR = 8;
+
+    private EmbeddedRecords() {
+    }
+
+    interface Encoder {
+        void encode(DataOutputStream out) throws IOException;
+    }
+
+    static byte[] encode(Encoder encoder) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            encoder.encode(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] message(Message message) {
+        return encode(out -> {
+            out.writeInt(message.getId());
+            out.writeInt(message.getSenderId());
+            writeString(out, message.getSenderUsername());
+            writeOptionalInt(out, message.getReceiverId());
+            writeOptionalInt(out, message.getGroupId());
+            writeString(out, message.getContent());
+            out.writeByte(message.getType().ordinal());
+            writeTime(out, message.getTimestamp());
+            out.writeBoolean(message.isDelivered());
+            out.writeBoolean(message.isRead());
+            out.writeBoolean(message.getVoiceNoteId() != null);
+            if (message.getVoiceNoteId() != null) {
+                out.writeLong(message.getVoiceNoteId());
+            }
+        });
+    }
+
+    static Message readMessage(ByteBuffer in) {
+        Message message = new Message();
+        message.setId(in.getInt());
+        message.setSenderId(in.getInt());
+        message.setSenderUsername(readString(in));
+        message.setReceiverId(readOptionalInt(in));
+        message.setGroupId(readOptionalInt(in));
+        message.setContent(readString(in));
+        message.setType(Message.MessageType.values()[in.get()]);
+        message.setTimestamp(readTime(in));
+        message.setDelivered(in.get() != 0);
+        message.setRead(in.get() != 0);
+        if (in.get() != 0) {
+            message.setVoiceNoteId(in.getLong());
+        }
+        return message;
+    }
+
+    static byte[] call(Call call) {
+        return encode(out -> {
+            out.writeInt(call.getId());
+            out.writeInt(call.getCallerId());
+            writeString(out, call.getCallerUsername());
+            out.writeInt(call.getReceiverId());
+            writeString(out, call.getReceiverUsername());
+            out.writeBoolean(call.isGroupCall());
+            out.writeByte(call.getStatus().ordinal());
+            writeTime(out, call.getStartTime());
+            writeTime(out, call.getEndTime());
+            out.writeInt(call.getDurationSeconds());
+        });
+    }
+
+    static Call readCall(ByteBuffer in) {
+        Call call = new Call();
+        call.setId(in.getInt());
+        call.setCallerId(in.getInt());
+        call.setCallerUsername(readString(in));
+        call.setReceiverId(in.getInt());
+        call.setReceiverUsername(readString(in));
+        call.setGroupCall(in.get() != 0);
+        call.setStatus(Call.CallStatus.values()[in.get()]);
+        call.setStartTime(readTime(in));
+        call.setEndTime(readTime(in));
+        call.setDurationSeconds(in.getInt());
+        return call;
+    }
+
+    static byte[] callStatus(int callId, Call.CallStatus status) {
+        return encode(out -> {
+            out.writeInt(callId);
+            out.writeByte(status.ordinal());
+        });
+    }
+
+    static byte[] callEnd(int callId, int durationSeconds, LocalDateTime endTime) {
+        return encode(out -> {
+            out.writeInt(callId);
+            out.writeInt(durationSeconds);
+            writeTime(out, endTime);
+        });
+    }
+
+    // La presencia (online, last_seen, estado) no se registra: es volatil y la reconstruye PresenceService
+    static byte[] user(User user) {
+        return encode(out -> {
+            out.writeInt(user.getId());
+            writeString(out, user.getUsername());
+        });
+    }
+
+    static User readUser(ByteBuffer in) {
+        int id = in.getInt();
+        return new User(id, readString(in));
+    }
+
+    static byte[] group(Group group) {
+        return encode(out -> {
+            out.writeInt(group.getId());
+            writeString(out, group.getName());
+            writeString(out, group.getDescription());
+            out.writeInt(group.getCreatorId());
+            writeTime(out, group.getCreatedAt());
+        });
+    }
+
+    static Group readGroup(ByteBuffer in) {
+        int id = in.getInt();
+        String name = readString(in);
+        String description = readString(in);
+        Group group = new Group(name, in.getInt());
+        group.setId(id);
+        group.setDescription(description);
+        group.setCreatedAt(readTime(in));
+        return group;
+    }
+
+    static byte[] groupMember(int groupId, int userId, LocalDateTime joinedAt) {
+        return encode(out -> {
+            out.writeInt(groupId);
+            out.writeInt(userId);
+            writeTime(out, joinedAt);
+        });
+    }
+
+    static byte[] cursor(int userId, int messageId) {
+        return encode(out -> {
+            out.writeInt(userId);
+            out.writeInt(messageId);
+        });
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(Long.MIN_VALUE);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    static LocalDateTime readTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        return seconds == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(seconds, in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeOptionalInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readOptionalInt(ByteBuffer in) {
+        return in.get() != 0 ? in.getInt() : null;
+    }
+}
@@ -0,0 +1,148 @@
+package chat.repository.impl;
+
+import chat.metrics.Metrics;
+import chat.model.Call;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Los repositorios del motor embebido y, en modo durable, el WAL que comparten.
+// Al abrir se reproduce la ultima snapshot y los segmentos posteriores (los repositorios toleran
+// registros repetidos) y recien despues se conecta el WAL, asi lo recuperado no se vuelve a registrar.
+// Cada snapshotSeconds se rota el segmento y se escribe el estado completo: usuarios y grupos antes
+// que mensajes, llamadas y cursores, como al registrarlos.
+public class EmbeddedStore implements AutoCloseable {
+    private final EmbeddedUserRepository users = new EmbeddedUserRepository();
+    private final EmbeddedGroupRepository groups = new EmbeddedGroupRepository();
+    private final EmbeddedMessageRepository messages = new EmbeddedMessageRepository(groups);
+    private final EmbeddedCallRepository calls = new EmbeddedCallRepository();
+    private final EmbeddedDeliveryCursorRepository cursors = new EmbeddedDeliveryCursorRepository();
+    private final WriteAheadLog wal;
+    private final ScheduledExecutorService snapshotter;
+    private long lastSnapshotLsn;
+
+    // Solo memoria: se pierde todo al reiniciar
+    public EmbeddedStore() {
+        this.wal = null;
+        this.snapshotter = null;
+    }
+
+    public EmbeddedStore(Path directory, int segmentBytes, boolean syncPerBatch, int syncMillis,
+                         int snapshotSeconds) throws IOException {
+        this.wal = new WriteAheadLog(directory, segmentBytes, syncPerBatch, syncMillis);
+        long start = System.nanoTime();
+        long records = wal.recover(this::apply);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Metrics.getInstance().add("wal.recoveryMillis", millis);
+        Metrics.getInstance().add("wal.recoveredRecords", records);
+        System.out.println("Almacen embebido recuperado desde " + directory + ": " + records +
+                " registros en " + millis + " ms");
+
+        users.attach(wal);
+        groups.attach(wal);
+        messages.attach(wal);
+        calls.attach(wal);
+        cursors.attach(wal);
+
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshot, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+    }
+
+    public EmbeddedUserRepository getUserRepository() {
+        return users;
+    }
+
+    public EmbeddedGroupRepository getGroupRepository() {
+        return groups;
+    }
+
+    public EmbeddedMessageRepository getMessageRepository() {
+        return messages;
+    }
+
+    public EmbeddedCallRepository getCallRepository() {
+        return calls;
+    }
+
+    public EmbeddedDeliveryCursorRepository getCursorRepository() {
+        return cursors;
+    }
+
+    public boolean isDurable() {
+        return wal != null;
+    }
+
+    private void apply(byte type, ByteBuffer payload) {
+        switch (type) {
+            case EmbeddedRecords.MESSAGE:
+                messages.save(EmbeddedRecords.readMessage(payload));
+                break;
+            case EmbeddedRecords.CALL:
+                calls.restore(EmbeddedRecords.readCall(payload));
+                break;
+            case EmbeddedRecords.CALL_STATUS:
+                calls.applyStatus(payload.getInt(), Call.CallStatus.values()[payload.get()]);
+                break;
+            case EmbeddedRecords.CALL_END:
+                calls.applyEnd(payload.getInt(), payload.getInt(), EmbeddedRecords.readTime(payload));
+                break;
+            case EmbeddedRecords.USER:
+                users.restore(EmbeddedRecords.readUser(payload));
+                break;
+            case EmbeddedRecords.GROUP:
+                groups.restore(EmbeddedRecords.readGroup(payload));
+                break;
+            case EmbeddedRecords.GROUP_MEMBER:
+                groups.restoreMember(payload.getInt(), payload.getInt(), EmbeddedRecords.readTime(payload));
+                break;
+            case EmbeddedRecords.CURSOR:
+                cursors.restore(payload.getInt(), payload.getInt());
+                break;
+            default:
+                System.err.println("WAL: tipo de registro desconocido " + type);
+        }
+    }
+
+    // Snapshot difusa: lo registrado despues de rotar puede quedar tambien en la snapshot y se
+    // reproduce otra vez al recuperar, lo que no cambia el resultado
+    private void snapshot() {
+        try {
+            long lsn = wal.rotate();
+            if (lsn == lastSnapshotLsn) {
+                return;
+            }
+            wal.writeSnapshot(lsn, sink -> {
+                users.writeTo(sink);
+                groups.writeTo(sink);
+                messages.writeTo(sink);
+                calls.writeTo(sink);
+                cursors.writeTo(sink);
+            });
+            lastSnapshotLsn = lsn;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error escribiendo la snapshot del almacen embebido: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (wal == null) {
+            return;
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.close();
+    }
+}
@@ -0,0 +1,147 @@
+package chat.repository.impl;
+
+import chat.model.User;
+import chat.model.UserStatus;
+import chat.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Usuarios del motor embebido: arreglo indexado por id (los ids son consecutivos) y un indice por
+// username. Se entregan copias: los servicios modifican los User que reciben.
+// Con WAL solo se registran id y username; la presencia no sobrevive al reinicio (ver EmbeddedRecords).
+public class EmbeddedUserRepository implements UserRepository {
+    private User[] users = new User[256];
+    private int nextId = 1;
+    private final Map<String, Integer> byUsername = new HashMap<>();
+    private WriteAheadLog wal;
+
+    @Override
+    public User save(User user) {
+        long lsn;
+        synchronized (this) {
+            restore(user);
+            lsn = log(user);
+        }
+        awaitDurable(lsn);
+        return user;
+    }
+
+    @Override
+    public Optional<User> insertIfAbsent(User user) {
+        long lsn;
+        synchronized (this) {
+            if (byUsername.containsKey(user.getUsername())) {
+                return Optional.empty();
+            }
+            restore(user);
+            lsn = log(user);
+        }
+        awaitDurable(lsn);
+        return Optional.of(user);
+    }
+
+    // Guarda sin registrar en el WAL: lo usan save y la recuperacion
+    synchronized void restore(User user) {
+        if (user.getId() == 0) {
+            user.setId(nextId++);
+        } else {
+            nextId = Math.max(nextId, user.getId() + 1);
+        }
+        if (user.getId() >= users.length) {
+            users = Arrays.copyOf(users, Math.max(users.length * 2, user.getId() + 1));
+        }
+        User previous = users[user.getId()];
+        if (previous != null) {
+            byUsername.remove(previous.getUsername());
+        }
+        users[user.getId()] = copy(user);
+        byUsername.put(user.getUsername(), user.getId());
+    }
+
+    @Override
+    public synchronized Optional<User> findById(int id) {
+        User user = id > 0 && id < users.length ? users[id] : null;
+        return user != null ? Optional.of(copy(user)) : Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<User> findByUsername(String username) {
+        Integer id = byUsername.get(username);
+        return id != null ? Optional.of(copy(users[id])) : Optional.empty();
+    }
+
+    @Override
+    public synchronized List<User> findAll() {
+        List<User> all = new ArrayList<>(byUsername.size());
+        for (int id = 1; id < nextId && id < users.length; id++) {
+            if (users[id] != null) {
+                all.add(copy(users[id]));
+            }
+        }
+        all.sort(Comparator.comparing(User::getUsername));
+        return all;
+    }
+
+    @Override
+    public synchronized boolean existsByUsername(String username) {
+        return byUsername.containsKey(username);
+    }
+
+    @Override
+    public synchronized void updatePresence(List<UserStatus> changes) {
+        for (UserStatus change : changes) {
+            int id = change.getUserId();
+            User user = id > 0 && id < users.length ? users[id] : null;
+            if (user != null) {
+                user.setOnline(change.isOnline());
+                user.setLastSeen(change.getLastSeen());
+                user.setStatus(change.getStatus());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void resetOnlineStatus() {
+        for (User user : users) {
+            if (user != null) {
+                user.setOnline(false);
+            }
+        }
+    }
+
+    synchronized void attach(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+
+    synchronized void writeTo(WriteAheadLog.RecordSink sink) {
+        for (int id = 1; id < nextId && id < users.length; id++) {
+            if (users[id] != null) {
+                sink.write(EmbeddedRecords.USER, EmbeddedRecords.user(users[id]));
+            }
+        }
+    }
+
+    private long log(User user) {
+        return wal != null ? wal.append(EmbeddedRecords.USER, EmbeddedRecords.user(user)) : 0;
+    }
+
+    private void awaitDurable(long lsn) {
+        if (lsn > 0) {
+            wal.awaitDurable(lsn);
+        }
+    }
+
+    private static User copy(User user) {
+        User copy = new User(user.getId(), user.getUsername());
+        copy.setOnline(user.isOnline());
+        copy.setLastSeen(user.getLastSeen());
+        copy.setStatus(user.getStatus());
+        return copy;
+    }
+}
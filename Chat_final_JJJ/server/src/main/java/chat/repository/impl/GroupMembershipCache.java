@@ -0,0 +1,114 @@
+package chat.repository.impl;
+
+import chat.metrics.Metrics;
+import chat.model.Group;
+import chat.repository.GroupRepository;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Cache de miembros por grupo delante de GroupRepository para el fan-out.
+// Guarda arreglos int[] ordenados (sin boxing) y expira por tamaño (LRU) o por tiempo.
+// Cada cambio de miembros sube la generacion del grupo; una carga que empezo antes no se guarda,
+// asi una lista leida de la base antes del cambio no pisa la actualizada.
+public class GroupMembershipCache {
+    // Generaciones por franja de groupId: una colision solo hace que alguna carga no se guarde
+    private static final int GENERATION_STRIPES = 256;
+
+    private final GroupRepository groupRepository;
+    private final long ttlMillis;
+    private final Map<Integer, Entry> entries;
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private final Metrics metrics = Metrics.getInstance();
+
+    private static class Entry {
+        final int[] members;
+        final long loadedAt;
+
+        Entry(int[] members, long loadedAt) {
+            this.members = members;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public GroupMembershipCache(GroupRepository groupRepository, int maxGroups, long ttlMillis) {
+        this.groupRepository = groupRepository;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > maxGroups;
+            }
+        };
+    }
+
+    // Retorna los miembros del grupo o null si el grupo no existe
+    public int[] getMembers(int groupId) {
+        long now = System.currentTimeMillis();
+        long generation;
+        synchronized (entries) {
+            Entry entry = entries.get(groupId);
+            if (entry != null && now - entry.loadedAt < ttlMillis) {
+                metrics.increment("groupCache.hits");
+                return entry.members;
+            }
+            generation = generations[stripe(groupId)];
+        }
+
+        // La consulta a la base se hace fuera del lock
+        metrics.increment("groupCache.misses");
+        Optional<Group> group = groupRepository.findById(groupId);
+        if (group.isEmpty()) {
+            return null;
+        }
+        int[] members = toSortedSet(group.get().getMemberIds());
+        synchronized (entries) {
+            if (generations[stripe(groupId)] == generation) {
+                entries.put(groupId, new Entry(members, now));
+            } else {
+                metrics.increment("groupCache.staleLoads");
+            }
+        }
+        return members;
+    }
+
+    public void onGroupCreated(Group group) {
+        int[] members = toSortedSet(group.getMemberIds());
+        synchronized (entries) {
+            entries.put(group.getId(), new Entry(members, System.currentTimeMillis()));
+        }
+    }
+
+    // Actualiza en sitio (copy-on-write) si el grupo esta cacheado; si no, se cargara en el proximo acceso
+    public void onMemberAdded(int groupId, int userId) {
+        synchronized (entries) {
+            generations[stripe(groupId)]++;
+            Entry entry = entries.get(groupId);
+            if (entry == null || Arrays.binarySearch(entry.members, userId) >= 0) {
+                return;
+            }
+            int[] members = Arrays.copyOf(entry.members, entry.members.length + 1);
+            members[members.length - 1] = userId;
+            Arrays.sort(members);
+            entries.put(groupId, new Entry(members, entry.loadedAt));
+        }
+    }
+
+    public void invalidate(int groupId) {
+        synchronized (entries) {
+            generations[stripe(groupId)]++;
+            entries.remove(groupId);
+        }
+    }
+
+    private static int stripe(int groupId) {
+        return groupId & (GENERATION_STRIPES - 1);
+    }
+
+    private static int[] toSortedSet(List<Integer> memberIds) {
+        return memberIds.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+}
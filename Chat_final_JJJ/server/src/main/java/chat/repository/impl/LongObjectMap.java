@@ -0,0 +1,110 @@
+package chat.repository.impl;
+
+import java.util.function.LongFunction;
+
+// Mapa long -> objeto sin boxing para el motor embebido: direccionamiento abierto con sondeo lineal.
+// La clave 0 marca una celda libre; los repositorios embebidos nunca la usan.
+// No es thread-safe: cada repositorio lo protege con su propio lock.
+class LongObjectMap<V> {
+    private static final long FREE = 0;
+
+    interface Visitor<V> {
+        void visit(long key, V value);
+    }
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    LongObjectMap() {
+        this(16);
+    }
+
+    LongObjectMap(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+        keys = new long[tableSize];
+        values = new Object[tableSize];
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+            if (keys[i] == FREE) {
+                return null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize();
+            return put(key, value);
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    V computeIfAbsent(long key, LongFunction<V> factory) {
+        V value = get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(Visitor<V> visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                visitor.visit(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE) {
+                continue;
+            }
+            int index = mix(oldKeys[i]) & mask;
+            while (keys[index] != FREE) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,188 @@
+package chat.repository.impl;
+
+import chat.metrics.Metrics;
+import chat.repository.VoiceNoteRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+// Almacen de notas de voz en segmentos de solo-agregar mapeados en memoria (segment-NNNNNNNN.vn).
+// Registro: int longitud | int crc | long id anterior | audio. La longitud se escribe al final, asi
+// un registro a medias tras una caida queda con longitud 0 o crc invalido y marca el fin del segmento.
+// Id de un fragmento = (numero de segmento << 32) | posicion. Las lecturas son slices del mapeo:
+// el audio no pasa por el heap y el socket lo envia directo desde la cache de paginas.
+public class MappedVoiceNoteRepository implements VoiceNoteRepository, AutoCloseable {
+    private static final int HEADER_SIZE = 16;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".vn";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final Metrics metrics = Metrics.getInstance();
+    private Segment active;
+
+    private static class Segment {
+        final int index;
+        final FileChannel channel;
+        final MappedByteBuffer map;
+        // Fin de los datos confirmados; volatile para que los lectores vean el registro completo
+        volatile int end;
+
+        Segment(int index, FileChannel channel, MappedByteBuffer map) {
+            this.index = index;
+            this.channel = channel;
+            this.map = map;
+        }
+    }
+
+    public MappedVoiceNoteRepository(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+
+        List<Integer> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                indexes.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(indexes);
+        for (int index : indexes) {
+            Segment segment = open(index);
+            segment.end = recover(segment);
+            segments.put(index, segment);
+            active = segment;
+        }
+        if (active == null) {
+            active = open(0);
+            segments.put(0, active);
+        }
+
+        metrics.gauge("voiceNote.segments", segments::size);
+        System.out.println("Almacen de notas de voz en " + directory.toAbsolutePath() + " (" +
+                segments.size() + " segmentos)");
+    }
+
+    @Override
+    public synchronized long append(long previousId, byte[] audio, int offset, int length) {
+        if (length <= 0 || HEADER_SIZE + length > segmentBytes) {
+            throw new IllegalArgumentException("Fragmento de nota de voz invalido: " + length + " bytes");
+        }
+        try {
+            if (active.end + HEADER_SIZE + length > segmentBytes) {
+                Segment next = open(active.index + 1);
+                segments.put(next.index, next);
+                active = next;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error creando segmento de notas de voz", e);
+        }
+
+        MappedByteBuffer map = active.map;
+        int position = active.end;
+        map.putLong(position + 8, previousId);
+        map.put(position + HEADER_SIZE, audio, offset, length);
+        map.putInt(position + 4, checksum(previousId, audio, offset, length));
+        map.putInt(position, length);
+        map.force(position, HEADER_SIZE + length);
+        active.end = position + HEADER_SIZE + length;
+
+        metrics.add("voiceNote.storedBytes", length);
+        return ((long) active.index << 32) | position;
+    }
+
+    @Override
+    public ByteBuffer[] find(long voiceNoteId) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        long id = voiceNoteId;
+        while (id != NO_PREVIOUS) {
+            Segment segment = segments.get((int) (id >>> 32));
+            int position = (int) id;
+            if (segment == null || position < 0 || position + HEADER_SIZE > segment.end) {
+                return null;
+            }
+            int length = segment.map.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segment.end) {
+                return null;
+            }
+            chunks.add(segment.map.slice(position + HEADER_SIZE, length).asReadOnlyBuffer());
+
+            long previous = segment.map.getLong(position + 8);
+            // Los fragmentos solo apuntan hacia atras: evita ciclos con ids corruptos
+            if (previous != NO_PREVIOUS && previous >= id) {
+                return null;
+            }
+            id = previous;
+        }
+        Collections.reverse(chunks);
+        return chunks.toArray(new ByteBuffer[0]);
+    }
+
+    private Segment open(int index) throws IOException {
+        Path file = directory.resolve(String.format("%s%08d%s", PREFIX, index, SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Mapear el tamaño completo extiende el archivo (disperso) hasta segmentBytes
+        return new Segment(index, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+    }
+
+    // Recorre los registros validos; el primero vacio o corrupto marca el fin
+    private int recover(Segment segment) {
+        MappedByteBuffer map = segment.map;
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentBytes) {
+            int length = map.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segmentBytes) {
+                break;
+            }
+            byte[] audio = new byte[length];
+            map.get(position + HEADER_SIZE, audio);
+            if (map.getInt(position + 4) != checksum(map.getLong(position + 8), audio, 0, length)) {
+                System.err.println("Registro corrupto en segmento " + segment.index + " posicion " + position +
+                        ", se descarta el resto");
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private int checksum(long previousId, byte[] audio, int offset, int length) {
+        synchronized (crc) {
+            crc.reset();
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                crc.update((int) (previousId >>> shift));
+            }
+            crc.update(audio, offset, length);
+            return (int) crc.getValue();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.map.force();
+                segment.channel.close();
+            } catch (IOException e) {
+                System.err.println("Error cerrando segmento de notas de voz: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package chat.repository.impl;
+
+import chat.model.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Log de solo-agregar de una conversacion del motor embebido (par de usuarios, grupo o bandeja).
+// ids[] se mantiene ascendente y paralelo a messages[]: las paginas por cursor son una busqueda
+// binaria mas una copia del rango, sin recorrer el historial.
+// No es thread-safe: EmbeddedMessageRepository lo protege con el lock de su franja.
+class MessageLog {
+    private int[] ids = new int[8];
+    private Message[] messages = new Message[8];
+    private int size;
+
+    // false si el id ya estaba: al recuperar, un registro del WAL puede repetir uno de la snapshot
+    boolean append(Message message) {
+        int id = message.getId();
+        int index = size;
+        // Con ids reservados (escritura diferida) un mensaje puede llegar despues de otro con id mayor
+        while (index > 0 && ids[index - 1] > id) {
+            index--;
+        }
+        if (index > 0 && ids[index - 1] == id) {
+            return false;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            messages = Arrays.copyOf(messages, size * 2);
+        }
+        if (index < size) {
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(messages, index, messages, index + 1, size - index);
+        }
+        ids[index] = id;
+        messages[index] = message;
+        size++;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Consumer<Message> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(messages[i]);
+        }
+    }
+
+    List<Message> all() {
+        return new ArrayList<>(Arrays.asList(messages).subList(0, size));
+    }
+
+    // Hasta limit mensajes con id > afterId, ascendente
+    List<Message> after(int afterId, int limit) {
+        int from = firstAbove(afterId);
+        int to = Math.min(size, from + limit);
+        return new ArrayList<>(Arrays.asList(messages).subList(from, to));
+    }
+
+    // Igual que after, saltando los que no cumplen el filtro (bandeja de grupos)
+    List<Message> after(int afterId, int limit, Predicate<Message> filter) {
+        List<Message> result = new ArrayList<>();
+        for (int i = firstAbove(afterId); i < size && result.size() < limit; i++) {
+            if (filter.test(messages[i])) {
+                result.add(messages[i]);
+            }
+        }
+        return result;
+    }
+
+    // Los limit mensajes mas recientes con id < beforeId (o los ultimos si es null), ascendente
+    List<Message> before(Integer beforeId, int limit) {
+        int to = beforeId == null ? size : firstAbove(beforeId - 1);
+        int from = Math.max(0, to - limit);
+        return new ArrayList<>(Arrays.asList(messages).subList(from, to));
+    }
+
+    // Primer indice con id > value
+    private int firstAbove(int value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ids[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,59 @@
+package chat.repository.impl;
+
+import chat.config.DatabaseConfig;
+import chat.repository.DeliveryCursorRepository;
+
+import java.sql.*;
+
+public class PostgresDeliveryCursorRepository implements DeliveryCursorRepository {
+    private final DatabaseConfig dbConfig;
+    
+    public PostgresDeliveryCursorRepository() {
+        this.dbConfig = DatabaseConfig.getInstance();
+    }
+    
+    @Override
+    public int getLastDelivered(int userId) {
+        String select = "SELECT last_message_id FROM delivery_cursors WHERE user_id = ?";
+        String insert = "INSERT INTO delivery_cursors (user_id, last_message_id) VALUES (?, 0) " +
+                        "ON CONFLICT (user_id) DO NOTHING";
+        
+        try (Connection conn = dbConfig.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(select)) {
+                stmt.setInt(1, userId);
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getInt("last_message_id");
+                }
+            }
+            // Usuario nuevo: desde aqui sus mensajes offline quedan cubiertos por el cursor
+            try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+                stmt.setInt(1, userId);
+                stmt.executeUpdate();
+            }
+            return 0;
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading delivery cursor", e);
+        }
+    }
+    
+    @Override
+    public void advance(int userId, int messageId) {
+        String sql = "INSERT INTO delivery_cursors (user_id, last_message_id) VALUES (?, ?) " +
+                     "ON CONFLICT (user_id) DO UPDATE SET last_message_id = EXCLUDED.last_message_id, " +
+                     "updated_at = CURRENT_TIMESTAMP " +
+                     "WHERE delivery_cursors.last_message_id < EXCLUDED.last_message_id";
+        
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, userId);
+            stmt.setInt(2, messageId);
+            stmt.executeUpdate();
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error advancing delivery cursor", e);
+        }
+    }
+}
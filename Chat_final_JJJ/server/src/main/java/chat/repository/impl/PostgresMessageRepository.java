@@ -6,8 +6,11 @@ import chat.repository.MessageRepository;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+// Sin bloques synchronized propios: las esperas por conexion (Hikari) y por red (pgjdbc >= 42.6)
+// usan locks de java.util.concurrent, por lo que no fijan hilos virtuales a su carrier.
 public class PostgresMessageRepository implements MessageRepository {
     private final DatabaseConfig dbConfig;
     
@@ -17,8 +20,8 @@ public class PostgresMessageRepository implements MessageRepository {
     
     @Override
     public Message save(Message message) {
-        String sql = "INSERT INTO messages (sender_id, sender_username, receiver_id, group_id, content, message_type) " +
-                     "VALUES (?, ?, ?, ?, ?, ?) RETURNING id, timestamp";
+        String sql = "INSERT INTO messages (sender_id, sender_username, receiver_id, group_id, content, message_type, voice_note_id) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING id, timestamp";
         
         try (Connection conn = dbConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -40,6 +43,7 @@ public class PostgresMessageRepository implements MessageRepository {
             
             stmt.setString(5, message.getContent());
             stmt.setString(6, message.getType().name());
+            setVoiceNoteId(stmt, 7, message);
             
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
@@ -104,6 +108,198 @@ public class PostgresMessageRepository implements MessageRepository {
         }
     }
     
+    // Un solo viaje a la base por bloque; con concurrencia los ids pueden no ser contiguos
+    @Override
+    public int[] reserveIds(int count) {
+        String sql = "SELECT nextval(pg_get_serial_sequence('messages', 'id')) FROM generate_series(1, ?)";
+        
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, count);
+            ResultSet rs = stmt.executeQuery();
+            
+            int[] ids = new int[count];
+            int i = 0;
+            while (rs.next() && i < count) {
+                ids[i++] = rs.getInt(1);
+            }
+            return ids;
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reserving message ids", e);
+        }
+    }
+    
+    // Usa el indice idx_messages_voice_note
+    @Override
+    public Message findByVoiceNoteId(long voiceNoteId) {
+        String sql = "SELECT * FROM messages WHERE voice_note_id = ?";
+        
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setLong(1, voiceNoteId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? mapResultSetToMessage(rs) : null;
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding voice note message", e);
+        }
+    }
+    
+    // Batch JDBC en una sola transaccion (con reWriteBatchedInserts=true el driver lo envia como multi-VALUES)
+    @Override
+    public void saveBatch(List<Message> messages) {
+        String sql = "INSERT INTO messages (id, sender_id, sender_username, receiver_id, group_id, content, message_type, timestamp, voice_note_id) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try (Connection conn = dbConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (Message message : messages) {
+                    stmt.setInt(1, message.getId());
+                    stmt.setInt(2, message.getSenderId());
+                    stmt.setString(3, message.getSenderUsername());
+                    
+                    if (message.getReceiverId() != null && message.getReceiverId() > 0) {
+                        stmt.setInt(4, message.getReceiverId());
+                    } else {
+                        stmt.setNull(4, Types.INTEGER);
+                    }
+                    
+                    if (message.getGroupId() != null && message.getGroupId() > 0) {
+                        stmt.setInt(5, message.getGroupId());
+                    } else {
+                        stmt.setNull(5, Types.INTEGER);
+                    }
+                    
+                    stmt.setString(6, message.getContent());
+                    stmt.setString(7, message.getType().name());
+                    stmt.setTimestamp(8, Timestamp.valueOf(message.getTimestamp()));
+                    setVoiceNoteId(stmt, 9, message);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error saving message batch", e);
+        }
+    }
+    
+    // Cada rama del UNION recorre el indice (sender_id, receiver_id, id) desde el cursor
+    @Override
+    public List<Message> findPageByUsers(int userId1, int userId2, Integer beforeId, Integer afterId, int limit) {
+        boolean forward = afterId != null;
+        String range = forward ? "id > ?" : "id < ?";
+        String order = forward ? "ASC" : "DESC";
+        String branch = "(SELECT * FROM messages WHERE sender_id = ? AND receiver_id = ? AND " + range +
+                        " ORDER BY id " + order + " LIMIT ?)";
+        // Chat con uno mismo: las dos ramas serian la misma y cada fila saldria dos veces
+        boolean self = userId1 == userId2;
+        String sql = self ? branch
+                : "SELECT * FROM (" + branch + " UNION ALL " + branch + ") page ORDER BY id " + order + " LIMIT ?";
+        int cursor = cursorValue(beforeId, afterId);
+        
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, userId1);
+            stmt.setInt(2, userId2);
+            stmt.setInt(3, cursor);
+            stmt.setInt(4, limit);
+            if (!self) {
+                stmt.setInt(5, userId2);
+                stmt.setInt(6, userId1);
+                stmt.setInt(7, cursor);
+                stmt.setInt(8, limit);
+                stmt.setInt(9, limit);
+            }
+            
+            return readPage(stmt.executeQuery(), forward);
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding message page by users", e);
+        }
+    }
+    
+    // Usa el indice (group_id, id)
+    @Override
+    public List<Message> findPageByGroupId(int groupId, Integer beforeId, Integer afterId, int limit) {
+        boolean forward = afterId != null;
+        String sql = "SELECT * FROM messages WHERE group_id = ? AND " + (forward ? "id > ?" : "id < ?") +
+                     " ORDER BY id " + (forward ? "ASC" : "DESC") + " LIMIT ?";
+        
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, groupId);
+            stmt.setInt(2, cursorValue(beforeId, afterId));
+            stmt.setInt(3, limit);
+            
+            return readPage(stmt.executeQuery(), forward);
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding message page by group", e);
+        }
+    }
+    
+    // Una consulta por rango y usuario: la rama directa recorre (receiver_id, id) y la de grupos
+    // (group_id, id) desde el cursor. joined_at evita entregar mensajes anteriores a unirse al grupo.
+    @Override
+    public List<Message> findInbox(int userId, int afterId, int limit) {
+        String sql = "SELECT * FROM (" +
+                     "(SELECT * FROM messages WHERE receiver_id = ? AND id > ? ORDER BY id ASC LIMIT ?) " +
+                     "UNION ALL " +
+                     "(SELECT m.* FROM messages m JOIN group_members gm ON gm.group_id = m.group_id " +
+                     "WHERE gm.user_id = ? AND m.id > ? AND m.sender_id <> ? AND m.timestamp >= gm.joined_at " +
+                     "ORDER BY m.id ASC LIMIT ?)" +
+                     ") inbox ORDER BY id ASC LIMIT ?";
+        
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, userId);
+            stmt.setInt(2, afterId);
+            stmt.setInt(3, limit);
+            stmt.setInt(4, userId);
+            stmt.setInt(5, afterId);
+            stmt.setInt(6, userId);
+            stmt.setInt(7, limit);
+            stmt.setInt(8, limit);
+            
+            return readPage(stmt.executeQuery(), true);
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding inbox", e);
+        }
+    }
+    
+    private int cursorValue(Integer beforeId, Integer afterId) {
+        if (afterId != null) {
+            return afterId;
+        }
+        return beforeId != null ? beforeId : Integer.MAX_VALUE;
+    }
+    
+    private List<Message> readPage(ResultSet rs, boolean forward) throws SQLException {
+        List<Message> messages = new ArrayList<>();
+        while (rs.next()) {
+            messages.add(mapResultSetToMessage(rs));
+        }
+        if (!forward) {
+            Collections.reverse(messages);
+        }
+        return messages;
+    }
+    
     private Message mapResultSetToMessage(ResultSet rs) throws SQLException {
         Message message = new Message(
             rs.getInt("sender_id"),
@@ -126,6 +322,19 @@ public class PostgresMessageRepository implements MessageRepository {
         message.setType(Message.MessageType.valueOf(rs.getString("message_type")));
         message.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
         
+        long voiceNoteId = rs.getLong("voice_note_id");
+        if (!rs.wasNull()) {
+            message.setVoiceNoteId(voiceNoteId);
+        }
+        
         return message;
     }
+    
+    private void setVoiceNoteId(PreparedStatement stmt, int index, Message message) throws SQLException {
+        if (message.getVoiceNoteId() != null) {
+            stmt.setLong(index, message.getVoiceNoteId());
+        } else {
+            stmt.setNull(index, Types.BIGINT);
+        }
+    }
 }
@@ -2,6 +2,7 @@ package chat.repository.impl;
 
 import chat.config.DatabaseConfig;
 import chat.model.User;
+import chat.model.UserStatus;
 import chat.repository.UserRepository;
 
 import java.sql.*;
@@ -38,6 +39,30 @@ public class PostgresUserRepository implements UserRepository {
         }
     }
     
+    @Override
+    public Optional<User> insertIfAbsent(User user) {
+        String sql = "INSERT INTO users (username, online) VALUES (?, ?) " +
+                "ON CONFLICT (username) DO NOTHING RETURNING id";
+        
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, user.getUsername());
+            stmt.setBoolean(2, user.isOnline());
+            
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                user.setId(rs.getInt("id"));
+                return Optional.of(user);
+            }
+            
+            return Optional.empty();
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error inserting user", e);
+        }
+    }
+    
     @Override
     public Optional<User> findById(int id) {
         String sql = "SELECT * FROM users WHERE id = ?";
@@ -122,18 +147,46 @@ public class PostgresUserRepository implements UserRepository {
     }
     
     @Override
-    public void updateOnlineStatus(int userId, boolean online) {
-        String sql = "UPDATE users SET online = ?, last_seen = CURRENT_TIMESTAMP WHERE id = ?";
+    public void updatePresence(List<UserStatus> changes) {
+        String sql = "UPDATE users SET online = ?, last_seen = ?, status = ? WHERE id = ?";
         
         try (Connection conn = dbConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setBoolean(1, online);
-            stmt.setInt(2, userId);
-            stmt.executeUpdate();
+            conn.setAutoCommit(false);
+            try {
+                for (UserStatus change : changes) {
+                    stmt.setBoolean(1, change.isOnline());
+                    stmt.setTimestamp(2, change.getLastSeen() != null ? Timestamp.valueOf(change.getLastSeen()) : null);
+                    stmt.setString(3, change.getStatus());
+                    stmt.setInt(4, change.getUserId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
-            throw new RuntimeException("Error updating online status", e);
+            throw new RuntimeException("Error updating presence", e);
+        }
+    }
+    
+    @Override
+    public void resetOnlineStatus() {
+        String sql = "UPDATE users SET online = FALSE WHERE online";
+        
+        try (Connection conn = dbConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+            
+            stmt.executeUpdate(sql);
+            
+        } catch (SQLException e) {
+            throw new RuntimeException("Error resetting online status", e);
         }
     }
     
@@ -141,6 +194,12 @@ public class PostgresUserRepository implements UserRepository {
         User user = new User(rs.getString("username"));
         user.setId(rs.getInt("id"));
         user.setOnline(rs.getBoolean("online"));
+        Timestamp lastSeen = rs.getTimestamp("last_seen");
+        user.setLastSeen(lastSeen != null ? lastSeen.toLocalDateTime() : null);
+        String status = rs.getString("status");
+        if (status != null) {
+            user.setStatus(status);
+        }
         return user;
     }
 }
@@ -0,0 +1,473 @@
+package chat.repository.impl;
+
+import chat.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Registro de escritura anticipada del motor embebido: segmentos de solo-agregar wal-<lsn>.log,
+// donde el nombre es el LSN del primer registro y los siguientes son consecutivos.
+// Registro: int longitud | int crc | byte tipo | datos. Un registro a medias al final marca el fin.
+// Los appends solo copian a un buffer en memoria; un hilo escribe y hace fsync de todo lo acumulado
+// (group commit). En modo "batch" el llamador espera su fsync; en "interval" el fsync ocurre cada
+// syncMillis y una caida puede perder ese intervalo.
+// Las snapshots (snapshot-<lsn>.snap) contienen el estado completo hasta ese LSN en el mismo formato
+// de registros; al escribir una se borran los segmentos que quedan cubiertos.
+public class WriteAheadLog implements AutoCloseable {
+    static final byte END = 0;
+
+    private static final int FRAME_HEADER = 9;
+    private static final int SNAPSHOT_MAGIC = 0x57414C53;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    // Aplica un registro al recuperar; payload es un slice del archivo mapeado
+    interface RecordHandler {
+        void apply(byte type, ByteBuffer payload);
+    }
+
+    interface RecordSink {
+        void write(byte type, byte[] payload);
+    }
+
+    interface SnapshotSource {
+        void writeTo(RecordSink sink);
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean syncPerBatch;
+    private final int syncMillis;
+    private final Metrics metrics = Metrics.getInstance();
+
+    // Estado compartido con los appends, protegido por lock
+    private final Object lock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private long nextLsn = 1;
+    private long durableLsn;
+    private volatile boolean running;
+    private boolean closed;
+
+    // Archivo activo, protegido por io (solo el hilo de fsync, rotate y close)
+    private final Object io = new Object();
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private FileChannel channel;
+    private long channelSize;
+    private Thread flusher;
+
+    public WriteAheadLog(Path directory, int segmentBytes, boolean syncPerBatch, int syncMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncPerBatch = syncPerBatch;
+        this.syncMillis = syncMillis;
+        Files.createDirectories(directory);
+    }
+
+    // Carga la ultima snapshot y reproduce los segmentos posteriores; despues abre un segmento nuevo
+    // y arranca el hilo de fsync. Retorna la cantidad de registros aplicados.
+    public long recover(RecordHandler handler) throws IOException {
+        long applied = 0;
+        long snapshotLsn = 0;
+        List<Long> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (!snapshots.isEmpty()) {
+            snapshotLsn = snapshots.get(snapshots.size() - 1);
+            applied += loadSnapshot(file(SNAPSHOT_PREFIX, snapshotLsn, SNAPSHOT_SUFFIX), handler);
+        }
+
+        long lastLsn = snapshotLsn;
+        for (long firstLsn : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (firstLsn > lastLsn + 1) {
+                System.err.println("WAL: faltan registros entre " + (lastLsn + 1) + " y " + (firstLsn - 1));
+            }
+            long lsn = firstLsn;
+            try (FileChannel segment = FileChannel.open(file(SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX),
+                    StandardOpenOption.READ)) {
+                if (segment.size() > 0) {
+                    MappedByteBuffer map = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+                    int position = 0;
+                    while (true) {
+                        int next = nextFrame(map, position);
+                        if (next < 0) {
+                            if (position < map.limit()) {
+                                System.err.println("WAL: registro incompleto en " + firstLsn + " posicion " +
+                                        position + ", se descarta el resto del segmento");
+                            }
+                            break;
+                        }
+                        if (lsn > snapshotLsn) {
+                            handler.apply(map.get(position + 8), map.slice(position + FRAME_HEADER,
+                                    next - position - FRAME_HEADER));
+                            applied++;
+                        }
+                        lsn++;
+                        position = next;
+                    }
+                }
+            }
+            lastLsn = Math.max(lastLsn, lsn - 1);
+        }
+
+        nextLsn = lastLsn + 1;
+        durableLsn = lastLsn;
+        synchronized (io) {
+            openSegment(nextLsn);
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        metrics.gauge("wal.pendingBytes", () -> {
+            synchronized (lock) {
+                return pending.position();
+            }
+        });
+        return applied;
+    }
+
+    // Agrega el registro al lote en curso y retorna su LSN; no espera el fsync
+    public long append(byte type, byte[] payload) {
+        synchronized (lock) {
+            if (!running) {
+                throw new IllegalStateException("WAL cerrado");
+            }
+            pending = frame(pending, type, payload);
+            long lsn = nextLsn++;
+            if (syncPerBatch) {
+                lock.notifyAll();
+            }
+            return lsn;
+        }
+    }
+
+    // En modo batch bloquea hasta que el registro este en disco; en modo interval retorna enseguida.
+    // Si el WAL se cierra sin haberlo escrito, el llamador recibe el error en lugar de una confirmacion.
+    public void awaitDurable(long lsn) {
+        if (!syncPerBatch) {
+            return;
+        }
+        synchronized (lock) {
+            while (durableLsn < lsn && !closed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (durableLsn < lsn) {
+                throw new IllegalStateException("WAL cerrado sin sincronizar el registro " + lsn);
+            }
+        }
+    }
+
+    public void write(byte type, byte[] payload) {
+        awaitDurable(append(type, payload));
+    }
+
+    // Cierra el segmento activo y retorna el ultimo LSN que contiene: todo lo anterior ya esta aplicado
+    // en memoria (los repositorios aplican antes de registrar), asi es el LSN de la siguiente snapshot
+    public long rotate() {
+        return flush(true);
+    }
+
+    public void writeSnapshot(long lsn, SnapshotSource source) throws IOException {
+        long start = System.nanoTime();
+        Path target = file(SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long[] records = new long[1];
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(12).putInt(SNAPSHOT_MAGIC).putLong(lsn);
+            header.flip();
+            writeFully(out, header);
+            ByteBuffer[] buffer = {ByteBuffer.allocate(256 * 1024)};
+            RecordSink sink = (type, payload) -> {
+                buffer[0] = frame(buffer[0], type, payload);
+                records[0]++;
+                if (buffer[0].position() >= 128 * 1024) {
+                    try {
+                        drain(out, buffer[0]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            source.writeTo(sink);
+            buffer[0] = frame(buffer[0], END, new byte[0]);
+            drain(out, buffer[0]);
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        // El renombrado tiene que ser durable antes de borrar lo que la snapshot reemplaza
+        syncDirectory();
+
+        // Snapshots anteriores y segmentos ya cubiertos por esta
+        for (long older : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (older < lsn) {
+                Files.deleteIfExists(file(SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX));
+            }
+        }
+        List<Long> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (segments.get(i + 1) - 1 <= lsn) {
+                Files.deleteIfExists(file(SEGMENT_PREFIX, segments.get(i), SEGMENT_SUFFIX));
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        metrics.increment("wal.snapshots");
+        System.out.println("Snapshot del almacen embebido en LSN " + lsn + ": " + records[0] +
+                " registros en " + millis + " ms");
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                if (syncPerBatch) {
+                    synchronized (lock) {
+                        while (running && pending.position() == 0) {
+                            lock.wait();
+                        }
+                    }
+                } else {
+                    Thread.sleep(syncMillis);
+                }
+                try {
+                    flush(false);
+                } catch (RuntimeException e) {
+                    // El lote quedo en pending: se reintenta despues de una pausa para no girar en vacio
+                    System.err.println("Error escribiendo el WAL: " + (e.getCause() != null ? e.getCause() : e));
+                    metrics.increment("wal.errors");
+                    Thread.sleep(Math.max(syncMillis, 100));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Escribe y sincroniza lo acumulado; los appends siguen llenando el otro buffer mientras tanto.
+    // Si la escritura falla el lote vuelve delante de pending, durableLsn no avanza y el segmento se
+    // abandona: puede terminar en un registro a medias, y el siguiente empieza en durableLsn + 1.
+    private long flush(boolean rotate) {
+        synchronized (io) {
+            ByteBuffer batch;
+            long upto;
+            long durable;
+            synchronized (lock) {
+                batch = pending;
+                pending = spare;
+                upto = nextLsn - 1;
+                durable = durableLsn;
+            }
+            batch.flip();
+            try {
+                if (channel == null) {
+                    openSegment(durable + 1);
+                }
+                if (batch.hasRemaining()) {
+                    long start = System.nanoTime();
+                    int bytes = batch.remaining();
+                    writeFully(channel, batch);
+                    channel.force(false);
+                    channelSize += bytes;
+                    metrics.increment("wal.fsyncs");
+                    metrics.add("wal.bytes", bytes);
+                    metrics.add("wal.syncMicros", (System.nanoTime() - start) / 1000);
+                }
+            } catch (IOException e) {
+                requeue(batch);
+                abandonSegment();
+                throw new UncheckedIOException("Error escribiendo el WAL", e);
+            }
+            batch.clear();
+            spare = batch;
+            synchronized (lock) {
+                durableLsn = upto;
+                lock.notifyAll();
+            }
+            if ((rotate || channelSize >= segmentBytes) && channelSize > 0) {
+                // Lo escrito ya es durable; si no se puede abrir el siguiente lo reintenta el proximo flush
+                abandonSegment();
+                try {
+                    openSegment(upto + 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error rotando el WAL", e);
+                }
+            }
+            return upto;
+        }
+    }
+
+    // Devuelve un lote no escrito delante de lo que se acumulo mientras tanto, conservando el orden de LSN
+    private void requeue(ByteBuffer batch) {
+        batch.rewind();
+        synchronized (lock) {
+            ByteBuffer merged = ByteBuffer.allocate(Math.max(pending.capacity(), batch.limit() + pending.position()));
+            pending.flip();
+            merged.put(batch).put(pending);
+            pending.clear();
+            spare = pending;
+            pending = merged;
+        }
+    }
+
+    private void abandonSegment() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error cerrando el segmento del WAL: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        channel = FileChannel.open(file(SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        channelSize = 0;
+        // force() del segmento no persiste su entrada en el directorio: sin esto un corte de luz
+        // puede perder el archivo entero con registros ya confirmados como durables
+        syncDirectory();
+    }
+
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Algunas plataformas (p. ej. Windows) no permiten abrir ni sincronizar un directorio
+            metrics.increment("wal.dirSyncUnsupported");
+        }
+    }
+
+    private long loadSnapshot(Path path, RecordHandler handler) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (map.limit() < 12 || map.getInt(0) != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Snapshot invalida: " + path);
+            }
+            long applied = 0;
+            int position = 12;
+            while (true) {
+                int next = nextFrame(map, position);
+                if (next < 0) {
+                    // Las snapshots se escriben completas antes de renombrarse: sin END estan corruptas
+                    throw new IllegalStateException("Snapshot incompleta: " + path);
+                }
+                byte type = map.get(position + 8);
+                if (type == END) {
+                    return applied;
+                }
+                handler.apply(type, map.slice(position + FRAME_HEADER, next - position - FRAME_HEADER));
+                applied++;
+                position = next;
+            }
+        }
+    }
+
+    // Fin del registro que empieza en position, o -1 si no hay uno completo y valido
+    private static int nextFrame(ByteBuffer map, int position) {
+        if (position + FRAME_HEADER > map.limit()) {
+            return -1;
+        }
+        int length = map.getInt(position);
+        if (length <= 0 || position + 8L + length > map.limit()) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(map.slice(position + 8, length));
+        if ((int) crc.getValue() != map.getInt(position + 4)) {
+            return -1;
+        }
+        return position + 8 + length;
+    }
+
+    // La longitud cubre tipo + datos
+    private static ByteBuffer frame(ByteBuffer buffer, byte type, byte[] payload) {
+        int needed = FRAME_HEADER + payload.length;
+        if (buffer.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        buffer.putInt(1 + payload.length).putInt((int) crc.getValue()).put(type).put(payload);
+        return buffer;
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(out, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private Path file(String prefix, long lsn, String suffix) {
+        return directory.resolve(String.format("%s%020d%s", prefix, lsn, suffix));
+    }
+
+    private List<Long> list(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join(syncMillis + 5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (io) {
+            try {
+                flush(false);
+            } catch (RuntimeException e) {
+                System.err.println("Error cerrando el WAL, quedan registros sin escribir: " + e.getMessage());
+            }
+            abandonSegment();
+        }
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package chat.server;
+
+import chat.audio.codec.ImaAdpcmCodec;
+import chat.audio.codec.MuLawCodec;
+import chat.audio.codec.PcmCodec;
+import chat.audio.codec.VoiceCodecs;
+import chat.metrics.Metrics;
+import chat.model.AudioPacket;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Modo SFU de las llamadas grupales: no se decodifica ni se mezcla nada. Por cada paquete se calcula
+// un nivel de energia barato y solo los K emisores mas fuertes del grupo se reenvian tal cual al
+// resto de miembros; los paquetes de los demas se descartan en el servidor.
+public class ActiveSpeakerForwarder implements GroupVoiceHandler {
+    private static final int DATA_LENGTH_OFFSET = 20;
+    // Cada cuanto se vuelve a elegir el conjunto activo y cuanto dura un emisor sin enviar
+    private static final long ELECTION_MILLIS = 20;
+    private static final long SPEAKER_TIMEOUT_MILLIS = 300;
+    private static final long MEMBER_TIMEOUT_MILLIS = 5000;
+    // Se mide una de cada SAMPLE_STRIDE muestras
+    private static final int SAMPLE_STRIDE = 4;
+
+    private final DatagramChannel channel;
+    private final int topK;
+    private final Map<Integer, SpeakerGroup> groups = new ConcurrentHashMap<>();
+
+    private final LongAdder forwarded = Metrics.getInstance().counter("voice.sfu.packetsForwarded");
+    private final LongAdder suppressed = Metrics.getInstance().counter("voice.sfu.packetsSuppressed");
+    private final LongAdder elections = Metrics.getInstance().counter("voice.sfu.speakerChanges");
+
+    private static class Speaker {
+        final int userId;
+        SocketAddress address;
+        long lastSeen;
+        long lastAudio;
+        // Nivel suavizado para que un pico aislado no cambie el conjunto activo
+        int level;
+        boolean active;
+
+        Speaker(int userId) {
+            this.userId = userId;
+        }
+    }
+
+    private static class SpeakerGroup {
+        final Map<Integer, Speaker> members = new HashMap<>();
+        List<Integer> activeSpeakers = new ArrayList<>();
+        long lastElection;
+    }
+
+    public ActiveSpeakerForwarder(DatagramChannel channel, int topK) {
+        this.channel = channel;
+        this.topK = Math.max(1, topK);
+    }
+
+    @Override
+    public void start() {
+        System.out.println("Llamadas grupales en modo SFU: se reenvian los " + topK + " emisores mas fuertes");
+    }
+
+    @Override
+    public void accept(int groupId, int senderId, SocketAddress source, ByteBuffer packet, int length) {
+        if (senderId <= 0) {
+            return;
+        }
+        int lengthField = packet.getInt(DATA_LENGTH_OFFSET);
+        int codecId = lengthField >>> AudioPacket.CODEC_SHIFT;
+        int audioBytes = Math.min(lengthField & AudioPacket.LENGTH_MASK, length - VoiceRelay.HEADER_SIZE);
+        if (codecId == VoiceCodecs.COMFORT_NOISE_ID) {
+            audioBytes = 0;
+        }
+        int energy;
+        if (audioBytes <= 0) {
+            energy = 0;
+        } else if (codecId == PcmCodec.ID) {
+            energy = energy(packet, VoiceRelay.HEADER_SIZE, audioBytes);
+        } else if (codecId == MuLawCodec.ID) {
+            // Comprimido: el nivel se mide en el dominio del codec, sin copiar ni decodificar el paquete
+            energy = MuLawCodec.level(packet, VoiceRelay.HEADER_SIZE, audioBytes, SAMPLE_STRIDE);
+        } else if (codecId == ImaAdpcmCodec.ID) {
+            energy = ImaAdpcmCodec.level(packet, VoiceRelay.HEADER_SIZE, audioBytes, SAMPLE_STRIDE);
+        } else {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        SpeakerGroup group = groups.computeIfAbsent(groupId, id -> new SpeakerGroup());
+        synchronized (group) {
+            Speaker speaker = group.members.get(senderId);
+            if (speaker == null) {
+                speaker = new Speaker(senderId);
+                group.members.put(senderId, speaker);
+            }
+            speaker.address = source;
+            speaker.lastSeen = now;
+            if (audioBytes > 0) {
+                speaker.lastAudio = now;
+                speaker.level = (speaker.level * 3 + energy) / 4;
+            }
+
+            if (now - group.lastElection >= ELECTION_MILLIS) {
+                elect(groupId, group, now);
+            }
+            if (!speaker.active || audioBytes <= 0) {
+                suppressed.increment();
+                return;
+            }
+
+            // Se reenvia el datagrama original, sin copiarlo, a todos menos al emisor
+            for (Speaker member : group.members.values()) {
+                if (member == speaker || member.address == null) {
+                    continue;
+                }
+                packet.limit(length).position(0);
+                try {
+                    channel.send(packet, member.address);
+                    forwarded.increment();
+                } catch (IOException e) {
+                    System.err.println("Error reenviando audio del grupo " + groupId + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Amplitud media de PCM 16-bit big-endian sobre una muestra de cada SAMPLE_STRIDE
+    private int energy(ByteBuffer packet, int offset, int byteLength) {
+        long total = 0;
+        int count = 0;
+        for (int i = 0; i + 1 < byteLength; i += 2 * SAMPLE_STRIDE) {
+            total += Math.abs(packet.getShort(offset + i));
+            count++;
+        }
+        return count == 0 ? 0 : (int) (total / count);
+    }
+
+    private void elect(int groupId, SpeakerGroup group, long now) {
+        group.lastElection = now;
+        group.members.values().removeIf(s -> now - s.lastSeen > MEMBER_TIMEOUT_MILLIS);
+
+        List<Speaker> candidates = new ArrayList<>();
+        for (Speaker speaker : group.members.values()) {
+            speaker.active = false;
+            if (now - speaker.lastAudio <= SPEAKER_TIMEOUT_MILLIS) {
+                candidates.add(speaker);
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(b.level, a.level));
+
+        List<Integer> active = new ArrayList<>();
+        for (int i = 0; i < candidates.size() && i < topK; i++) {
+            candidates.get(i).active = true;
+            active.add(candidates.get(i).userId);
+        }
+        active.sort(null);
+        if (!active.equals(group.activeSpeakers)) {
+            group.activeSpeakers = active;
+            elections.increment();
+            System.out.println("[VOICE] Grupo " + groupId + " hablantes activos: " + active);
+        }
+    }
+
+    public List<Integer> getActiveSpeakers(int groupId) {
+        SpeakerGroup group = groups.get(groupId);
+        if (group == null) {
+            return new ArrayList<>();
+        }
+        synchronized (group) {
+            return new ArrayList<>(group.activeSpeakers);
+        }
+    }
+
+    @Override
+    public void stop() {
+        groups.clear();
+    }
+}
@@ -0,0 +1,52 @@
+package chat.server;
+
+import chat.config.ServerConfig;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Crea el ejecutor de sesiones segun server.executor.mode ("fixed" o "virtual")
+public class ExecutorFactory {
+
+    private ExecutorFactory() {
+    }
+
+    public static ExecutorService create(ServerConfig config) {
+        if (config.isVirtualThreadMode()) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                System.out.println("Ejecucion con un hilo virtual por sesion");
+                return virtual;
+            }
+            System.err.println("Hilos virtuales no disponibles (requiere Java 21), usando pool fijo");
+        }
+        System.out.println("Thread pool configurado con " + config.getThreadPoolSize() + " threads");
+        return Executors.newFixedThreadPool(config.getThreadPoolSize());
+    }
+
+    // Escritores de sockets bloqueantes: solo ocupan un hilo mientras hay datos pendientes
+    public static ExecutorService createWriters(ServerConfig config) {
+        if (config.isVirtualThreadMode()) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+        }
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "socket-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Se resuelve por reflexion para que el servidor siga compilando y corriendo en Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
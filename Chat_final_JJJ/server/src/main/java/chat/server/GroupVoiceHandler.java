@@ -0,0 +1,15 @@
+package chat.server;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+// Destino de los AudioPackets de llamadas grupales (receiverId = -groupId) en el relay por canal
+public interface GroupVoiceHandler {
+
+    void start();
+
+    // El datagrama completo ocupa [0, length) del buffer del bucle que lo recibio
+    void accept(int groupId, int senderId, SocketAddress source, ByteBuffer packet, int length);
+
+    void stop();
+}
@@ -0,0 +1,225 @@
+package chat.server;
+
+import chat.audio.SampleFifo;
+import chat.audio.codec.PcmCodec;
+import chat.audio.codec.VoiceCodec;
+import chat.audio.codec.VoiceCodecs;
+import chat.metrics.Metrics;
+import chat.model.AudioPacket;
+import chat.model.AudioPacketView;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Mezcla de llamadas grupales por UDP: los AudioPackets con receiverId = -groupId entran a la cola de
+// muestras de su emisor y en cada intervalo se suma lo de todos los que hablaron. Cada miembro recibe
+// un unico paquete con la suma menos su propia voz, asi la salida es O(N) en vez de O(N^2).
+public class GroupVoiceMixer implements GroupVoiceHandler, Runnable {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FIFO_MILLIS = 500;
+    private static final long MEMBER_TIMEOUT_MILLIS = 5000;
+
+    private final DatagramChannel channel;
+    private final int frameMillis;
+    private final int frameSamples;
+    private final Map<Integer, MixGroup> groups = new ConcurrentHashMap<>();
+
+    // Buffers del hilo de mezcla, reutilizados en cada intervalo
+    private final int[] sum;
+    private final ByteBuffer out;
+    private final AudioPacketView outView;
+    private final byte[] pcmFrame;
+
+    private final LongAdder mixedPackets = Metrics.getInstance().counter("voice.mix.packetsOut");
+    private final LongAdder clippedSamples = Metrics.getInstance().counter("voice.mix.clippedSamples");
+    private ScheduledExecutorService ticker;
+
+    private static class Member {
+        final int userId;
+        final SampleFifo fifo;
+        final int[] frame;
+        SocketAddress address;
+        // La mezcla se devuelve en el mismo codec que usa el miembro
+        int codecId;
+        long lastSeen;
+        boolean spoke;
+
+        Member(int userId, int frameSamples) {
+            this.userId = userId;
+            this.fifo = new SampleFifo(SAMPLE_RATE * FIFO_MILLIS / 1000);
+            this.frame = new int[frameSamples];
+        }
+    }
+
+    private static class MixGroup {
+        final Map<Integer, Member> members = new HashMap<>();
+        int sequence = 0;
+    }
+
+    public GroupVoiceMixer(DatagramChannel channel, int frameMillis) {
+        this.channel = channel;
+        this.frameMillis = frameMillis;
+        this.frameSamples = SAMPLE_RATE * frameMillis / 1000;
+        this.sum = new int[frameSamples];
+        this.out = ByteBuffer.allocateDirect(VoiceRelay.HEADER_SIZE + frameSamples * 2);
+        this.pcmFrame = new byte[frameSamples * 2];
+        this.outView = new AudioPacketView().wrap(out, 0, out.capacity());
+    }
+
+    @Override
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "voice-group-mixer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this, frameMillis, frameMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void accept(int groupId, int senderId, SocketAddress source, ByteBuffer packet, int length) {
+        if (senderId <= 0) {
+            return;
+        }
+        int lengthField = packet.getInt(20);
+        int codecId = lengthField >>> AudioPacket.CODEC_SHIFT;
+        int audioBytes = Math.min(lengthField & AudioPacket.LENGTH_MASK, length - VoiceRelay.HEADER_SIZE);
+        if (codecId == VoiceCodecs.COMFORT_NOISE_ID) {
+            audioBytes = 0;
+        }
+        byte[] decoded = null;
+        if (audioBytes > 0 && codecId != PcmCodec.ID) {
+            try {
+                byte[] encoded = new byte[audioBytes];
+                packet.get(VoiceRelay.HEADER_SIZE, encoded);
+                decoded = VoiceCodecs.forId(codecId).decode(encoded, 0, audioBytes);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+        }
+
+        MixGroup group = groups.computeIfAbsent(groupId, id -> new MixGroup());
+        synchronized (group) {
+            Member member = group.members.get(senderId);
+            if (member == null) {
+                member = new Member(senderId, frameSamples);
+                group.members.put(senderId, member);
+                System.out.println("Usuario " + senderId + " entro a la mezcla del grupo " + groupId);
+            }
+            member.address = source;
+            // El marcador de ruido de confort no es un codec: la mezcla sigue en el ultimo codec de audio
+            if (VoiceCodecs.isCodec(codecId)) {
+                member.codecId = codecId;
+            }
+            member.lastSeen = System.currentTimeMillis();
+
+            if (decoded != null) {
+                member.fifo.write(ByteBuffer.wrap(decoded), 0, decoded.length);
+            } else if (audioBytes > 0) {
+                member.fifo.write(packet, VoiceRelay.HEADER_SIZE, audioBytes);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Integer, MixGroup>> it = groups.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, MixGroup> entry = it.next();
+            MixGroup group = entry.getValue();
+            synchronized (group) {
+                group.members.values().removeIf(m -> now - m.lastSeen > MEMBER_TIMEOUT_MILLIS);
+                if (group.members.isEmpty()) {
+                    it.remove();
+                    continue;
+                }
+                try {
+                    mix(entry.getKey(), group, now);
+                } catch (IOException e) {
+                    System.err.println("Error enviando mezcla del grupo " + entry.getKey() + ": " + e.getMessage());
+                } catch (RuntimeException e) {
+                    // Una excepcion que escape cancela scheduleAtFixedRate y detiene todas las mezclas
+                    System.err.println("Error mezclando el grupo " + entry.getKey() + ": " + e);
+                }
+            }
+        }
+    }
+
+    private void mix(int groupId, MixGroup group, long now) throws IOException {
+        int speakers = 0;
+        Arrays.fill(sum, 0);
+        for (Member member : group.members.values()) {
+            member.spoke = member.fifo.available() > 0 && member.fifo.read(member.frame) > 0;
+            if (member.spoke) {
+                speakers++;
+                int[] frame = member.frame;
+                for (int i = 0; i < frameSamples; i++) {
+                    sum[i] += frame[i];
+                }
+            }
+        }
+        if (speakers == 0) {
+            return;
+        }
+
+        int sequence = group.sequence++;
+        for (Member member : group.members.values()) {
+            // Si solo hablo este miembro, su mezcla seria silencio
+            if (member.address == null || (member.spoke && speakers == 1)) {
+                continue;
+            }
+            int[] own = member.frame;
+            for (int i = 0; i < frameSamples; i++) {
+                short sample = clip(member.spoke ? sum[i] - own[i] : sum[i]);
+                pcmFrame[i * 2] = (byte) (sample >> 8);
+                pcmFrame[i * 2 + 1] = (byte) sample;
+            }
+            VoiceCodec codec = VoiceCodecs.forId(member.codecId);
+            byte[] payload = codec.getId() == PcmCodec.ID ? pcmFrame : codec.encode(pcmFrame, pcmFrame.length);
+
+            outView.setSenderId(0)
+                    .setReceiverId(member.userId)
+                    .setSequenceNumber(sequence)
+                    .setTimestamp(now)
+                    .setPayloadInfo(codec.getId(), payload.length);
+            out.clear();
+            out.position(VoiceRelay.HEADER_SIZE);
+            out.put(payload);
+            out.flip();
+            channel.send(out, member.address);
+            mixedPackets.increment();
+        }
+    }
+
+    // Proteccion contra saturacion: la suma de varias voces se recorta al rango de 16 bits
+    private short clip(int sample) {
+        if (sample > Short.MAX_VALUE) {
+            clippedSamples.increment();
+            return Short.MAX_VALUE;
+        }
+        if (sample < Short.MIN_VALUE) {
+            clippedSamples.increment();
+            return Short.MIN_VALUE;
+        }
+        return (short) sample;
+    }
+
+    @Override
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+}
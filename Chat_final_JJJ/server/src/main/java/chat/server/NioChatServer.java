@@ -0,0 +1,69 @@
+package chat.server;
+
+import chat.config.ServerConfig;
+import chat.controller.ChatController;
+import chat.handler.ClientRegistry;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+
+// Front end no bloqueante: un hilo acepta conexiones y las reparte entre pocos reactores.
+// Los reactores solo hacen E/S y framing; ClientHandler sigue siendo la capa de negocio.
+public class NioChatServer {
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    private final ServerConfig config;
+    private final NioReactor[] reactors;
+    private volatile boolean running = true;
+
+    public NioChatServer(ServerConfig config, ChatController controller,
+                         ClientRegistry clientRegistry, ExecutorService workers) throws IOException {
+        this.config = config;
+        this.reactors = new NioReactor[config.getNioReactorCount()];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new NioReactor(controller, clientRegistry, workers, config);
+        }
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < reactors.length; i++) {
+            Thread thread = new Thread(reactors[i], "nio-reactor-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(config.getTcpPort()), ACCEPT_BACKLOG);
+            System.out.println("Servidor TCP (NIO) iniciado en puerto " + config.getTcpPort() +
+                    " con " + reactors.length + " reactores");
+
+            int next = 0;
+            while (running) {
+                SocketChannel channel = serverChannel.accept();
+                try {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                } catch (IOException e) {
+                    System.err.println("Error configurando conexion: " + e.getMessage());
+                    channel.close();
+                    continue;
+                }
+                reactors[next].register(channel);
+                next = (next + 1) % reactors.length;
+            }
+        } finally {
+            stop();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (NioReactor reactor : reactors) {
+            reactor.stop();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package chat.server;
+
+import chat.handler.ClientConnection;
+import chat.handler.ClientHandler;
+import chat.handler.OutboundQueue;
+import chat.protocol.InboundFrame;
+import chat.protocol.PacketDecoder;
+import chat.protocol.WireFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Estado de una conexion atendida por un NioReactor.
+// Los paquetes completos se procesan en orden en el pool de workers, nunca en el hilo del reactor.
+public class NioConnection implements ClientConnection {
+    private static final int MAX_GATHER = 16;
+
+    private final SocketChannel channel;
+    private final NioReactor reactor;
+    private final Executor workers;
+    private final PacketDecoder decoder;
+    private final String remoteAddress;
+
+    private final Queue<InboundFrame> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicBoolean disconnectDelivered = new AtomicBoolean(false);
+
+    private final OutboundQueue outbound;
+    private final ByteBuffer[] inFlight = new ByteBuffer[MAX_GATHER];
+    private int inFlightCount = 0;
+    private boolean writeInterest = false;
+    private volatile boolean closed = false;
+
+    private SelectionKey key;
+    private ClientHandler handler;
+
+    public NioConnection(SocketChannel channel, NioReactor reactor, Executor workers,
+                         int maxFrameBytes, OutboundQueue outbound) {
+        this.channel = channel;
+        this.reactor = reactor;
+        this.workers = workers;
+        this.decoder = new PacketDecoder(maxFrameBytes);
+        this.outbound = outbound;
+        this.remoteAddress = describe(channel);
+    }
+
+    void attach(SelectionKey key, ClientHandler handler) {
+        this.key = key;
+        this.handler = handler;
+    }
+
+    // Llamado por el hilo del reactor cuando el canal tiene datos
+    void handleRead(ByteBuffer readBuffer) {
+        try {
+            readBuffer.clear();
+            int n = channel.read(readBuffer);
+            if (n < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            if (!decoder.feed(readBuffer, inbox::add)) {
+                System.err.println("Paquete demasiado grande desde " + remoteAddress + ", cerrando conexion");
+                close();
+                return;
+            }
+            if (!inbox.isEmpty()) {
+                schedule();
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    // Llamado por el hilo del reactor cuando el canal acepta mas escritura
+    void handleWrite() {
+        synchronized (outbound) {
+            try {
+                if (flush()) {
+                    writeInterest = false;
+                    if (key.isValid()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer frame, boolean droppable) {
+        synchronized (outbound) {
+            if (closed) {
+                return;
+            }
+            OutboundQueue.Offer offer = outbound.offer(frame.duplicate(), droppable);
+            if (offer == OutboundQueue.Offer.OVERFLOW) {
+                System.err.println("Cliente lento " + remoteAddress + ", cerrando conexion");
+            } else if (offer == OutboundQueue.Offer.DROPPED || writeInterest) {
+                return;
+            } else {
+                try {
+                    // Escritura directa desde el llamador; lo que no quepa lo termina el reactor
+                    if (!flush()) {
+                        writeInterest = true;
+                        reactor.enableWrite(key);
+                    }
+                    return;
+                } catch (IOException e) {
+                    // cerrar abajo
+                }
+            }
+        }
+        close();
+    }
+
+    @Override
+    public void write(ByteBuffer[] parts, boolean droppable) {
+        synchronized (outbound) {
+            if (closed) {
+                return;
+            }
+            OutboundQueue.Offer offer = OutboundQueue.Offer.ENQUEUED;
+            for (int i = 0; i < parts.length && offer == OutboundQueue.Offer.ENQUEUED; i++) {
+                offer = outbound.offer(parts[i].duplicate(), droppable);
+            }
+            if (offer != OutboundQueue.Offer.ENQUEUED) {
+                // Un frame a medias desincroniza al cliente: se corta la conexion
+                System.err.println("No se pudo encolar el frame completo para " + remoteAddress + ", cerrando conexion");
+            } else if (writeInterest) {
+                return;
+            } else {
+                try {
+                    // Los buffers mapeados se escriben directo desde la cache de paginas, sin copia al heap
+                    if (!flush()) {
+                        writeInterest = true;
+                        reactor.enableWrite(key);
+                    }
+                    return;
+                } catch (IOException e) {
+                    // cerrar abajo
+                }
+            }
+        }
+        close();
+    }
+
+    // Escritura gather de varios frames por syscall; retorna true si no queda nada pendiente
+    private boolean flush() throws IOException {
+        while (true) {
+            while (inFlightCount < MAX_GATHER) {
+                ByteBuffer next = outbound.poll();
+                if (next == null) {
+                    break;
+                }
+                inFlight[inFlightCount++] = next;
+            }
+            if (inFlightCount == 0) {
+                return true;
+            }
+
+            channel.write(inFlight, 0, inFlightCount);
+
+            int done = 0;
+            while (done < inFlightCount && !inFlight[done].hasRemaining()) {
+                done++;
+            }
+            System.arraycopy(inFlight, done, inFlight, 0, inFlightCount - done);
+            for (int i = inFlightCount - done; i < inFlightCount; i++) {
+                inFlight[i] = null;
+            }
+            inFlightCount -= done;
+
+            if (inFlightCount > 0) {
+                return false;
+            }
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            workers.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            InboundFrame frame;
+            while ((frame = inbox.poll()) != null) {
+                try {
+                    handler.onPacket(frame.decode());
+                } catch (IOException e) {
+                    // Frame mal formado: se cierra como el servidor bloqueante
+                    System.err.println("Frame invalido de " + remoteAddress + ": " + e.getMessage());
+                    inbox.clear();
+                    close();
+                } catch (Exception e) {
+                    System.err.println("Error procesando paquete de " + remoteAddress + ": " + e.getMessage());
+                }
+            }
+
+            if (closed && disconnectDelivered.compareAndSet(false, true)) {
+                handler.onDisconnect();
+            }
+
+            scheduled.set(false);
+            boolean pendingWork = !inbox.isEmpty() || (closed && !disconnectDelivered.get());
+            if (!pendingWork || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (outbound) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            outbound.clear();
+            inFlightCount = 0;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        schedule();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public WireFormat getWireFormat() {
+        return decoder.getFormat();
+    }
+
+    private static String describe(SocketChannel channel) {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "desconocido";
+        }
+    }
+}
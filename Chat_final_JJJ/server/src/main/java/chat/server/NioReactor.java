@@ -0,0 +1,119 @@
+package chat.server;
+
+import chat.config.ServerConfig;
+import chat.controller.ChatController;
+import chat.handler.ClientHandler;
+import chat.handler.ClientRegistry;
+import chat.handler.OutboundQueue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+// Hilo de E/S: un Selector que atiende muchas conexiones sin bloquear
+public class NioReactor implements Runnable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private final ChatController controller;
+    private final ClientRegistry clientRegistry;
+    private final Executor workers;
+    private final ServerConfig config;
+    private volatile boolean running = true;
+
+    public NioReactor(ChatController controller, ClientRegistry clientRegistry,
+                      Executor workers, ServerConfig config) throws IOException {
+        this.selector = Selector.open();
+        this.controller = controller;
+        this.clientRegistry = clientRegistry;
+        this.workers = workers;
+        this.config = config;
+    }
+
+    public void register(SocketChannel channel) {
+        pendingTasks.add(() -> {
+            try {
+                NioConnection connection = new NioConnection(channel, this, workers,
+                        config.getMaxFrameBytes(), OutboundQueue.create(config));
+                ClientHandler handler = new ClientHandler(connection, controller, clientRegistry);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.attach(key, handler);
+            } catch (IOException e) {
+                System.err.println("Error registrando conexion: " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        selector.wakeup();
+    }
+
+    void enableWrite(SelectionKey key) {
+        pendingTasks.add(() -> {
+            if (key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        });
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                runPendingTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.handleRead(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.handleWrite();
+                        }
+                    } catch (CancelledKeyException e) {
+                        connection.close();
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error en reactor NIO: " + e.getMessage());
+                }
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+}
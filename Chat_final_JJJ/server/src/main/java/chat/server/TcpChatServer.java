@@ -5,6 +5,7 @@ import chat.config.DatabaseConfig;
 import chat.controller.ChatController;
 import chat.handler.ClientHandler;
 import chat.handler.ClientRegistry;
+import chat.metrics.Metrics;
 import chat.repository.*;
 import chat.repository.impl.*;
 import chat.service.*;
@@ -13,38 +14,89 @@ import chat.service.impl.*;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Paths;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class TcpChatServer {
     private final ServerConfig config;
     private final ExecutorService threadPool;
+    private final ExecutorService writerPool;
     private final ChatController controller;
     private final ClientRegistry clientRegistry;
     private final DatabaseConfig dbConfig;
+    private final EmbeddedStore embeddedStore;
+    private final MessageWriteBehind messageWriteBehind;
+    private final MappedVoiceNoteRepository voiceNoteRepository;
+    private final PresenceServiceImpl presenceService;
     
     public TcpChatServer() {
         this.config = ServerConfig.getInstance();
-        this.threadPool = Executors.newFixedThreadPool(config.getThreadPoolSize());
+        this.threadPool = ExecutorFactory.create(config);
+        this.writerPool = ExecutorFactory.createWriters(config);
         
-        this.dbConfig = DatabaseConfig.getInstance();
+        UserRepository userRepository;
+        MessageRepository messageRepository;
+        GroupRepository groupRepository;
+        CallRepository callRepository;
+        DeliveryCursorRepository cursorRepository;
+        if (config.isEmbeddedStorage()) {
+            // Sin PostgreSQL: pruebas de carga y despliegues de un solo nodo; durable agrega WAL en disco
+            this.dbConfig = null;
+            this.embeddedStore = openEmbeddedStore();
+            userRepository = embeddedStore.getUserRepository();
+            messageRepository = embeddedStore.getMessageRepository();
+            groupRepository = embeddedStore.getGroupRepository();
+            callRepository = embeddedStore.getCallRepository();
+            cursorRepository = embeddedStore.getCursorRepository();
+        } else {
+            this.dbConfig = DatabaseConfig.getInstance();
+            this.embeddedStore = null;
+            userRepository = new CachingUserRepository(new PostgresUserRepository(),
+                    config.getUserCacheMaxUsers());
+            messageRepository = new PostgresMessageRepository();
+            groupRepository = new PostgresGroupRepository();
+            callRepository = new PostgresCallRepository();
+            cursorRepository = new PostgresDeliveryCursorRepository();
+        }
+        try {
+            this.voiceNoteRepository = new MappedVoiceNoteRepository(Paths.get(config.getVoiceNoteDir()),
+                    config.getVoiceNoteSegmentBytes());
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo abrir el almacen de notas de voz: " + e.getMessage(), e);
+        }
+        GroupMembershipCache membershipCache = new GroupMembershipCache(groupRepository,
+                config.getGroupCacheMaxGroups(), config.getGroupCacheTtlSeconds() * 1000L);
         
-        UserRepository userRepository = new PostgresUserRepository();
-        MessageRepository messageRepository = new PostgresMessageRepository();
-        GroupRepository groupRepository = new PostgresGroupRepository();
-        CallRepository callRepository = new PostgresCallRepository();
+        if (config.isMessageWriteBehind()) {
+            this.messageWriteBehind = new MessageWriteBehind(messageRepository, config.getMessageBatchSize(),
+                    config.getMessageFlushMillis(), config.getMessageMaxPending());
+            System.out.println("Escritura diferida de mensajes activada (lotes de " + config.getMessageBatchSize() +
+                    ", " + config.getMessageFlushMillis() + " ms)");
+        } else {
+            this.messageWriteBehind = null;
+        }
+        if (messageWriteBehind != null || embeddedStore != null) {
+            // Ctrl+C no pasa por el finally de start(): vaciar lo pendiente al salir
+            Runtime.getRuntime().addShutdownHook(new Thread(this::closeStorage, "storage-shutdown"));
+        }
         
         // Inicializar servicios
-        UserService userService = new UserServiceImpl(userRepository);
-        MessageService messageService = new MessageServiceImpl(messageRepository);
-        GroupService groupService = new GroupServiceImpl(groupRepository);
+        UserDirectoryService directoryService = new UserDirectoryServiceImpl(userRepository);
+        UserService userService = new UserServiceImpl(userRepository, directoryService);
+        MessageService messageService = new MessageServiceImpl(messageRepository, messageWriteBehind, voiceNoteRepository,
+                cursorRepository);
+        GroupService groupService = new GroupServiceImpl(groupRepository, membershipCache);
         CallService callService = new CallServiceImpl(callRepository);
+        this.presenceService = new PresenceServiceImpl(userRepository, directoryService, config.getPresenceFlushMillis());
+        Runtime.getRuntime().addShutdownHook(new Thread(presenceService::close, "presence-shutdown"));
         
         // Inicializar controlador
-        this.controller = new ChatController(userService, messageService, groupService, callService);
+        this.controller = new ChatController(userService, messageService, groupService, callService, presenceService,
+                directoryService);
         
         // Inicializar registro de clientes
-        this.clientRegistry = new ClientRegistry(groupRepository);
+        this.clientRegistry = new ClientRegistry(membershipCache, presenceService);
     }
     
     public void start() {
@@ -53,24 +105,62 @@ public class TcpChatServer {
         System.out.println("========================================");
         System.out.println();
         
+        Metrics metrics = Metrics.getInstance();
+        metrics.gauge("jvm.threads", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        metrics.startReporter(config.getMetricsIntervalSeconds());
+        
         try {
+            if (config.isNioMode()) {
+                new NioChatServer(config, controller, clientRegistry, threadPool).start();
+                return;
+            }
+            
             int port = config.getTcpPort();
             ServerSocket serverSocket = new ServerSocket(port);
             System.out.println("Servidor TCP iniciado en puerto " + port);
-            System.out.println("Almacenamiento PostgreSQL inicializado");
-            System.out.println("Thread pool configurado con " + config.getThreadPoolSize() + " threads");
+            System.out.println(config.isDurableStorage() ? "Almacenamiento embebido durable (WAL) inicializado"
+                    : config.isEmbeddedStorage() ? "Almacenamiento embebido inicializado"
+                    : "Almacenamiento PostgreSQL inicializado");
             System.out.println("Esperando conexiones...\n");
             
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                ClientHandler handler = new ClientHandler(clientSocket, controller, clientRegistry);
+                ClientHandler handler = new ClientHandler(clientSocket, controller, clientRegistry, writerPool);
                 threadPool.execute(handler);
             }
         } catch (IOException e) {
             System.err.println("Error en el servidor: " + e.getMessage());
         } finally {
             threadPool.shutdown();
-            dbConfig.close();
+            writerPool.shutdown();
+            closeStorage();
+            voiceNoteRepository.close();
+            presenceService.close();
+            if (dbConfig != null) {
+                dbConfig.close();
+            }
+        }
+    }
+    
+    private EmbeddedStore openEmbeddedStore() {
+        if (!config.isDurableStorage()) {
+            return new EmbeddedStore();
+        }
+        try {
+            return new EmbeddedStore(Paths.get(config.getWalDir()), config.getWalSegmentBytes(),
+                    config.isWalSyncPerBatch(), config.getWalSyncMillis(), config.getWalSnapshotSeconds());
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo recuperar el almacen embebido: " + e.getMessage(), e);
+        }
+    }
+    
+    // Primero los mensajes diferidos, que todavia se escriben en el WAL; despues el WAL
+    private synchronized void closeStorage() {
+        if (messageWriteBehind != null) {
+            messageWriteBehind.close();
+        }
+        if (embeddedStore != null) {
+            embeddedStore.close();
         }
     }
     
@@ -0,0 +1,96 @@
+package chat.server;
+
+import chat.metrics.Metrics;
+import chat.model.AudioPacketView;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+// Relay de voz sobre DatagramChannel: el mismo hilo recibe, lee la cabecera de AudioPacket en el
+// buffer directo sin decodificarla y reenvia ese mismo buffer al destinatario. No hay copias, ni
+// DatagramPacket, ni paso a otro hilo; el unico buffer del bucle se reutiliza en cada datagrama.
+public class VoiceRelay implements Runnable {
+    // Cabecera de AudioPacket: senderId, receiverId, seq, timestamp (long), dataLength
+    public static final int HEADER_SIZE = AudioPacketView.HEADER_SIZE;
+    private static final int MAX_DATAGRAM = 65507;
+
+    private final DatagramChannel channel;
+    private final VoiceRoutes routes;
+    private final GroupVoiceHandler groupHandler;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private final AudioPacketView view = new AudioPacketView();
+    private final LongAdder packetsIn;
+    private final LongAdder packetsForwarded;
+    private final LongAdder packetsDropped;
+    private volatile boolean running = true;
+
+    public VoiceRelay(DatagramChannel channel, VoiceRoutes routes, GroupVoiceHandler groupHandler) {
+        this.channel = channel;
+        this.routes = routes;
+        this.groupHandler = groupHandler;
+        Metrics metrics = Metrics.getInstance();
+        this.packetsIn = metrics.counter("voice.packetsIn");
+        this.packetsForwarded = metrics.counter("voice.packetsForwarded");
+        this.packetsDropped = metrics.counter("voice.packetsDropped");
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                buffer.clear();
+                SocketAddress source = channel.receive(buffer);
+                if (source == null) {
+                    continue;
+                }
+                packetsIn.increment();
+                if (buffer.position() < HEADER_SIZE) {
+                    packetsDropped.increment();
+                    continue;
+                }
+
+                view.wrap(buffer, 0, buffer.position());
+                int senderId = view.getSenderId();
+                int receiverId = view.getReceiverId();
+                routes.update(senderId, source);
+
+                // receiverId 0 = paquete de registro; negativo = llamada grupal (-groupId)
+                if (receiverId == 0) {
+                    continue;
+                }
+                if (receiverId < 0) {
+                    groupHandler.accept(-receiverId, senderId, source, buffer, buffer.position());
+                    continue;
+                }
+                SocketAddress target = routes.get(receiverId);
+                if (target == null) {
+                    packetsDropped.increment();
+                    continue;
+                }
+
+                buffer.flip();
+                channel.send(buffer, target);
+                packetsForwarded.increment();
+
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error en relay de voz: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package chat.server;
+
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Direccion UDP por userId indexada directamente en un arreglo: sin boxing ni Map.Entry por paquete.
+// Los ids de usuario son secuenciales, asi que el arreglo crece poco; ids absurdos se ignoran.
+public class VoiceRoutes {
+    private static final int MAX_USER_ID = 1 << 20;
+
+    private volatile AtomicReferenceArray<SocketAddress> table = new AtomicReferenceArray<>(1024);
+
+    public SocketAddress get(int userId) {
+        AtomicReferenceArray<SocketAddress> current = table;
+        return userId > 0 && userId < current.length() ? current.get(userId) : null;
+    }
+
+    // Camino rapido sin lock cuando la direccion no cambio (caso de casi todos los paquetes)
+    public void update(int userId, SocketAddress address) {
+        if (userId <= 0 || userId >= MAX_USER_ID) {
+            return;
+        }
+        AtomicReferenceArray<SocketAddress> current = table;
+        if (userId < current.length() && address.equals(current.get(userId))) {
+            return;
+        }
+        synchronized (this) {
+            current = table;
+            if (userId >= current.length()) {
+                int length = current.length();
+                while (length <= userId) {
+                    length *= 2;
+                }
+                AtomicReferenceArray<SocketAddress> grown = new AtomicReferenceArray<>(length);
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                table = grown;
+                current = grown;
+            }
+            current.set(userId, address);
+        }
+    }
+}
@@ -1,28 +1,48 @@
 package chat.server;
 
 import chat.config.ServerConfig;
-import chat.model.AudioPacket;
+import chat.metrics.Metrics;
+import chat.model.AudioPacketView;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class VoiceServer implements Runnable {
     private final ServerConfig config;
     private DatagramSocket socket;
-    private boolean running = true;
+    // Modo channel: un socket por bucle de recepcion, todos en el mismo puerto
+    private final List<DatagramChannel> channels = new ArrayList<>();
+    private final List<VoiceRelay> relays = new CopyOnWriteArrayList<>();
+    private GroupVoiceHandler groupHandler;
+    private volatile boolean running = true;
+
+    private final LongAdder packetsIn = Metrics.getInstance().counter("voice.packetsIn");
+    private final LongAdder packetsForwarded = Metrics.getInstance().counter("voice.packetsForwarded");
+    private final LongAdder packetsDropped = Metrics.getInstance().counter("voice.packetsDropped");
 
     private static final int BUFFER_SIZE = 10240 + 24; // Audio buffer + header size
     private static final Map<Integer, InetSocketAddress> activeVoiceClients = new ConcurrentHashMap<>();
     private final ExecutorService threadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
 
-    public VoiceServer() throws SocketException {
+    public VoiceServer() throws IOException {
         this.config = ServerConfig.getInstance();
-        this.socket = new DatagramSocket(config.getUdpPort());
-        this.socket.setSoTimeout(20);
+        if (config.isVoiceChannelMode()) {
+            openChannels(Math.max(1, config.getVoiceReactorCount()));
+        } else {
+            this.socket = new DatagramSocket(config.getUdpPort());
+            this.socket.setSoTimeout(20);
+        }
     }
 
     public static void main(String[] args) {
@@ -36,7 +56,7 @@ public class VoiceServer implements Runnable {
 
             server.run();
 
-        } catch (SocketException e) {
+        } catch (IOException e) {
             System.err.println("Error al iniciar servidor de voz: " + e.getMessage());
             e.printStackTrace();
         }
@@ -44,6 +64,13 @@ public class VoiceServer implements Runnable {
 
     @Override
     public void run() {
+        startRateReporter(config.getMetricsIntervalSeconds());
+
+        if (!channels.isEmpty()) {
+            runRelays();
+            return;
+        }
+
         System.out.println("=== Servidor de voz UDP iniciado en puerto " + config.getUdpPort() + " ===");
 
         byte[] buffer = new byte[BUFFER_SIZE];
@@ -52,6 +79,7 @@ public class VoiceServer implements Runnable {
             try {
                 DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                 socket.receive(packet);
+                packetsIn.increment();
 
                 byte[] packetData = new byte[packet.getLength()];
                 System.arraycopy(packet.getData(), 0, packetData, 0, packet.getLength());
@@ -77,10 +105,15 @@ public class VoiceServer implements Runnable {
 
     private void handleAudioPacket(byte[] packetData, InetAddress senderAddress, int senderPort) {
         try {
-            AudioPacket audioPacket = AudioPacket.fromBytes(packetData);
+            // Solo se lee la cabecera: el paquete se reenvia tal cual sin decodificar el audio
+            AudioPacketView view = new AudioPacketView().wrap(packetData, 0, packetData.length);
+            if (!view.isValid()) {
+                packetsDropped.increment();
+                return;
+            }
 
-            int senderId = audioPacket.getSenderId();
-            int receiverId = audioPacket.getReceiverId();
+            int senderId = view.getSenderId();
+            int receiverId = view.getReceiverId();
 
             activeVoiceClients.put(senderId, new InetSocketAddress(senderAddress, senderPort));
 
@@ -89,7 +122,9 @@ public class VoiceServer implements Runnable {
             }
 
             InetSocketAddress receiverAddress = activeVoiceClients.get(receiverId);
-            if (receiverAddress != null) {
+            if (receiverAddress == null) {
+                packetsDropped.increment();
+            } else {
                 DatagramPacket forwardPacket = new DatagramPacket(
                         packetData,
                         packetData.length,
@@ -97,6 +132,7 @@ public class VoiceServer implements Runnable {
                         receiverAddress.getPort()
                 );
                 socket.send(forwardPacket);
+                packetsForwarded.increment();
             }
 
         } catch (Exception e) {
@@ -104,7 +140,94 @@ public class VoiceServer implements Runnable {
         }
     }
 
+    // Con SO_REUSEPORT el kernel reparte los datagramas entre los sockets por hash de la direccion de
+    // origen, asi cada cliente cae siempre en el mismo bucle. Sin soporte se comparte un solo socket.
+    private void openChannels(int count) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(config.getUdpPort());
+        for (int i = 0; i < count; i++) {
+            DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                channel.close();
+                break;
+            }
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            channel.bind(address);
+            channels.add(channel);
+        }
+        if (channels.isEmpty()) {
+            System.out.println("SO_REUSEPORT no disponible: " + count + " bucles compartiran un socket");
+            DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            channel.bind(address);
+            for (int i = 0; i < count; i++) {
+                channels.add(channel);
+            }
+        }
+    }
+
+    private void runRelays() {
+        System.out.println("=== Servidor de voz UDP (relay DatagramChannel) iniciado en puerto " + config.getUdpPort() +
+                " con " + channels.size() + " bucles ===");
+
+        // El estado de rutas es compartido: un cliente puede enviar por un socket y recibir por otro
+        VoiceRoutes routes = new VoiceRoutes();
+        if (config.isVoiceSfuMode()) {
+            groupHandler = new ActiveSpeakerForwarder(channels.get(0), config.getVoiceSfuTopK());
+        } else {
+            groupHandler = new GroupVoiceMixer(channels.get(0), config.getVoiceMixFrameMillis());
+        }
+        groupHandler.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < channels.size(); i++) {
+            VoiceRelay relay = new VoiceRelay(channels.get(i), routes, groupHandler);
+            relays.add(relay);
+            Thread thread = new Thread(relay, "voice-relay-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        System.out.println("Servidor de voz UDP detenido");
+    }
+
+    // Paquetes por segundo del servidor de voz, para comparar los modos bajo la misma carga
+    private void startRateReporter(int intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        String mode = channels.isEmpty() ? "legacy" : "channel x" + channels.size();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "voice-rate-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] last = {0, 0};
+        reporter.scheduleAtFixedRate(() -> {
+            long in = packetsIn.sum();
+            long forwarded = packetsForwarded.sum();
+            System.out.println("[VOICE] modo=" + mode +
+                    " recibidos/s=" + (in - last[0]) / intervalSeconds +
+                    " reenviados/s=" + (forwarded - last[1]) / intervalSeconds +
+                    " descartados=" + packetsDropped.sum());
+            last[0] = in;
+            last[1] = forwarded;
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
     public void stop() {
         running = false;
+        for (VoiceRelay relay : relays) {
+            relay.stop();
+        }
+        if (groupHandler != null) {
+            groupHandler.stop();
+        }
     }
 }
\ No newline at end of file
@@ -1,12 +1,21 @@
 package chat.service;
 
 import chat.model.Message;
+import chat.model.MessagePage;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public interface MessageService {
     Message sendPrivateMessage(int senderId, String senderUsername, int receiverId, String content);
     Message sendGroupMessage(int senderId, String senderUsername, int groupId, String content);
-    Message sendVoiceNote(int senderId, String senderUsername, int receiverId, int groupId, int duration);
+    Message sendVoiceNote(int senderId, String senderUsername, int receiverId, int groupId, int duration, long voiceNoteId);
+    long storeVoiceNoteAudio(long previousId, byte[] audio);
+    Message getVoiceNoteMessage(long voiceNoteId);
+    ByteBuffer[] getVoiceNoteAudio(long voiceNoteId);
     List<Message> getChatHistory(int userId1, int userId2);
     List<Message> getGroupMessages(int groupId);
+    MessagePage getChatHistoryPage(int userId1, int userId2, Integer beforeId, Integer afterId, int limit);
+    MessagePage getGroupMessagesPage(int groupId, Integer beforeId, Integer afterId, int limit);
+    MessagePage getUndelivered(int userId, Integer afterId, int limit);
+    void acknowledgeDelivery(int userId, int messageId);
 }
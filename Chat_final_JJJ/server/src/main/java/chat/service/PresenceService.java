@@ -0,0 +1,16 @@
+package chat.service;
+
+import chat.model.User;
+import chat.model.UserStatus;
+import java.util.List;
+
+public interface PresenceService {
+    int MAX_STATUS_LENGTH = 140;
+
+    void connected(int userId);
+    void disconnected(int userId);
+    UserStatus getStatus(int userId);
+    void updateStatus(int userId, String status);
+    // Reemplaza online/lastSeen/status de usuarios leidos de la base por el estado en memoria
+    void apply(List<User> users);
+}
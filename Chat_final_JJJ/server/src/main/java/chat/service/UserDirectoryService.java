@@ -0,0 +1,15 @@
+package chat.service;
+
+import chat.model.User;
+import chat.model.UserDirectoryDelta;
+import java.util.List;
+
+// Directorio de usuarios en memoria con version: cada alta o cambio de presencia la incrementa
+public interface UserDirectoryService {
+    void userChanged(User user);
+    void touch(int userId);
+    long getVersion();
+    // Copias sin presencia aplicada; el llamador las completa con PresenceService.apply
+    List<User> getAllUsers();
+    UserDirectoryDelta getChangesSince(long version);
+}
@@ -2,22 +2,27 @@ package chat.service.impl;
 
 import chat.model.Group;
 import chat.repository.GroupRepository;
+import chat.repository.impl.GroupMembershipCache;
 import chat.service.GroupService;
 
 import java.util.List;
 
 public class GroupServiceImpl implements GroupService {
     private final GroupRepository groupRepository;
+    private final GroupMembershipCache membershipCache;
     
-    public GroupServiceImpl(GroupRepository groupRepository) {
+    public GroupServiceImpl(GroupRepository groupRepository, GroupMembershipCache membershipCache) {
         this.groupRepository = groupRepository;
+        this.membershipCache = membershipCache;
     }
     
     @Override
     public Group createGroup(String name, int creatorId) {
         Group group = new Group(0, name, creatorId);
         group.getMemberIds().add(creatorId);
-        return groupRepository.save(group);
+        Group saved = groupRepository.save(group);
+        membershipCache.onGroupCreated(saved);
+        return saved;
     }
     
     @Override
@@ -27,10 +32,12 @@ public class GroupServiceImpl implements GroupService {
     
     @Override
     public void addMemberToGroup(int groupId, int userId) throws Exception {
-        Group group = groupRepository.findById(groupId)
-            .orElseThrow(() -> new Exception("Grupo no encontrado"));
+        if (membershipCache.getMembers(groupId) == null) {
+            throw new Exception("Grupo no encontrado");
+        }
         
         groupRepository.addMember(groupId, userId);
+        membershipCache.onMemberAdded(groupId, userId);
     }
     
     @Override
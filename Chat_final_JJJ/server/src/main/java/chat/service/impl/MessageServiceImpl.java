@@ -1,16 +1,42 @@
 package chat.service.impl;
 
 import chat.model.Message;
+import chat.model.MessagePage;
+import chat.repository.DeliveryCursorRepository;
 import chat.repository.MessageRepository;
+import chat.repository.VoiceNoteRepository;
 import chat.service.MessageService;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
 
 public class MessageServiceImpl implements MessageService {
+    // Espera maxima de la bandeja por el lote en curso antes de entregar solo lo anterior a el
+    private static final long INBOX_FLUSH_WAIT_MILLIS = 2000;
+    
     private final MessageRepository messageRepository;
+    // null = cada mensaje se inserta antes de entregarse
+    private final MessageWriteBehind writeBehind;
+    private final VoiceNoteRepository voiceNoteRepository;
+    private final DeliveryCursorRepository cursorRepository;
+    
+    public MessageServiceImpl(MessageRepository messageRepository, VoiceNoteRepository voiceNoteRepository,
+                              DeliveryCursorRepository cursorRepository) {
+        this(messageRepository, null, voiceNoteRepository, cursorRepository);
+    }
     
-    public MessageServiceImpl(MessageRepository messageRepository) {
+    public MessageServiceImpl(MessageRepository messageRepository, MessageWriteBehind writeBehind,
+                              VoiceNoteRepository voiceNoteRepository, DeliveryCursorRepository cursorRepository) {
         this.messageRepository = messageRepository;
+        this.writeBehind = writeBehind;
+        this.voiceNoteRepository = voiceNoteRepository;
+        this.cursorRepository = cursorRepository;
     }
     
     @Override
@@ -18,7 +44,7 @@ public class MessageServiceImpl implements MessageService {
         Message message = new Message(senderId, senderUsername, content);
         message.setReceiverId(receiverId);
         message.setType(Message.MessageType.TEXT);
-        return messageRepository.save(message);
+        return persist(message);
     }
     
     @Override
@@ -26,14 +52,15 @@ public class MessageServiceImpl implements MessageService {
         Message message = new Message(senderId, senderUsername, content);
         message.setGroupId(groupId);
         message.setType(Message.MessageType.TEXT);
-        return messageRepository.save(message);
+        return persist(message);
     }
     
     @Override
-    public Message sendVoiceNote(int senderId, String senderUsername, int receiverId, int groupId, int duration) {
+    public Message sendVoiceNote(int senderId, String senderUsername, int receiverId, int groupId, int duration, long voiceNoteId) {
         String content = "Nota de voz (" + duration + " segundos)";
         Message message = new Message(senderId, senderUsername, content);
         message.setType(Message.MessageType.AUDIO);
+        message.setVoiceNoteId(voiceNoteId);
         
         if (groupId > 0) {
             message.setGroupId(groupId);
@@ -41,16 +68,135 @@ public class MessageServiceImpl implements MessageService {
             message.setReceiverId(receiverId);
         }
         
-        return messageRepository.save(message);
+        return persist(message);
+    }
+    
+    // El audio va al almacen de segmentos; el mensaje solo guarda el id del ultimo fragmento
+    @Override
+    public long storeVoiceNoteAudio(long previousId, byte[] audio) {
+        return voiceNoteRepository.append(previousId, audio, 0, audio.length);
+    }
+    
+    @Override
+    public Message getVoiceNoteMessage(long voiceNoteId) {
+        List<Message> pending = pendingMatching(m -> m.getVoiceNoteId() != null && m.getVoiceNoteId() == voiceNoteId);
+        return !pending.isEmpty() ? pending.get(0) : messageRepository.findByVoiceNoteId(voiceNoteId);
+    }
+    
+    @Override
+    public ByteBuffer[] getVoiceNoteAudio(long voiceNoteId) {
+        return voiceNoteRepository.find(voiceNoteId);
     }
     
     @Override
     public List<Message> getChatHistory(int userId1, int userId2) {
-        return messageRepository.findByUsers(userId1, userId2);
+        List<Message> pending = pendingMatching(between(userId1, userId2));
+        return merge(messageRepository.findByUsers(userId1, userId2), pending,
+                Comparator.comparing(Message::getTimestamp));
     }
     
     @Override
     public List<Message> getGroupMessages(int groupId) {
-        return messageRepository.findByGroupId(groupId);
+        List<Message> pending = pendingMatching(inGroup(groupId));
+        return merge(messageRepository.findByGroupId(groupId), pending,
+                Comparator.comparing(Message::getTimestamp));
+    }
+    
+    @Override
+    public MessagePage getChatHistoryPage(int userId1, int userId2, Integer beforeId, Integer afterId, int limit) {
+        List<Message> pending = pendingMatching(between(userId1, userId2).and(inRange(beforeId, afterId)));
+        List<Message> messages = messageRepository.findPageByUsers(userId1, userId2, beforeId, afterId, limit + 1);
+        return toPage(merge(messages, pending, Comparator.comparingInt(Message::getId)), afterId != null, limit);
+    }
+    
+    @Override
+    public MessagePage getGroupMessagesPage(int groupId, Integer beforeId, Integer afterId, int limit) {
+        List<Message> pending = pendingMatching(inGroup(groupId).and(inRange(beforeId, afterId)));
+        List<Message> messages = messageRepository.findPageByGroupId(groupId, beforeId, afterId, limit + 1);
+        return toPage(merge(messages, pending, Comparator.comparingInt(Message::getId)), afterId != null, limit);
+    }
+    
+    // afterId null = desde el cursor confirmado; los siguientes lotes pasan el ultimo id entregado.
+    // La bandeja depende de la membresia a grupos, que solo conoce la base: en vez de combinar lo
+    // pendiente se espera al lote en curso y, si no alcanza, se corta antes del primer id sin
+    // persistir para que el cursor no lo salte. Lo cortado llega en vivo o en el proximo login.
+    @Override
+    public MessagePage getUndelivered(int userId, Integer afterId, int limit) {
+        Integer barrier = null;
+        if (writeBehind != null && !writeBehind.flush(INBOX_FLUSH_WAIT_MILLIS)) {
+            barrier = writeBehind.oldestPendingId();
+        }
+        int from = afterId != null ? afterId : cursorRepository.getLastDelivered(userId);
+        List<Message> messages = messageRepository.findInbox(userId, from, limit + 1);
+        if (barrier != null) {
+            List<Message> persisted = new ArrayList<>();
+            for (Message message : messages) {
+                if (message.getId() < barrier) {
+                    persisted.add(message);
+                }
+            }
+            if (persisted.size() < messages.size()) {
+                return new MessagePage(new ArrayList<>(persisted.subList(0, Math.min(limit, persisted.size()))), false);
+            }
+        }
+        return toPage(messages, true, limit);
+    }
+    
+    @Override
+    public void acknowledgeDelivery(int userId, int messageId) {
+        cursorRepository.advance(userId, messageId);
+    }
+    
+    private Message persist(Message message) {
+        return writeBehind != null ? writeBehind.submit(message) : messageRepository.save(message);
+    }
+    
+    // El historial debe incluir lo ya confirmado al cliente aunque siga en el lote pendiente.
+    // Se toma antes de consultar la base para no perder lo que se escriba entre medio.
+    private List<Message> pendingMatching(Predicate<Message> filter) {
+        return writeBehind != null ? writeBehind.pendingMatching(filter) : new ArrayList<>();
+    }
+    
+    private static Predicate<Message> between(int userId1, int userId2) {
+        return m -> m.getReceiverId() != null &&
+                ((m.getSenderId() == userId1 && m.getReceiverId() == userId2) ||
+                 (m.getSenderId() == userId2 && m.getReceiverId() == userId1));
+    }
+    
+    private static Predicate<Message> inGroup(int groupId) {
+        return m -> Objects.equals(m.getGroupId(), groupId);
+    }
+    
+    private static Predicate<Message> inRange(Integer beforeId, Integer afterId) {
+        return m -> (beforeId == null || m.getId() < beforeId) && (afterId == null || m.getId() > afterId);
+    }
+    
+    // Lo escrito entre la foto de pendientes y la consulta aparece en ambas: se deduplica por id.
+    // En paginas el recorte a limit + 1 lo hace toPage por el extremo que corresponde.
+    private static List<Message> merge(List<Message> persisted, List<Message> pending, Comparator<Message> order) {
+        if (pending.isEmpty()) {
+            return persisted;
+        }
+        Map<Integer, Message> byId = new LinkedHashMap<>();
+        for (Message message : persisted) {
+            byId.put(message.getId(), message);
+        }
+        for (Message message : pending) {
+            byId.putIfAbsent(message.getId(), message);
+        }
+        List<Message> merged = new ArrayList<>(byId.values());
+        merged.sort(order.thenComparingInt(Message::getId));
+        return merged;
+    }
+    
+    // Se pide un mensaje de mas para saber si hay otra pagina sin hacer un COUNT
+    private MessagePage toPage(List<Message> messages, boolean forward, int limit) {
+        if (messages.size() <= limit) {
+            return new MessagePage(messages, false);
+        }
+        List<Message> page = forward ?
+            messages.subList(0, limit) :
+            messages.subList(messages.size() - limit, messages.size());
+        return new MessagePage(new ArrayList<>(page), true);
     }
 }
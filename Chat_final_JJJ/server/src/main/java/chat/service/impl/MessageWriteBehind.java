@@ -0,0 +1,301 @@
+package chat.service.impl;
+
+import chat.metrics.Metrics;
+import chat.model.Message;
+import chat.repository.MessageRepository;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+// Persistencia diferida de mensajes (server.messages.writeBehind=true).
+// El id sale de un bloque reservado en la secuencia y el timestamp se asigna en memoria, asi el
+// mensaje se entrega sin esperar a la base; un hilo lo inserta despues en lotes por tamaño o latencia.
+// Garantia: un mensaje ya confirmado se pierde si el proceso muere antes del flush. Las metricas
+// messages.writeBehind.pending y messages.writeBehind.lagMillis muestran esa exposicion.
+// Las lecturas no fuerzan el flush: combinan lo que devuelve la base con pendingMatching().
+public class MessageWriteBehind implements AutoCloseable {
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 1000;
+
+    private final MessageRepository repository;
+    private final int batchSize;
+    private final long flushNanos;
+    private final BlockingQueue<Message> queue;
+    private final AtomicInteger pending = new AtomicInteger();
+    // Confirmados al cliente y aun no escritos (ni descartados), por id
+    private final ConcurrentSkipListMap<Integer, Message> unwritten = new ConcurrentSkipListMap<>();
+    // Encolados y ya escritos (o descartados); written se protege con progressLock
+    private final AtomicLong submitted = new AtomicLong();
+    private long written;
+    private final AtomicLong lastBatchLagMillis = new AtomicLong();
+    // Locks en vez de synchronized: reserveIds() va a la base y un monitor fijaria el hilo virtual
+    private final ReentrantLock idLock = new ReentrantLock();
+    private final ReentrantLock progressLock = new ReentrantLock();
+    private final Condition batchWritten = progressLock.newCondition();
+    private final Metrics metrics = Metrics.getInstance();
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private volatile LocalDateTime inFlightSince;
+
+    private int[] idBlock = new int[0];
+    private int idIndex = 0;
+
+    public MessageWriteBehind(MessageRepository repository, int batchSize, long flushMillis, int maxPending) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.queue = new ArrayBlockingQueue<>(maxPending);
+
+        metrics.gauge("messages.writeBehind.pending", pending::get);
+        metrics.gauge("messages.writeBehind.lagMillis", this::lagMillis);
+        metrics.gauge("messages.writeBehind.lastBatchLagMillis", lastBatchLagMillis::get);
+
+        this.flusher = new Thread(this::runFlusher, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Asigna id y timestamp y encola; bloquea solo si hay maxPending mensajes sin persistir
+    public Message submit(Message message) {
+        assignId(message);
+        pending.incrementAndGet();
+        try {
+            queue.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.decrementAndGet();
+            unwritten.remove(message.getId());
+            throw new IllegalStateException("Interrumpido encolando mensaje", e);
+        }
+        submitted.incrementAndGet();
+        return message;
+    }
+
+    // Mensajes aun no persistidos que cumplen el filtro, en orden de id. Se toma antes de consultar
+    // la base: lo que se escriba entre ambas lecturas aparece en las dos y el llamador lo deduplica.
+    public List<Message> pendingMatching(Predicate<Message> filter) {
+        List<Message> matching = new ArrayList<>();
+        for (Message message : unwritten.values()) {
+            if (filter.test(message)) {
+                matching.add(message);
+            }
+        }
+        return matching;
+    }
+
+    // Id del mensaje mas viejo sin persistir, o null si no hay ninguno
+    public Integer oldestPendingId() {
+        return unwritten.isEmpty() ? null : unwritten.firstKey();
+    }
+
+    // Espera a que el hilo escriba lo encolado hasta ahora, como mucho timeoutMillis.
+    // Retorna false si no alcanzo (p. ej. la base esta caida y el lote se sigue reintentando).
+    public boolean flush(long timeoutMillis) {
+        if (pending.get() == 0) {
+            return true;
+        }
+        long target = submitted.get();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        progressLock.lock();
+        try {
+            while (written < target && flusher.isAlive()) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = batchWritten.awaitNanos(remaining);
+            }
+            return written >= target;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            progressLock.unlock();
+        }
+    }
+
+    // El id y el alta en unwritten van juntos: un id menor nunca queda fuera de unwritten
+    // mientras uno mayor ya es visible en la base
+    private void assignId(Message message) {
+        idLock.lock();
+        try {
+            if (idIndex == idBlock.length) {
+                idBlock = repository.reserveIds(batchSize);
+                idIndex = 0;
+                metrics.increment("messages.writeBehind.idBlocks");
+            }
+            message.setId(idBlock[idIndex++]);
+            message.setTimestamp(LocalDateTime.now());
+            unwritten.put(message.getId(), message);
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Message first = queue.poll(flushNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Se escribe al llenar el lote o al cumplirse la latencia maxima desde el primero
+                long deadline = System.nanoTime() + flushNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Message next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // Solo lo llama el hilo de escritura, o close() cuando ese hilo ya termino
+    private void write(List<Message> batch) {
+        inFlightSince = batch.get(0).getTimestamp();
+        long start = System.nanoTime();
+        long backoff = 50;
+        List<Message> remaining = batch;
+        try {
+            while (true) {
+                try {
+                    repository.saveBatch(remaining);
+                    break;
+                } catch (RuntimeException e) {
+                    metrics.increment("messages.writeBehind.flushFailures");
+                    if (remaining.size() > 1 || isConstraintViolation(e)) {
+                        remaining = writeIndividually(remaining);
+                        if (remaining.isEmpty()) {
+                            break;
+                        }
+                    }
+                    System.err.println("Error persistiendo lote de mensajes, reintentando: " + e.getMessage());
+                    if (!running) {
+                        System.err.println("Servidor detenido: se pierden " + remaining.size() + " mensajes sin persistir");
+                        metrics.add("messages.writeBehind.lost", remaining.size());
+                        break;
+                    }
+                    sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+                }
+            }
+        } finally {
+            lastBatchLagMillis.set(Duration.between(batch.get(0).getTimestamp(), LocalDateTime.now()).toMillis());
+            metrics.increment("messages.writeBehind.batches");
+            metrics.add("messages.writeBehind.flushed", batch.size());
+            metrics.add("messages.writeBehind.flushMicros", (System.nanoTime() - start) / 1000);
+            pending.addAndGet(-batch.size());
+            for (Message message : batch) {
+                unwritten.remove(message.getId());
+            }
+            progressLock.lock();
+            try {
+                written += batch.size();
+                batchWritten.signalAll();
+            } finally {
+                progressLock.unlock();
+            }
+            inFlightSince = null;
+        }
+    }
+
+    // Aisla las filas que la base rechaza (p. ej. una FK rota) para que no bloqueen el resto del lote.
+    // Solo se descartan violaciones de restricciones: ante otro error (conexion caida, timeout) se
+    // detiene y retorna las filas aun no escritas para reintentarlas.
+    private List<Message> writeIndividually(List<Message> batch) {
+        int rejected = 0;
+        List<Message> unwritten = Collections.emptyList();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                repository.saveBatch(Collections.singletonList(batch.get(i)));
+            } catch (RuntimeException e) {
+                if (!isConstraintViolation(e)) {
+                    unwritten = new ArrayList<>(batch.subList(i, batch.size()));
+                    break;
+                }
+                rejected++;
+            }
+        }
+        if (rejected > 0) {
+            System.err.println("Se descartaron " + rejected + " mensajes que la base rechazo");
+            metrics.add("messages.writeBehind.rejected", rejected);
+        }
+        return unwritten;
+    }
+
+    // SQLState clase 23: la fila viola una restriccion y fallaria igual en cada reintento
+    private static boolean isConstraintViolation(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                for (SQLException sql = (SQLException) cause; sql != null; sql = sql.getNextException()) {
+                    if (sql.getSQLState() != null && sql.getSQLState().startsWith("23")) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Antiguedad del mensaje mas viejo aun no persistido
+    private long lagMillis() {
+        LocalDateTime oldest = inFlightSince;
+        if (oldest == null) {
+            Message head = queue.peek();
+            oldest = head != null ? head.getTimestamp() : null;
+        }
+        return oldest != null ? Duration.between(oldest, LocalDateTime.now()).toMillis() : 0;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(flushNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Si el hilo no alcanzo a terminar, lo que quede en la cola se escribe aqui
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (!flusher.isAlive() && queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+        System.out.println("Escritura diferida de mensajes detenida");
+    }
+}
@@ -0,0 +1,186 @@
+package chat.service.impl;
+
+import chat.metrics.Metrics;
+import chat.model.User;
+import chat.model.UserStatus;
+import chat.repository.UserRepository;
+import chat.service.PresenceService;
+import chat.service.UserDirectoryService;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Presencia en memoria alimentada por ClientRegistry. Conectar, desconectar y UPDATE_STATUS solo
+// tocan la tabla; un hilo persiste cada flushMillis el ultimo estado de los usuarios que cambiaron,
+// asi N reconexiones de un usuario entre dos flush cuestan una sola fila en un solo batch.
+// Al arrancar todos quedan desconectados en la base: nadie sigue conectado tras un reinicio.
+public class PresenceServiceImpl implements PresenceService, AutoCloseable {
+    private static final String DEFAULT_STATUS = "Disponible";
+
+    private final UserRepository userRepository;
+    private final UserDirectoryService directory;
+    private final PresenceTable table = new PresenceTable(1024);
+    private final ScheduledExecutorService flusher;
+    private final Metrics metrics = Metrics.getInstance();
+
+    public PresenceServiceImpl(UserRepository userRepository, UserDirectoryService directory, long flushMillis) {
+        this.userRepository = userRepository;
+        this.directory = directory;
+        userRepository.resetOnlineStatus();
+
+        metrics.gauge("presence.online", () -> {
+            synchronized (table) {
+                return table.onlineCount();
+            }
+        });
+        metrics.gauge("presence.tracked", () -> {
+            synchronized (table) {
+                return table.size();
+            }
+        });
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "presence-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void connected(int userId) {
+        setOnline(userId, true);
+    }
+
+    @Override
+    public void disconnected(int userId) {
+        setOnline(userId, false);
+    }
+
+    private void setOnline(int userId, boolean online) {
+        load(userId);
+        long now = System.currentTimeMillis();
+        synchronized (table) {
+            table.setOnline(table.slot(userId, now, DEFAULT_STATUS), online, now);
+        }
+        directory.touch(userId);
+    }
+
+    @Override
+    public UserStatus getStatus(int userId) {
+        if (!load(userId)) {
+            return null;
+        }
+        synchronized (table) {
+            return toStatus(table.find(userId));
+        }
+    }
+
+    // Usuario sin actividad desde el arranque: se carga una vez de la base y queda en memoria.
+    // Sin esto la primera conexion tras un reinicio crearia la celda con DEFAULT_STATUS y el
+    // flush pisaria el estado guardado. false si el usuario no existe.
+    private boolean load(int userId) {
+        synchronized (table) {
+            if (table.find(userId) >= 0) {
+                return true;
+            }
+        }
+        Optional<User> user = userRepository.findById(userId);
+        if (user.isEmpty()) {
+            return false;
+        }
+        metrics.increment("presence.loads");
+        synchronized (table) {
+            remember(user.get());
+        }
+        return true;
+    }
+
+    @Override
+    public void updateStatus(int userId, String status) {
+        String value = status == null || status.trim().isEmpty() ? DEFAULT_STATUS : status.trim();
+        if (value.length() > MAX_STATUS_LENGTH) {
+            value = value.substring(0, MAX_STATUS_LENGTH);
+        }
+        load(userId);
+        synchronized (table) {
+            table.setStatus(table.slot(userId, System.currentTimeMillis(), DEFAULT_STATUS), value);
+        }
+        directory.touch(userId);
+    }
+
+    @Override
+    public void apply(List<User> users) {
+        synchronized (table) {
+            for (User user : users) {
+                int index = remember(user);
+                user.setOnline(table.isOnline(index));
+                user.setLastSeen(toDateTime(table.getLastSeen(index)));
+                user.setStatus(table.getStatus(index));
+            }
+        }
+    }
+
+    // Celda del usuario; si no estaba se crea desconectado con lo que hay en la base
+    private int remember(User user) {
+        int index = table.find(user.getId());
+        if (index >= 0) {
+            return index;
+        }
+        long lastSeen = user.getLastSeen() != null
+                ? user.getLastSeen().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : 0;
+        return table.slot(user.getId(), lastSeen, user.getStatus() != null ? user.getStatus() : DEFAULT_STATUS);
+    }
+
+    private UserStatus toStatus(int index) {
+        return new UserStatus(table.getUserId(index), table.isOnline(index),
+                toDateTime(table.getLastSeen(index)), table.getStatus(index));
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return millis > 0 ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()) : null;
+    }
+
+    void flush() {
+        int[] userIds;
+        List<UserStatus> changes = new ArrayList<>();
+        synchronized (table) {
+            userIds = table.drainDirty();
+            for (int userId : userIds) {
+                changes.add(toStatus(table.find(userId)));
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            userRepository.updatePresence(changes);
+            metrics.increment("presence.flushes");
+            metrics.add("presence.rowsWritten", changes.size());
+        } catch (RuntimeException e) {
+            System.err.println("Error persistiendo presencia (" + changes.size() + " usuarios): " + e.getMessage());
+            synchronized (table) {
+                table.markDirty(userIds);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -0,0 +1,168 @@
+package chat.service.impl;
+
+import java.util.Arrays;
+
+// Estado de presencia indexado por userId sin boxing: direccionamiento abierto con sondeo lineal
+// sobre arreglos paralelos. Los ids de usuario son SERIAL (>= 1), asi 0 marca una celda libre.
+// No es thread-safe: PresenceServiceImpl lo protege con su lock.
+class PresenceTable {
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private boolean[] online;
+    private long[] lastSeen;
+    private String[] status;
+    private boolean[] dirty;
+    private int size;
+    private int onlineCount;
+
+    // Cola de cambios sin persistir; dirty[] evita repetir un usuario entre dos flush
+    private int[] pending = new int[64];
+    private int pendingCount;
+
+    PresenceTable(int capacity) {
+        allocate(Integer.highestOneBit(Math.max(16, capacity) - 1) << 1);
+    }
+
+    // Indice de la celda del usuario o -1 si no esta
+    int find(int userId) {
+        int mask = keys.length - 1;
+        for (int i = mix(userId) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == userId) {
+                return i;
+            }
+            if (keys[i] == FREE) {
+                return -1;
+            }
+        }
+    }
+
+    // Indice de la celda del usuario, creandola si no existe
+    int slot(int userId, long seenAt, String initialStatus) {
+        int index = find(userId);
+        if (index >= 0) {
+            return index;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        index = mix(userId) & mask;
+        while (keys[index] != FREE) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = userId;
+        lastSeen[index] = seenAt;
+        status[index] = initialStatus;
+        size++;
+        return index;
+    }
+
+    boolean isOnline(int index) {
+        return online[index];
+    }
+
+    long getLastSeen(int index) {
+        return lastSeen[index];
+    }
+
+    String getStatus(int index) {
+        return status[index];
+    }
+
+    int getUserId(int index) {
+        return keys[index];
+    }
+
+    void setOnline(int index, boolean value, long now) {
+        if (online[index] != value) {
+            onlineCount += value ? 1 : -1;
+        }
+        online[index] = value;
+        lastSeen[index] = now;
+        markDirty(index);
+    }
+
+    void setStatus(int index, String value) {
+        status[index] = value;
+        markDirty(index);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int onlineCount() {
+        return onlineCount;
+    }
+
+    // Retira los usuarios con cambios pendientes; el llamador lee su estado actual y lo persiste
+    int[] drainDirty() {
+        int[] userIds = Arrays.copyOf(pending, pendingCount);
+        for (int userId : userIds) {
+            dirty[find(userId)] = false;
+        }
+        pendingCount = 0;
+        return userIds;
+    }
+
+    // Tras un error al persistir: se reintentan en el siguiente flush con el estado de ese momento
+    void markDirty(int[] userIds) {
+        for (int userId : userIds) {
+            int index = find(userId);
+            if (index >= 0) {
+                markDirty(index);
+            }
+        }
+    }
+
+    private void markDirty(int index) {
+        if (dirty[index]) {
+            return;
+        }
+        dirty[index] = true;
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        pending[pendingCount++] = keys[index];
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        boolean[] oldOnline = online;
+        long[] oldLastSeen = lastSeen;
+        String[] oldStatus = status;
+        boolean[] oldDirty = dirty;
+        allocate(oldKeys.length * 2);
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE) {
+                continue;
+            }
+            int index = mix(oldKeys[i]) & mask;
+            while (keys[index] != FREE) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = oldKeys[i];
+            online[index] = oldOnline[i];
+            lastSeen[index] = oldLastSeen[i];
+            status[index] = oldStatus[i];
+            dirty[index] = oldDirty[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        online = new boolean[capacity];
+        lastSeen = new long[capacity];
+        status = new String[capacity];
+        dirty = new boolean[capacity];
+    }
+
+    // Los ids son consecutivos: se dispersan para no formar racimos largos al sondear
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,106 @@
+package chat.service.impl;
+
+import chat.metrics.Metrics;
+import chat.model.User;
+import chat.model.UserDirectoryDelta;
+import chat.repository.UserRepository;
+import chat.service.UserDirectoryService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Se carga una vez de la base y luego se mantiene con las altas (UserServiceImpl) y los cambios de
+// presencia (PresenceServiceImpl). changes guarda solo la ultima version de cada usuario, asi un
+// delta cuesta O(log n + cambios) y nunca toca la base.
+// Las versiones parten del reloj al arrancar: una version de un arranque anterior siempre es menor
+// que baseVersion y recibe el directorio completo.
+public class UserDirectoryServiceImpl implements UserDirectoryService {
+    private final Map<Integer, User> users = new HashMap<>();
+    private final Map<Integer, Long> versions = new HashMap<>();
+    private final NavigableMap<Long, Integer> changes = new TreeMap<>();
+    private final long baseVersion;
+    private long version;
+    private final Metrics metrics = Metrics.getInstance();
+
+    public UserDirectoryServiceImpl(UserRepository userRepository) {
+        this.baseVersion = System.currentTimeMillis() * 1000;
+        this.version = baseVersion;
+        for (User user : userRepository.findAll()) {
+            users.put(user.getId(), copy(user));
+        }
+        metrics.gauge("directory.users", this::size);
+        System.out.println("Directorio de usuarios cargado (" + users.size() + " usuarios)");
+    }
+
+    @Override
+    public synchronized void userChanged(User user) {
+        users.put(user.getId(), copy(user));
+        bump(user.getId());
+    }
+
+    @Override
+    public synchronized void touch(int userId) {
+        if (users.containsKey(userId)) {
+            bump(userId);
+        }
+    }
+
+    private void bump(int userId) {
+        Long previous = versions.put(userId, ++version);
+        if (previous != null) {
+            changes.remove(previous);
+        }
+        changes.put(version, userId);
+    }
+
+    @Override
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    @Override
+    public synchronized List<User> getAllUsers() {
+        List<User> all = new ArrayList<>(users.size());
+        for (User user : users.values()) {
+            all.add(copy(user));
+        }
+        all.sort(Comparator.comparing(User::getUsername));
+        return all;
+    }
+
+    @Override
+    public synchronized UserDirectoryDelta getChangesSince(long since) {
+        if (since == version) {
+            metrics.increment("directory.unchanged");
+            return new UserDirectoryDelta(version, false, true, Collections.emptyList());
+        }
+        if (since >= baseVersion && since < version) {
+            List<User> changed = new ArrayList<>();
+            for (int userId : changes.tailMap(since, false).values()) {
+                changed.add(copy(users.get(userId)));
+            }
+            metrics.increment("directory.deltas");
+            metrics.add("directory.deltaUsers", changed.size());
+            return new UserDirectoryDelta(version, false, false, changed);
+        }
+        metrics.increment("directory.full");
+        return new UserDirectoryDelta(version, true, false, getAllUsers());
+    }
+
+    private synchronized int size() {
+        return users.size();
+    }
+
+    private static User copy(User user) {
+        User copy = new User(user.getId(), user.getUsername());
+        copy.setStatus(user.getStatus());
+        copy.setLastSeen(user.getLastSeen());
+        return copy;
+    }
+}
@@ -2,15 +2,18 @@ package chat.service.impl;
 
 import chat.model.User;
 import chat.repository.UserRepository;
+import chat.service.UserDirectoryService;
 import chat.service.UserService;
 
 import java.util.List;
 
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
+    private final UserDirectoryService directory;
     
-    public UserServiceImpl(UserRepository userRepository) {
+    public UserServiceImpl(UserRepository userRepository, UserDirectoryService directory) {
         this.userRepository = userRepository;
+        this.directory = directory;
     }
     
     @Override
@@ -19,13 +22,13 @@ public class UserServiceImpl implements UserService {
             throw new Exception("El nombre de usuario no puede estar vacio");
         }
         
-        if (userRepository.existsByUsername(username)) {
-            throw new Exception("El usuario ya existe");
-        }
-        
+        // El INSERT ... ON CONFLICT detecta el duplicado en la misma consulta
         User user = new User(0, username);
         user.setOnline(true);
-        return userRepository.save(user);
+        userRepository.insertIfAbsent(user)
+            .orElseThrow(() -> new Exception("El usuario ya existe"));
+        directory.userChanged(user);
+        return user;
     }
     
     @Override
@@ -33,15 +36,11 @@ public class UserServiceImpl implements UserService {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new Exception("Usuario no encontrado"));
         
-        userRepository.updateOnlineStatus(user.getId(), true);
+        // La presencia la registra ClientRegistry en memoria; la base se actualiza en lotes
+        user.setOnline(true);
         return user;
     }
     
-    @Override
-    public void logout(int userId) {
-        userRepository.updateOnlineStatus(userId, false);
-    }
-    
     @Override
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -36,6 +36,23 @@ CREATE TABLE IF NOT EXISTS messages (
     CHECK (receiver_id IS NOT NULL OR group_id IS NOT NULL)
 );
 
+-- Estado visible de cada usuario; online/last_seen/status se persisten en lotes desde memoria
+ALTER TABLE users ADD COLUMN IF NOT EXISTS status VARCHAR(140) DEFAULT 'Disponible';
+
+-- Audio de las notas de voz: vive en los segmentos mapeados del servidor, aqui solo su id
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS voice_note_id BIGINT;
+
+-- Cursor de entrega: ultimo mensaje confirmado por cada usuario (bandeja offline)
+CREATE TABLE IF NOT EXISTS delivery_cursors (
+    user_id INTEGER PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    last_message_id INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+-- Usuarios anteriores a la bandeja: empiezan al dia en vez de recibir todo su historial
+INSERT INTO delivery_cursors (user_id, last_message_id)
+SELECT id, (SELECT COALESCE(MAX(id), 0) FROM messages) FROM users
+ON CONFLICT (user_id) DO NOTHING;
+
 -- Calls table for call history
 CREATE TABLE IF NOT EXISTS calls (
     id SERIAL PRIMARY KEY,
@@ -53,9 +70,16 @@ CREATE TABLE IF NOT EXISTS calls (
 );
 
 -- Indexes for better query performance
-CREATE INDEX IF NOT EXISTS idx_messages_sender ON messages(sender_id);
-CREATE INDEX IF NOT EXISTS idx_messages_receiver ON messages(receiver_id);
-CREATE INDEX IF NOT EXISTS idx_messages_group ON messages(group_id);
+-- Bandeja de entrada: mensajes directos de un usuario desde su cursor
+CREATE INDEX IF NOT EXISTS idx_messages_receiver_id ON messages(receiver_id, id);
+-- Historial paginado por id (keyset): una conversacion o grupo se lee como un rango del indice
+CREATE INDEX IF NOT EXISTS idx_messages_pair_id ON messages(sender_id, receiver_id, id);
+CREATE INDEX IF NOT EXISTS idx_messages_group_id ON messages(group_id, id);
+CREATE INDEX IF NOT EXISTS idx_messages_voice_note ON messages(voice_note_id) WHERE voice_note_id IS NOT NULL;
+-- Cubiertos por los indices compuestos
+DROP INDEX IF EXISTS idx_messages_sender;
+DROP INDEX IF EXISTS idx_messages_group;
+DROP INDEX IF EXISTS idx_messages_receiver;
 CREATE INDEX IF NOT EXISTS idx_messages_timestamp ON messages(timestamp);
 CREATE INDEX IF NOT EXISTS idx_calls_caller ON calls(caller_id);
 CREATE INDEX IF NOT EXISTS idx_calls_receiver ON calls(receiver_id);
@@ -0,0 +1,135 @@
+package chat.repository.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WriteAheadLogTest {
+    private static final byte TYPE = 1;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversEveryDurableRecord() throws IOException {
+        try (WriteAheadLog wal = open(true)) {
+            wal.recover((type, payload) -> { });
+            for (int i = 1; i <= 100; i++) {
+                wal.write(TYPE, bytes("r" + i));
+            }
+        }
+        assertEquals(expected(1, 100), replay(true));
+    }
+
+    @Test
+    void recoversFromSnapshotPlusLaterSegments() throws IOException {
+        try (WriteAheadLog wal = open(false)) {
+            wal.recover((type, payload) -> { });
+            for (int i = 1; i <= 10; i++) {
+                wal.append(TYPE, bytes("r" + i));
+            }
+            long lsn = wal.rotate();
+            wal.writeSnapshot(lsn, sink -> {
+                for (int i = 1; i <= 10; i++) {
+                    sink.write(TYPE, bytes("r" + i));
+                }
+            });
+            for (int i = 11; i <= 15; i++) {
+                wal.append(TYPE, bytes("r" + i));
+            }
+        }
+        assertEquals(expected(1, 15), replay(false));
+    }
+
+    @Test
+    void stopsAtTornTailAndContinuesAfterIt() throws IOException {
+        try (WriteAheadLog wal = open(true)) {
+            wal.recover((type, payload) -> { });
+            for (int i = 1; i <= 5; i++) {
+                wal.write(TYPE, bytes("r" + i));
+            }
+        }
+        Path segment = lastSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (WriteAheadLog wal = open(true)) {
+            assertEquals(4, wal.recover((type, payload) -> { }));
+            wal.write(TYPE, bytes("r6"));
+        }
+        List<String> records = expected(1, 4);
+        records.add("r6");
+        assertEquals(records, replay(true));
+    }
+
+    // Un error de E/S a mitad de un lote no debe perder registros ni dejar uno a medias antes de los siguientes
+    @Test
+    void failedFlushIsRetriedInANewSegment() throws Exception {
+        try (WriteAheadLog wal = open(true)) {
+            wal.recover((type, payload) -> { });
+            for (int i = 1; i <= 3; i++) {
+                wal.write(TYPE, bytes("r" + i));
+            }
+            // Simula el fallo cerrando el segmento activo por debajo del WAL
+            Field channel = WriteAheadLog.class.getDeclaredField("channel");
+            channel.setAccessible(true);
+            ((FileChannel) channel.get(wal)).close();
+
+            for (int i = 4; i <= 6; i++) {
+                wal.write(TYPE, bytes("r" + i));
+            }
+        }
+        assertEquals(expected(1, 6), replay(true));
+    }
+
+    private WriteAheadLog open(boolean syncPerBatch) throws IOException {
+        return new WriteAheadLog(dir, 1024 * 1024, syncPerBatch, 10);
+    }
+
+    private List<String> replay(boolean syncPerBatch) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (WriteAheadLog wal = open(syncPerBatch)) {
+            wal.recover((type, payload) -> {
+                byte[] data = new byte[payload.remaining()];
+                payload.get(data);
+                records.add(new String(data, StandardCharsets.UTF_8));
+            });
+        }
+        return records;
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log"))
+                    .filter(file -> file.toFile().length() > 0)
+                    .sorted()
+                    .reduce((first, second) -> second)
+                    .orElseThrow(IllegalStateException::new);
+        }
+    }
+
+    private static List<String> expected(int from, int to) {
+        List<String> records = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            records.add("r" + i);
+        }
+        return records;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}